@@ -0,0 +1,46 @@
+package com.erfangc.sac.backend.redis;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link ActionSets} encodes the actions a principal holds on a resource as the value of a field of a resource policy
+ * hash (see {@link RedisBackendOptions#resourcePolicyHashes()}): a sorted JSON array of strings, which scripts running
+ * inside Redis can read and write as well through cjson
+ */
+final class ActionSets {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader READER = MAPPER.readerFor(String[].class);
+    private static final ObjectWriter WRITER = MAPPER.writerFor(String[].class);
+
+    private ActionSets() {
+    }
+
+    static String encode(Collection<String> actions) {
+        final String[] sorted = actions.toArray(new String[0]);
+        Arrays.sort(sorted);
+        try {
+            return WRITER.writeValueAsString(sorted);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Set<String> decode(String value) {
+        try {
+            return new HashSet<>(Arrays.asList(READER.<String[]>readValue(value)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.erfangc.sac.backend.redis;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link JacksonValueCodec} writes JSON or Smile, and reads both by looking for the header every Smile document starts
+ * with. Readers and writers are built once per type instead of resolving serializers on every call
+ */
+final class JacksonValueCodec implements ValueCodec {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper().findAndRegisterModules();
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory()).findAndRegisterModules();
+    private static final ConcurrentMap<Class<?>, ObjectReader> JSON_READERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectReader> SMILE_READERS = new ConcurrentHashMap<>();
+
+    static final JacksonValueCodec JSON = new JacksonValueCodec(JSON_MAPPER.writer());
+    static final JacksonValueCodec SMILE = new JacksonValueCodec(SMILE_MAPPER.writer());
+
+    private final ObjectWriter writer;
+
+    private JacksonValueCodec(ObjectWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @return whether the given bytes start with the ":)\n" header of a Smile document, which JSON can never start with
+     */
+    static boolean isSmile(byte[] bytes) {
+        return bytes.length >= 3 && bytes[0] == ':' && bytes[1] == ')' && bytes[2] == '\n';
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        final ObjectReader reader = isSmile(bytes)
+                ? SMILE_READERS.computeIfAbsent(type, SMILE_MAPPER::readerFor)
+                : JSON_READERS.computeIfAbsent(type, JSON_MAPPER::readerFor);
+        try {
+            return reader.readValue(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.erfangc.sac.backend.redis;
+
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link LuaScript} is a Lua script bundled as a classpath resource next to this class. It is invoked through EVALSHA
+ * with its locally computed SHA1 digest, and if the server does not know the script yet (first use, SCRIPT FLUSH,
+ * restart or failover) it is sent once in full through EVAL, which also caches it on the server for subsequent calls
+ */
+class LuaScript {
+
+    private final String source;
+    private final String sha;
+
+    private LuaScript(String source) {
+        this.source = source;
+        this.sha = sha1(source);
+    }
+
+    static LuaScript load(String resourceName) {
+        try (InputStream inputStream = LuaScript.class.getResourceAsStream(resourceName)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Lua script " + resourceName + " not found on the classpath");
+            }
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return new LuaScript(new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String sha1(String source) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isNoScript(Throwable throwable) {
+        final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        return cause instanceof RedisNoScriptException
+                || cause.getMessage() != null && cause.getMessage().startsWith("NOSCRIPT");
+    }
+
+    String sha() {
+        return sha;
+    }
+
+    String source() {
+        return source;
+    }
+
+    <T> CompletableFuture<T> eval(RedisClusterAsyncCommands<String, String> async,
+                                  ScriptOutputType type,
+                                  String[] keys,
+                                  String... args) {
+        final CompletableFuture<T> evalsha = async.<T>evalsha(sha, type, keys, args).toCompletableFuture();
+        return evalsha
+                .handle((result, throwable) -> {
+                    if (throwable == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    if (isNoScript(throwable)) {
+                        return async.<T>eval(source, type, keys, args).toCompletableFuture();
+                    }
+                    return evalsha;
+                })
+                .thenCompose(future -> future);
+    }
+}
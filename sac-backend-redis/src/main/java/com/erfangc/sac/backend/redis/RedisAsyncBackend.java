@@ -0,0 +1,401 @@
+package com.erfangc.sac.backend.redis;
+
+import com.erfangc.sac.core.backend.AsyncBackend;
+import com.erfangc.sac.interfaces.*;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static com.erfangc.sac.backend.redis.RedisBackend.*;
+
+/**
+ * {@link RedisAsyncBackend} implements {@link AsyncBackend} on top of Lettuce's {@link RedisClusterAsyncCommands}, which
+ * standalone and cluster connections both provide. No method ever blocks: lookups that fan out (i.e. one SMEMBERS per
+ * group of a BFS frontier) are all issued before any of their replies is awaited, and the results are stitched together
+ * through {@link CompletableFuture} composition
+ * <p>
+ * With {@link RedisBackendOptions#serverSideTraversal()} the group hierarchy is instead walked by a Lua script inside
+ * Redis, so that resolving a principal's groups and policy ids costs one round trip however deep the hierarchy is. With
+ * {@link RedisBackendOptions#materializedGroupClosure()} it is not walked at all, the closure maintained by
+ * {@link RedisBackend} is read instead. With {@link RedisBackendOptions#nearCacheEnabled()} the sets and policies read
+ * here are served from a {@link RedisNearCache} whenever possible. With {@link RedisBackendOptions#resourcePolicyHashes()}
+ * a resource policy is read with a single HGETALL of its hash, or on the decision path, where only the assignments of a
+ * principal and its groups matter, with a single HMGET of their fields
+ */
+public class RedisAsyncBackend implements AsyncBackend {
+
+    private static final LuaScript TRANSITIVE_MEMBERSHIP = LuaScript.load("transitive_membership.lua");
+
+    private final RedisClusterAsyncCommands<String, String> async;
+    private final RedisClusterAsyncCommands<String, byte[]> valueAsync;
+    private final ValueCodec valueCodec;
+    private final RedisKeys redisKeys;
+    private final boolean serverSideTraversal;
+    private final boolean materializedGroupClosure;
+    private final boolean resourcePolicyHashes;
+    private final boolean legacyResourcePolicyReads;
+    private final RedisNearCache nearCache;
+
+    RedisAsyncBackend(RedisClusterAsyncCommands<String, String> async,
+                      RedisClusterAsyncCommands<String, byte[]> valueAsync,
+                      RedisBackendOptions options,
+                      RedisNearCache nearCache) {
+        this.async = async;
+        this.valueAsync = valueAsync;
+        this.valueCodec = options.valueCodec();
+        this.redisKeys = RedisKeys.of(options);
+        this.serverSideTraversal = options.serverSideTraversal();
+        this.materializedGroupClosure = options.materializedGroupClosure();
+        this.resourcePolicyHashes = options.resourcePolicyHashes();
+        this.legacyResourcePolicyReads = options.legacyResourcePolicyReads();
+        this.nearCache = nearCache;
+    }
+
+    private static <T> CompletableFuture<List<T>> allOf(List<CompletableFuture<T>> futures) {
+        return CompletableFuture
+                .allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    final List<T> ret = new ArrayList<>(futures.size());
+                    for (CompletableFuture<T> future : futures) {
+                        ret.add(future.join());
+                    }
+                    return ret;
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Set<String>> smembers(String key) {
+        if (nearCache == null) {
+            return async.smembers(key).toCompletableFuture();
+        }
+        final Object cached = nearCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture((Set<String>) cached);
+        }
+        final Object token = nearCache.beginRead(key);
+        return async.smembers(key).toCompletableFuture().thenApply(members -> {
+            final Set<String> ret = Collections.unmodifiableSet(members);
+            nearCache.put(key, ret, token);
+            return ret;
+        });
+    }
+
+    /**
+     * @return the decoded fields of a RESOURCE_POLICY_HASH, principal to actions
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Map<String, Set<String>>> hgetall(String key) {
+        final Object cached = nearCache == null ? null : nearCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture((Map<String, Set<String>>) cached);
+        }
+        final Object token = nearCache == null ? null : nearCache.beginRead(key);
+        return async.hgetall(key).toCompletableFuture().thenApply(fields -> {
+            final Map<String, Set<String>> ret = new LinkedHashMap<>();
+            fields.forEach((principal, actions) -> ret.put(principal, Collections.unmodifiableSet(ActionSets.decode(actions))));
+            if (nearCache != null) {
+                nearCache.put(key, Collections.unmodifiableMap(ret), token);
+            }
+            return ret;
+        });
+    }
+
+    /**
+     * @return the decoded fields of a RESOURCE_POLICY_HASH for the given principals, taken from the whole hash when the
+     * near cache holds it
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Map<String, Set<String>>> hmget(String key, List<String> principals) {
+        final Object cached = nearCache == null ? null : nearCache.get(key);
+        if (cached != null) {
+            final Map<String, Set<String>> ret = new LinkedHashMap<>();
+            for (String principal : principals) {
+                final Set<String> actions = ((Map<String, Set<String>>) cached).get(principal);
+                if (actions != null) {
+                    ret.put(principal, actions);
+                }
+            }
+            return CompletableFuture.completedFuture(ret);
+        }
+        return async.hmget(key, principals.toArray(new String[0])).toCompletableFuture().thenApply(fields -> {
+            final Map<String, Set<String>> ret = new LinkedHashMap<>();
+            for (KeyValue<String, String> field : fields) {
+                if (field.hasValue()) {
+                    ret.put(field.getKey(), ActionSets.decode(field.getValue()));
+                }
+            }
+            return ret;
+        });
+    }
+
+    @Override
+    public CompletableFuture<ResourcePolicy> getResourcePolicy(String resource) {
+        return getResourcePolicies(Collections.singleton(resource)).thenApply(map -> map.get(resource));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ResourcePolicy>> getResourcePolicies(Collection<String> resources) {
+        final List<CompletableFuture<ResourcePolicy>> futures = new ArrayList<>();
+        for (String resource : resources) {
+            if (!resourcePolicyHashes) {
+                futures.add(legacyAssignments(resource).thenApply(assignments -> resourcePolicy(resource, assignments)));
+                continue;
+            }
+            final CompletableFuture<Map<String, Set<String>>> hash = hgetall(redisKeys.key(RESOURCE_POLICY_HASH, resource));
+            // a policy not migrated yet costs one more command in the same round trip, its actions one more round trip
+            final CompletableFuture<Map<String, Set<String>>> legacy = legacyResourcePolicyReads
+                    ? legacyAssignments(resource)
+                    : CompletableFuture.completedFuture(Collections.emptyMap());
+            futures.add(hash.thenCombine(legacy, (fields, assignments) -> resourcePolicy(resource, merge(assignments, fields))));
+        }
+        return collect(futures);
+    }
+
+    /**
+     * As {@link #getResourcePolicies(Collection)}, reading only the assignments of the given principals: one HMGET of
+     * their fields per hash rather than an HGETALL, and in the original layout their sets of actions, which saves
+     * reading the principals of the policy first
+     */
+    CompletableFuture<Map<String, ResourcePolicy>> getResourcePolicies(Collection<String> resources, Collection<String> principals) {
+        final List<String> ordered = new ArrayList<>(new LinkedHashSet<>(principals));
+        if (ordered.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        final List<CompletableFuture<ResourcePolicy>> futures = new ArrayList<>();
+        for (String resource : resources) {
+            final CompletableFuture<Map<String, Set<String>>> legacy = !resourcePolicyHashes || legacyResourcePolicyReads
+                    ? legacyAssignments(resource, ordered)
+                    : CompletableFuture.completedFuture(Collections.emptyMap());
+            if (!resourcePolicyHashes) {
+                futures.add(legacy.thenApply(assignments -> resourcePolicy(resource, assignments)));
+                continue;
+            }
+            final CompletableFuture<Map<String, Set<String>>> hash = hmget(redisKeys.key(RESOURCE_POLICY_HASH, resource), ordered);
+            futures.add(hash.thenCombine(legacy, (fields, assignments) -> resourcePolicy(resource, merge(assignments, fields))));
+        }
+        return collect(futures);
+    }
+
+    /**
+     * @return the assignments of a resource in the original layout, with those of its hash added in
+     */
+    private static Map<String, Set<String>> merge(Map<String, Set<String>> assignments, Map<String, Set<String>> fields) {
+        if (assignments.isEmpty()) {
+            return fields;
+        }
+        final Map<String, Set<String>> merged = new LinkedHashMap<>(assignments);
+        fields.forEach((principal, actions) -> merged.merge(principal, actions, (a, b) -> {
+            final Set<String> union = new HashSet<>(a);
+            union.addAll(b);
+            return union;
+        }));
+        return merged;
+    }
+
+    private static CompletableFuture<Map<String, ResourcePolicy>> collect(List<CompletableFuture<ResourcePolicy>> futures) {
+        return allOf(futures).thenApply(results -> {
+            final Map<String, ResourcePolicy> ret = new HashMap<>();
+            for (ResourcePolicy resourcePolicy : results) {
+                if (resourcePolicy != null) {
+                    ret.put(resourcePolicy.resource(), resourcePolicy);
+                }
+            }
+            return ret;
+        });
+    }
+
+    /**
+     * @return the assignments of the given resource's policy in the original layout, principal to actions
+     */
+    private CompletableFuture<Map<String, Set<String>>> legacyAssignments(String resource) {
+        return smembers(redisKeys.key(RESOURCE_POLICY_MAP, resource)).thenCompose(principals -> {
+            if (principals == null || principals.isEmpty()) {
+                return CompletableFuture.completedFuture(Collections.emptyMap());
+            }
+            final List<String> ordered = new ArrayList<>(principals);
+            final List<CompletableFuture<Set<String>>> actions = new ArrayList<>();
+            for (String principal : ordered) {
+                actions.add(smembers(redisKeys.actionsKey(resource, principal)));
+            }
+            return allOf(actions).thenApply(results -> {
+                final Map<String, Set<String>> ret = new LinkedHashMap<>();
+                for (int i = 0; i < ordered.size(); i++) {
+                    ret.put(ordered.get(i), results.get(i));
+                }
+                return ret;
+            });
+        });
+    }
+
+    /**
+     * @return the assignments of the given principals in the given resource's policy in the original layout, read
+     * straight from their sets of actions, which are only left non empty for the principals the policy holds
+     */
+    private CompletableFuture<Map<String, Set<String>>> legacyAssignments(String resource, List<String> principals) {
+        final List<CompletableFuture<Set<String>>> actions = new ArrayList<>();
+        for (String principal : principals) {
+            actions.add(smembers(redisKeys.actionsKey(resource, principal)));
+        }
+        return allOf(actions).thenApply(results -> {
+            final Map<String, Set<String>> ret = new LinkedHashMap<>();
+            for (int i = 0; i < principals.size(); i++) {
+                if (!results.get(i).isEmpty()) {
+                    ret.put(principals.get(i), results.get(i));
+                }
+            }
+            return ret;
+        });
+    }
+
+    private static ResourcePolicy resourcePolicy(String resource, Map<String, Set<String>> assignments) {
+        if (assignments.isEmpty()) {
+            return null;
+        }
+        final List<ResourcePolicyAssignment> ret = new ArrayList<>(assignments.size());
+        assignments.forEach((principal, actions) -> ret.add(
+                ImmutableResourcePolicyAssignment
+                        .builder()
+                        .actions(actions)
+                        .principal(principal)
+                        .build()
+        ));
+        return ImmutableResourcePolicy.builder().assignments(ret).resource(resource).build();
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getGroupMembershipTransitively(String principalId) {
+        if (materializedGroupClosure) {
+            return smembers(redisKeys.key(GROUP_CLOSURE, principalId)).thenApply(ArrayList::new);
+        }
+        if (serverSideTraversal) {
+            return traverse(principalId, false).thenApply(result -> result.get(0));
+        }
+        return smembers(redisKeys.key(PRINCIPAL_TO_GROUP_MAP, principalId)).thenCompose(immediate -> expand(new HashSet<>(), immediate));
+    }
+
+    /**
+     * One level of the BFS over GROUP_TO_GROUP_MAP: the SMEMBERS of every group on the frontier are in flight together,
+     * and the next level starts once all of them have answered
+     */
+    private CompletableFuture<List<String>> expand(Set<String> gids, Collection<String> frontier) {
+        final List<String> unseen = new ArrayList<>();
+        for (String gid : frontier) {
+            if (gids.add(gid)) {
+                unseen.add(gid);
+            }
+        }
+        if (unseen.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>(gids));
+        }
+        final List<CompletableFuture<Set<String>>> futures = new ArrayList<>();
+        for (String gid : unseen) {
+            futures.add(smembers(redisKeys.key(GROUP_TO_GROUP_MAP, gid)));
+        }
+        return allOf(futures).thenCompose(results -> {
+            final Set<String> next = new HashSet<>();
+            results.forEach(next::addAll);
+            return expand(gids, next);
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<IdentityPolicy>> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId) {
+        return fetchIdentityPoliciesTransitivelyForPrincipal(principalId, new HashSet<>());
+    }
+
+    /**
+     * @param missingPolicyIds receives the id of every assigned policy that does not exist, see
+     *                         {@link com.erfangc.sac.core.backend.Backend#fetchIdentityPoliciesTransitivelyForPrincipal(String, Set)}
+     */
+    CompletableFuture<List<IdentityPolicy>> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId, Set<String> missingPolicyIds) {
+        if (serverSideTraversal && !materializedGroupClosure) {
+            return traverse(principalId, true).thenCompose(result -> loadPolicies(result.get(1), missingPolicyIds));
+        }
+        final CompletableFuture<Set<String>> self = smembers(redisKeys.key(PRINCIPAL_TO_POLICY_MAP, principalId));
+        return getGroupMembershipTransitively(principalId)
+                .thenCompose(gids -> {
+                    final List<CompletableFuture<Set<String>>> futures = new ArrayList<>();
+                    futures.add(self);
+                    for (String gid : gids) {
+                        futures.add(smembers(redisKeys.key(PRINCIPAL_TO_POLICY_MAP, gid)));
+                    }
+                    return allOf(futures);
+                })
+                .thenCompose(results -> {
+                    final Set<String> policyIds = new LinkedHashSet<>();
+                    results.forEach(policyIds::addAll);
+                    return loadPolicies(policyIds, missingPolicyIds);
+                });
+    }
+
+    /**
+     * Run the BFS of transitive_membership.lua inside Redis
+     *
+     * @param withPolicies whether the script should also collect the policy ids assigned to the principal and its groups
+     * @return the group ids followed by the policy ids (empty unless requested)
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<List<List<String>>> traverse(String principalId, boolean withPolicies) {
+        final String[] keys = withPolicies
+                ? new String[]{redisKeys.key(PRINCIPAL_TO_GROUP_MAP, principalId), redisKeys.key(PRINCIPAL_TO_POLICY_MAP, principalId)}
+                : new String[]{redisKeys.key(PRINCIPAL_TO_GROUP_MAP, principalId)};
+        final String[] args = withPolicies
+                ? new String[]{GROUP_TO_GROUP_MAP, PRINCIPAL_TO_POLICY_MAP}
+                : new String[]{GROUP_TO_GROUP_MAP};
+        return TRANSITIVE_MEMBERSHIP
+                .<List<Object>>eval(async, ScriptOutputType.MULTI, keys, args)
+                .thenApply(result -> {
+                    final List<List<String>> ret = new ArrayList<>(result.size());
+                    for (Object ids : result) {
+                        ret.add((List<String>) ids);
+                    }
+                    return ret;
+                });
+    }
+
+    private CompletableFuture<List<IdentityPolicy>> loadPolicies(Collection<String> policyIds, Set<String> missingPolicyIds) {
+        if (policyIds.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        final List<IdentityPolicy> ret = new ArrayList<>();
+        final List<String> keys = new ArrayList<>(policyIds.size());
+        for (String pid : policyIds) {
+            final Object cached = nearCache == null ? null : nearCache.get(redisKeys.key(POLICY, pid));
+            if (cached == null) {
+                keys.add(redisKeys.key(POLICY, pid));
+            } else if (cached != RedisNearCache.ABSENT) {
+                ret.add((IdentityPolicy) cached);
+            } else {
+                missingPolicyIds.add(pid);
+            }
+        }
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(ret);
+        }
+        final Map<String, Object> tokens = new HashMap<>();
+        if (nearCache != null) {
+            keys.forEach(key -> tokens.put(key, nearCache.beginRead(key)));
+        }
+        // a single MGET fetches every policy in one round trip
+        return valueAsync.mget(keys.toArray(new String[0])).toCompletableFuture().thenApply(values -> {
+            for (KeyValue<String, byte[]> value : values) {
+                if (value.hasValue()) {
+                    final IdentityPolicy policy = valueCodec.decode(value.getValue(), ImmutableIdentityPolicy.class);
+                    ret.add(policy);
+                    if (nearCache != null) {
+                        nearCache.put(value.getKey(), policy, tokens.get(value.getKey()));
+                    }
+                } else {
+                    missingPolicyIds.add(redisKeys.id(POLICY, value.getKey()));
+                    if (nearCache != null) {
+                        nearCache.put(value.getKey(), null, tokens.get(value.getKey()));
+                    }
+                }
+            }
+            return ret;
+        });
+    }
+}
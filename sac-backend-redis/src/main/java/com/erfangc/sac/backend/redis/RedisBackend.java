@@ -1,113 +1,268 @@
 package com.erfangc.sac.backend.redis;
 
 import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.core.metrics.Metrics;
 import com.erfangc.sac.interfaces.*;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import io.lettuce.core.RedisClient;
+import io.lettuce.core.*;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.event.DefaultEventPublisherOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
 
 import java.io.Closeable;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 
 public class RedisBackend implements Backend, Closeable {
 
-    private static final String PRINCIPAL_TO_POLICY_MAP = "PRINCIPAL_TO_POLICY_MAP:";
-    private static final String RESOURCE_POLICY_MAP = "RESOURCE_POLICY_MAP:";
-    private static final String RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP = "RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP:";
-    private static final String POLICY_TO_PRINCIPAL_MAP = "POLICY_TO_PRINCIPAL_MAP:";
-    private static final String PRINCIPAL_TO_GROUP_MAP = "PRINCIPAL_TO_GROUP_MAP:";
-    private static final String GROUP_TO_PRINCIPAL_MAP = "GROUP_TO_PRINCIPAL_MAP:";
-    private static final String GROUP_TO_GROUP_MAP = "GROUP_TO_GROUP_MAP:";
-    private static final String POLICY = "POLICY:";
-    private static final String GROUP = "GROUP:";
+    static final String PRINCIPAL_TO_POLICY_MAP = "PRINCIPAL_TO_POLICY_MAP:";
+    static final String RESOURCE_POLICY_MAP = "RESOURCE_POLICY_MAP:";
+    static final String RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP = "RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP:";
+    static final String RESOURCE_POLICY_HASH = "RESOURCE_POLICY_HASH:";
+    static final String POLICY_TO_PRINCIPAL_MAP = "POLICY_TO_PRINCIPAL_MAP:";
+    static final String PRINCIPAL_TO_GROUP_MAP = "PRINCIPAL_TO_GROUP_MAP:";
+    static final String GROUP_TO_PRINCIPAL_MAP = "GROUP_TO_PRINCIPAL_MAP:";
+    static final String GROUP_TO_GROUP_MAP = "GROUP_TO_GROUP_MAP:";
+    static final String POLICY = "POLICY:";
+    static final String GROUP = "GROUP:";
+    static final String GROUP_CLOSURE = "GROUP_CLOSURE:";
+    static final String GROUP_CLOSURE_DESCENDANTS = "GROUP_CLOSURE_DESCENDANTS:";
+    private static final LuaScript GROUP_CLOSURE_SCRIPT = LuaScript.load("group_closure.lua");
+    private static final LuaScript SET_COMMANDS_SCRIPT = LuaScript.load("set_commands.lua");
+    private static final LuaScript REVOKE_ACTIONS_SCRIPT = LuaScript.load("revoke_actions.lua");
+    private static final LuaScript RESOURCE_POLICY_HASH_SCRIPT = LuaScript.load("resource_policy_hash.lua");
+    private static final int MAX_TRANSACTION_ATTEMPTS = 16;
+    private final ClientResources clientResources;
+    // one of client and clusterClient is set, depending on RedisBackendOptions#cluster
     private final RedisClient client;
-    private final RedisCommands<String, String> sync;
-    private final ObjectMapper objectMapper;
+    private final RedisClusterClient clusterClient;
+    private final StatefulConnection<String, String> connection;
+    private final RedisClusterCommands<String, String> sync;
+    private final RedisClusterAsyncCommands<String, String> async;
+    // groups and policies are stored as bytes encoded by valueCodec, the sets as plain strings
+    private final StatefulConnection<String, byte[]> valueConnection;
+    private final RedisClusterCommands<String, byte[]> valueSync;
+    private final ValueCodec valueCodec;
+    private final RedisKeys redisKeys;
+    private final RedisAsyncBackend asyncBackend;
+    private final boolean materializedGroupClosure;
+    private final boolean resourcePolicyHashes;
+    private final RedisNearCache nearCache;
+    // MULTI and WATCH are per connection state, so transactions run on a connection of their own, one at a time
+    private final Object transactionLock = new Object();
+    private StatefulRedisConnection<String, byte[]> transactionConnection;
 
     public RedisBackend(String serverEndpoint) {
-        client = RedisClient.create("redis://" + serverEndpoint);
-        sync = client.connect().sync();
-        objectMapper = new ObjectMapper().findAndRegisterModules();
-    }
-
-    private List<String> resolvePolicyIdsForPrincipal(String principalId) {
-        // get the list of policies the principal is directly entitled to
-        final Set<String> self = sync.smembers(PRINCIPAL_TO_POLICY_MAP + principalId);
-        List<String> gids = getGroupMembershipTransitively(principalId);
-        return Stream
-                .concat(self.stream(), gids.stream().flatMap(gid -> sync.smembers(PRINCIPAL_TO_POLICY_MAP + gid).stream()))
-                .distinct()
-                .collect(toList());
-    }
-
-    private List<IdentityPolicy> loadPolicies(List<String> policyIds) {
-        return policyIds
-                .stream()
-                .map(pid -> {
-                    // TODO use Redis piplining to queue up the commands
-                    final String json = sync.get(POLICY + pid);
-                    if (json == null) {
-                        return null;
-                    }
-                    try {
-                        return objectMapper.readValue(json, ImmutableIdentityPolicy.class);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .collect(toList());
+        this(serverEndpoint, ImmutableRedisBackendOptions.builder().build());
     }
 
-    @Override
-    public void createGroup(Group group) {
-        final String json;
+    /**
+     * @param serverEndpoint host:port of a standalone Redis or, with {@link RedisBackendOptions#cluster()}, a comma
+     *                       separated list of host:port of the cluster's seed nodes
+     */
+    public RedisBackend(String serverEndpoint, RedisBackendOptions options) {
+        if (options.metrics() == Metrics.noop()) {
+            clientResources = null;
+        } else {
+            clientResources = DefaultClientResources
+                    .builder()
+                    .commandLatencyCollector(new RedisCommandMetrics(options.metrics()))
+                    .commandLatencyPublisherOptions(DefaultEventPublisherOptions.disabled())
+                    .build();
+        }
+        final RedisClusterAsyncCommands<String, byte[]> valueAsync;
+        if (options.cluster()) {
+            final List<RedisURI> seeds = new ArrayList<>();
+            for (String seed : serverEndpoint.split(",")) {
+                seeds.add(RedisURI.create("redis://" + seed.trim()));
+            }
+            client = null;
+            clusterClient = clientResources == null
+                    ? RedisClusterClient.create(seeds)
+                    : RedisClusterClient.create(clientResources, seeds);
+            final StatefulRedisClusterConnection<String, String> clusterConnection = clusterClient.connect();
+            final StatefulRedisClusterConnection<String, byte[]> clusterValueConnection = clusterClient.connect(StringByteArrayCodec.INSTANCE);
+            if (options.readFromReplicas()) {
+                clusterConnection.setReadFrom(ReadFrom.SLAVE_PREFERRED);
+                clusterValueConnection.setReadFrom(ReadFrom.SLAVE_PREFERRED);
+            }
+            connection = clusterConnection;
+            sync = clusterConnection.sync();
+            async = clusterConnection.async();
+            valueConnection = clusterValueConnection;
+            valueSync = clusterValueConnection.sync();
+            valueAsync = clusterValueConnection.async();
+        } else {
+            client = clientResources == null
+                    ? RedisClient.create("redis://" + serverEndpoint)
+                    : RedisClient.create(clientResources, "redis://" + serverEndpoint);
+            clusterClient = null;
+            final StatefulRedisConnection<String, String> standaloneConnection = client.connect();
+            final StatefulRedisConnection<String, byte[]> standaloneValueConnection = client.connect(StringByteArrayCodec.INSTANCE);
+            connection = standaloneConnection;
+            sync = standaloneConnection.sync();
+            async = standaloneConnection.async();
+            valueConnection = standaloneValueConnection;
+            valueSync = standaloneValueConnection.sync();
+            valueAsync = standaloneValueConnection.async();
+        }
+        valueCodec = options.valueCodec();
+        redisKeys = RedisKeys.of(options);
+        nearCache = options.nearCacheEnabled()
+                ? new RedisNearCache(client, RedisURI.create("redis://" + serverEndpoint).getDatabase(), options.nearCacheMaxEntries())
+                : null;
+        asyncBackend = new RedisAsyncBackend(async, valueAsync, options, nearCache);
+        materializedGroupClosure = options.materializedGroupClosure();
+        resourcePolicyHashes = options.resourcePolicyHashes();
+    }
+
+    /**
+     * @return a non-blocking view of this backend's read side, sharing the same connection
+     */
+    public RedisAsyncBackend asyncBackend() {
+        return asyncBackend;
+    }
+
+    /**
+     * Wait for a command issued through the asynchronous API. Issuing several commands before awaiting any of them
+     * lets Lettuce pipeline them onto the connection without waiting for each reply in turn
+     */
+    private <T> T await(RedisFuture<T> future) {
+        return LettuceFutures.awaitOrCancel(future, connection.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(connection.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RedisException) {
+                throw (RedisException) e.getCause();
+            }
+            throw new RedisException(e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RedisCommandTimeoutException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisCommandInterruptedException(e);
+        }
+    }
+
+    /**
+     * Drop keys this process just wrote from the near cache, so that its next reads see the write without waiting for the
+     * keyspace notification to come back
+     */
+    private void written(String... keys) {
+        if (nearCache != null) {
+            for (String key : keys) {
+                nearCache.invalidate(key);
+            }
+        }
+    }
+
+    private byte[] encodeGroup(Group group) {
         // we do not persist group memberships de-normalized
         // since the data structure is normalized for look up efficiency
-        try {
-            json = objectMapper.writeValueAsString(
-                    ImmutableGroup.copyOf(group).withAssignments(Collections.emptyList())
-            );
-            sync.set(GROUP + group.id(), json);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
+        return valueCodec.encode(ImmutableGroup.copyOf(group).withAssignments(Collections.emptyList()));
+    }
+
+    private static byte[][] utf8(String... members) {
+        final byte[][] ret = new byte[members.length][];
+        for (int i = 0; i < members.length; i++) {
+            ret[i] = members[i].getBytes(StandardCharsets.UTF_8);
         }
+        return ret;
+    }
+
+    /**
+     * SADD each member, given as key, member pairs, to its set atomically and in a single round trip
+     */
+    private void addToSets(String... keysAndMembers) {
+        setCommands(true, keysAndMembers);
+    }
+
+    /**
+     * SREM each member, given as key, member pairs, from its set atomically and in a single round trip
+     */
+    private void removeFromSets(String... keysAndMembers) {
+        setCommands(false, keysAndMembers);
+    }
+
+    private void setCommands(boolean add, String... keysAndMembers) {
+        final String[] keys = new String[keysAndMembers.length / 2];
+        final String[] args = new String[keys.length + 1];
+        args[0] = add ? "add" : "remove";
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keysAndMembers[2 * i];
+            args[i + 1] = keysAndMembers[2 * i + 1];
+        }
+        if (clusterClient != null && !sameSlot(keys)) {
+            // the keys of both sides of an assignment belong to different ids, hence usually to different slots, which a
+            // script cannot span. The commands are pipelined instead
+            final List<RedisFuture<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < keys.length; i++) {
+                futures.add(add ? async.sadd(keys[i], args[i + 1]) : async.srem(keys[i], args[i + 1]));
+            }
+            futures.forEach(this::await);
+        } else {
+            await(SET_COMMANDS_SCRIPT.<Long>eval(async, ScriptOutputType.INTEGER, keys, args));
+        }
+        written(keys);
+    }
+
+    static boolean sameSlot(String... keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (SlotHash.getSlot(keys[i]) != SlotHash.getSlot(keys[0])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void createGroup(Group group) {
+        valueSync.set(redisKeys.key(GROUP, group.id()), encodeGroup(group));
     }
 
     @Override
     public Group getGroup(String id) {
-        final String json = sync.get(GROUP + id);
-        try {
-            final Set<String> pMembers = sync.smembers(GROUP_TO_PRINCIPAL_MAP + id);
-            final Set<String> gMembers = sync.smembers(GROUP_TO_GROUP_MAP + id);
-            if (json == null) {
-                return null;
-            }
-            final ImmutableGroup group = objectMapper.readValue(json, ImmutableGroup.class);
-            return group.withAssignments(
-                    Stream.concat(
-                            pMembers
-                                    .stream()
-                                    .map(
-                                            p -> ImmutableGroupAssignment.builder().groupId(id).principal(p).build()),
-                            gMembers
-                                    .stream()
-                                    .map(
-                                            p -> ImmutableGroupAssignment.builder().groupId(id).principalIsGroup(true).principal(p).build()
-                                    )
-                    ).collect(toList())
-            );
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
+        final byte[] value = valueSync.get(redisKeys.key(GROUP, id));
+        final Set<String> pMembers = sync.smembers(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, id));
+        final Set<String> gMembers = sync.smembers(redisKeys.key(GROUP_TO_GROUP_MAP, id));
+        if (value == null) {
+            return null;
         }
+        final ImmutableGroup group = valueCodec.decode(value, ImmutableGroup.class);
+        return group.withAssignments(
+                Stream.concat(
+                        pMembers
+                                .stream()
+                                .map(
+                                        p -> ImmutableGroupAssignment.builder().groupId(id).principal(p).build()),
+                        gMembers
+                                .stream()
+                                .map(
+                                        p -> ImmutableGroupAssignment.builder().groupId(id).principalIsGroup(true).principal(p).build()
+                                )
+                ).collect(toList())
+        );
     }
 
     @Override
@@ -118,13 +273,19 @@ public class RedisBackend implements Backend, Closeable {
     @Override
     public void deleteGroup(String groupId) {
         // delete any associates created by the given group
-        final Set<String> principals = sync.smembers(GROUP_TO_PRINCIPAL_MAP + groupId);
-        principals.forEach(principal -> {
-            sync.srem(GROUP_TO_GROUP_MAP + principal, groupId);
-            sync.srem(PRINCIPAL_TO_GROUP_MAP + principal, groupId);
-        });
-        sync.del(GROUP_TO_PRINCIPAL_MAP + groupId);
-        sync.del(GROUP + groupId);
+        final Set<String> principals = sync.smembers(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId));
+        final List<String> keysAndMembers = new ArrayList<>();
+        principals.forEach(principal -> keysAndMembers.addAll(Arrays.asList(
+                redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId), principal,
+                redisKeys.key(GROUP_TO_GROUP_MAP, principal), groupId,
+                redisKeys.key(PRINCIPAL_TO_GROUP_MAP, principal), groupId
+        )));
+        writeGroupEdges(false, new String[]{groupId}, keysAndMembers.toArray(new String[0]));
+        final List<RedisFuture<?>> futures = new ArrayList<>();
+        futures.add(async.del(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId)));
+        futures.add(async.del(redisKeys.key(GROUP, groupId)));
+        futures.forEach(this::await);
+        written(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId));
     }
 
     @Override
@@ -134,29 +295,178 @@ public class RedisBackend implements Backend, Closeable {
 
     @Override
     public void assignPrincipalToGroup(String groupId, String principalId, boolean principalIsGroup) {
-        sync.sadd(GROUP_TO_PRINCIPAL_MAP + groupId, principalId);
-        if (principalIsGroup) {
-            sync.sadd(GROUP_TO_GROUP_MAP + principalId, groupId);
-        } else {
-            sync.sadd(PRINCIPAL_TO_GROUP_MAP + principalId, groupId);
-        }
+        writeGroupEdges(
+                true,
+                new String[]{principalId},
+                redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId), principalId,
+                redisKeys.key(principalIsGroup ? GROUP_TO_GROUP_MAP : PRINCIPAL_TO_GROUP_MAP, principalId), groupId
+        );
     }
 
     @Override
     public void unassignPrincipalFromGroup(String groupId, String principalId) {
-        sync.srem(GROUP_TO_PRINCIPAL_MAP + groupId, principalId);
-        sync.srem(GROUP_TO_GROUP_MAP + groupId, principalId);
-        sync.srem(PRINCIPAL_TO_GROUP_MAP + principalId, groupId);
+        // GROUP_TO_GROUP_MAP is keyed by the member group, same as PRINCIPAL_TO_GROUP_MAP
+        writeGroupEdges(
+                false,
+                new String[]{principalId},
+                redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId), principalId,
+                redisKeys.key(GROUP_TO_GROUP_MAP, principalId), groupId,
+                redisKeys.key(PRINCIPAL_TO_GROUP_MAP, principalId), groupId
+        );
+    }
+
+    /**
+     * SADD or SREM each member, given as key, member pairs, to or from the group edge set it belongs in. With
+     * {@link RedisBackendOptions#materializedGroupClosure()} the closure of the given roots, whose edges change, and of
+     * everything that belongs to them is recomputed by the same script, so readers never observe edges and a closure
+     * that disagree
+     */
+    private void writeGroupEdges(boolean add, String[] roots, String... keysAndMembers) {
+        if (materializedGroupClosure) {
+            refreshGroupClosure(add, keysAndMembers, roots);
+        } else if (keysAndMembers.length > 0) {
+            setCommands(add, keysAndMembers);
+        }
+    }
+
+    private void refreshGroupClosure(boolean add, String[] keysAndMembers, String... roots) {
+        final String[] keys = new String[keysAndMembers.length / 2];
+        final String[] members = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keysAndMembers[2 * i];
+            members[i] = keysAndMembers[2 * i + 1];
+        }
+        final List<String> refreshed = await(GROUP_CLOSURE_SCRIPT.<List<String>>eval(async, ScriptOutputType.MULTI, keys, groupClosureArgs(add, members, roots)));
+        written(keys);
+        refreshed.forEach(principalId -> written(redisKeys.key(GROUP_CLOSURE, principalId)));
+    }
+
+    /**
+     * The ARGV of group_closure.lua, for the given members of its KEYS and the given roots
+     */
+    private static String[] groupClosureArgs(boolean add, String[] members, String... roots) {
+        final List<String> args = new ArrayList<>(members.length + roots.length + 5);
+        args.add(add ? "add" : "remove");
+        args.addAll(Arrays.asList(members));
+        args.addAll(Arrays.asList(PRINCIPAL_TO_GROUP_MAP, GROUP_TO_GROUP_MAP, GROUP_CLOSURE, GROUP_CLOSURE_DESCENDANTS));
+        args.addAll(Arrays.asList(roots));
+        return args.toArray(new String[0]);
+    }
+
+    /**
+     * Materialize the transitive group membership of every principal that belongs to a group, i.e. after turning on
+     * {@link RedisBackendOptions#materializedGroupClosure()} for a data set written without it
+     */
+    public void rebuildGroupClosure() {
+        for (String prefix : Arrays.asList(PRINCIPAL_TO_GROUP_MAP, GROUP_TO_GROUP_MAP)) {
+            ScanCursor cursor = ScanCursor.INITIAL;
+            do {
+                final KeyScanCursor<String> keys = sync.scan(cursor, ScanArgs.Builder.matches(prefix + "*").limit(1000));
+                if (!keys.getKeys().isEmpty()) {
+                    refreshGroupClosure(true, new String[0], keys.getKeys().stream().map(key -> redisKeys.id(prefix, key)).toArray(String[]::new));
+                }
+                cursor = keys;
+            } while (!cursor.isFinished());
+        }
+    }
+
+    /**
+     * Rewrite every group and identity policy in the format of {@link RedisBackendOptions#valueCodec()}, i.e. after
+     * switching codecs on a data set written with another one. Values are read through either codec in the meantime, so
+     * this can run while the data set is in use: each value is rewritten under a WATCH, and one that changes while
+     * being rewritten is left alone since its writer already used the current codec. With
+     * {@link RedisBackendOptions#cluster()}, the masters known to the client are scanned one after the other
+     *
+     * @return the number of values rewritten
+     */
+    public int migrateValues() {
+        if (clusterClient != null) {
+            // SCAN only covers the node it is sent to and WATCH the keys of its connection, hence one pass per master
+            int migrated = 0;
+            clusterClient.reloadPartitions();
+            try (StatefulRedisClusterConnection<String, byte[]> clusterConnection = clusterClient.connect(StringByteArrayCodec.INSTANCE)) {
+                for (RedisClusterNode node : clusterClient.getPartitions()) {
+                    if (node.is(RedisClusterNode.NodeFlag.MASTER)) {
+                        migrated += migrateValues(clusterConnection.getConnection(node.getNodeId()).sync());
+                    }
+                }
+            }
+            return migrated;
+        }
+        synchronized (transactionLock) {
+            if (transactionConnection == null) {
+                transactionConnection = client.connect(StringByteArrayCodec.INSTANCE);
+            }
+            return migrateValues(transactionConnection.sync());
+        }
+    }
+
+    private int migrateValues(RedisCommands<String, byte[]> commands) {
+        int migrated = 0;
+        for (Map.Entry<String, Class<?>> prefix : valueTypes().entrySet()) {
+            ScanCursor cursor = ScanCursor.INITIAL;
+            do {
+                final KeyScanCursor<String> keys = commands.scan(cursor, ScanArgs.Builder.matches(prefix.getKey() + "*").limit(1000));
+                for (String key : keys.getKeys()) {
+                    commands.watch(key);
+                    final byte[] value = commands.get(key);
+                    final byte[] encoded = value == null ? null : valueCodec.encode(valueCodec.decode(value, prefix.getValue()));
+                    if (encoded == null || Arrays.equals(value, encoded)) {
+                        commands.unwatch();
+                        continue;
+                    }
+                    commands.multi();
+                    commands.set(key, encoded);
+                    if (!commands.exec().wasDiscarded()) {
+                        migrated++;
+                    }
+                }
+                cursor = keys;
+            } while (!cursor.isFinished());
+        }
+        return migrated;
+    }
+
+    /**
+     * Move every resource policy still stored in the original layout into its RESOURCE_POLICY_HASH, i.e. after turning
+     * on {@link RedisBackendOptions#resourcePolicyHashes()} for a data set written without it. Each resource is moved by
+     * the script grants and revocations run, atomically, so this can run while the data set is in use
+     *
+     * @return the number of resources moved
+     */
+    public int migrateResourcePolicies() {
+        if (!resourcePolicyHashes) {
+            throw new IllegalStateException("Resource policies are only migrated into hashes with resourcePolicyHashes enabled");
+        }
+        int migrated = 0;
+        ScanCursor cursor = ScanCursor.INITIAL;
+        do {
+            final KeyScanCursor<String> keys = sync.scan(cursor, ScanArgs.Builder.matches(RESOURCE_POLICY_MAP + "*").limit(1000));
+            for (String key : keys.getKeys()) {
+                if (updateResourcePolicyHash("migrate", redisKeys.id(RESOURCE_POLICY_MAP, key), null, Collections.emptySet()) > 0) {
+                    migrated++;
+                }
+            }
+            cursor = keys;
+        } while (!cursor.isFinished());
+        return migrated;
+    }
+
+    private static Map<String, Class<?>> valueTypes() {
+        final Map<String, Class<?>> ret = new LinkedHashMap<>();
+        ret.put(GROUP, ImmutableGroup.class);
+        ret.put(POLICY, ImmutableIdentityPolicy.class);
+        return ret;
     }
 
     @Override
     public List<String> getAllPrincipalsForGroup(String groupId) {
-        return new ArrayList<>(sync.smembers(GROUP_TO_PRINCIPAL_MAP + groupId));
+        return new ArrayList<>(sync.smembers(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId)));
     }
 
     @Override
     public List<String> getGroupMembership(String principalId) {
-        final Set<String> set = sync.smembers(PRINCIPAL_TO_GROUP_MAP + principalId);
+        final Set<String> set = sync.smembers(redisKeys.key(PRINCIPAL_TO_GROUP_MAP, principalId));
         return new ArrayList<>(set);
     }
 
@@ -169,7 +479,7 @@ public class RedisBackend implements Backend, Closeable {
         while (!stack.isEmpty()) {
             final Node node = stack.pop();
             seen.add(node.getName());
-            for (String childGid : sync.smembers(GROUP_TO_PRINCIPAL_MAP + node.getName())) {
+            for (String childGid : sync.smembers(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, node.getName()))) {
                 if (!seen.contains(childGid)) {
                     Node childNode = new Node().setName(childGid).setChildren(new ArrayList<>());
                     node.getChildren().add(childNode);
@@ -182,27 +492,30 @@ public class RedisBackend implements Backend, Closeable {
 
     @Override
     public void createPolicy(IdentityPolicy identityPolicy) {
-        try {
-            final String json = objectMapper.writeValueAsString(identityPolicy);
-            sync.set(POLICY + identityPolicy.id(), json);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
+        valueSync.set(redisKeys.key(POLICY, identityPolicy.id()), valueCodec.encode(identityPolicy));
+        written(redisKeys.key(POLICY, identityPolicy.id()));
     }
 
     @Override
     public IdentityPolicy getPolicy(String policyId) {
-        final String json = sync.get(POLICY + policyId);
-        try {
-            if (json == null) {
-                return null;
+        final byte[] value = valueSync.get(redisKeys.key(POLICY, policyId));
+        return value == null ? null : valueCodec.decode(value, ImmutableIdentityPolicy.class);
+    }
+
+    @Override
+    public Map<String, IdentityPolicy> getPolicies(Collection<String> policyIds) {
+        final Map<String, IdentityPolicy> ret = new HashMap<>();
+        if (policyIds.isEmpty()) {
+            return ret;
+        }
+        final String[] keys = policyIds.stream().map(policyId -> redisKeys.key(POLICY, policyId)).toArray(String[]::new);
+        // a single MGET reads every policy in one round trip
+        for (KeyValue<String, byte[]> value : valueSync.mget(keys)) {
+            if (value.hasValue()) {
+                ret.put(redisKeys.id(POLICY, value.getKey()), valueCodec.decode(value.getValue(), ImmutableIdentityPolicy.class));
             }
-            return objectMapper.readValue(json, ImmutableIdentityPolicy.class);
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
         }
+        return ret;
     }
 
     @Override
@@ -213,90 +526,440 @@ public class RedisBackend implements Backend, Closeable {
     @Override
     public void deletePolicy(String policyId) {
         // we need to remove all relations created by the existence of this policy
-        final Set<String> principals = sync.smembers(POLICY_TO_PRINCIPAL_MAP + policyId);
-        principals.forEach(principal -> sync.srem(PRINCIPAL_TO_POLICY_MAP + principal, policyId));
-        sync.del(POLICY_TO_PRINCIPAL_MAP + policyId);
-        sync.del(POLICY + policyId);
+        final Set<String> principals = sync.smembers(redisKeys.key(POLICY_TO_PRINCIPAL_MAP, policyId));
+        final List<RedisFuture<?>> futures = new ArrayList<>();
+        principals.forEach(principal -> futures.add(async.srem(redisKeys.key(PRINCIPAL_TO_POLICY_MAP, principal), policyId)));
+        futures.add(async.del(redisKeys.key(POLICY_TO_PRINCIPAL_MAP, policyId)));
+        futures.add(async.del(redisKeys.key(POLICY, policyId)));
+        futures.forEach(this::await);
+        principals.forEach(principal -> written(redisKeys.key(PRINCIPAL_TO_POLICY_MAP, principal)));
+        written(redisKeys.key(POLICY_TO_PRINCIPAL_MAP, policyId), redisKeys.key(POLICY, policyId));
     }
 
     @Override
     public void assignPolicy(String policyId, String principalId) {
-        sync.sadd(POLICY_TO_PRINCIPAL_MAP + policyId, principalId);
-        sync.sadd(PRINCIPAL_TO_POLICY_MAP + principalId, policyId);
+        addToSets(
+                redisKeys.key(POLICY_TO_PRINCIPAL_MAP, policyId), principalId,
+                redisKeys.key(PRINCIPAL_TO_POLICY_MAP, principalId), policyId
+        );
     }
 
     @Override
     public void unAssignPolicy(String policyId, String principalId) {
-        sync.srem(POLICY_TO_PRINCIPAL_MAP + policyId, principalId);
-        sync.srem(PRINCIPAL_TO_POLICY_MAP + principalId, policyId);
+        removeFromSets(
+                redisKeys.key(POLICY_TO_PRINCIPAL_MAP, policyId), principalId,
+                redisKeys.key(PRINCIPAL_TO_POLICY_MAP, principalId), policyId
+        );
     }
 
     @Override
     public List<String> getGroupMembershipTransitively(String principalId) {
-        final Set<String> gids = new HashSet<>();
-        final Set<String> immediateMembership = sync.smembers(PRINCIPAL_TO_GROUP_MAP + principalId);
-        final Queue<String> queue = new ArrayDeque<>(immediateMembership);
-        // TODO this operation is O(M) where M = # of edges connecting the groups, maybe there is a way to optimize
-        while (!queue.isEmpty()) {
-            final String gid = queue.poll();
-            gids.add(gid);
-            for (String childGid : sync.smembers(GROUP_TO_GROUP_MAP + gid)) {
-                if (!gids.contains(childGid)) {
-                    queue.offer(childGid);
+        // BFS one frontier at a time, with the SMEMBERS of a whole frontier pipelined in a single round trip,
+        // or in a single EVALSHA when the traversal runs server side
+        return await(asyncBackend.getGroupMembershipTransitively(principalId));
+    }
+
+    /**
+     * Apply the given mutations in a single MULTI/EXEC transaction, pipelined in one round trip. The sets a mutation has
+     * to read first (the members of a deleted group or policy, the actions left after a revocation) are WATCHed and read
+     * on the transaction's connection, and the whole batch is retried should any of them change before EXEC. The
+     * materialized group closure, when enabled, is refreshed once for the batch by a script queued last in the same
+     * transaction. It is sent through EVAL rather than EVALSHA, as a NOSCRIPT error would only surface once EXEC has
+     * already applied the rest of the batch
+     */
+    @Override
+    public void applyMutations(List<Mutation> mutations) {
+        if (clusterClient != null) {
+            // a batch spans any number of slots, which MULTI/EXEC cannot
+            Backend.super.applyMutations(mutations);
+            return;
+        }
+        Transaction transaction = null;
+        synchronized (transactionLock) {
+            if (transactionConnection == null) {
+                transactionConnection = client.connect(StringByteArrayCodec.INSTANCE);
+            }
+            final RedisAsyncCommands<String, byte[]> commands = transactionConnection.async();
+            for (int attempt = 0; attempt < MAX_TRANSACTION_ATTEMPTS && transaction == null; attempt++) {
+                final Transaction candidate = new Transaction(mutations);
+                boolean multi = false;
+                try {
+                    candidate.prepare(commands);
+                    // every command is queued before waiting for any reply
+                    commands.multi();
+                    multi = true;
+                    candidate.commands.forEach(command -> command.accept(commands));
+                    if (materializedGroupClosure && !candidate.closures.isEmpty()) {
+                        final String[] args = groupClosureArgs(true, new String[0], candidate.closures.toArray(new String[0]));
+                        candidate.refreshed = commands.eval(GROUP_CLOSURE_SCRIPT.source(), ScriptOutputType.MULTI, new String[0], utf8(args));
+                    }
+                    if (!await(commands.exec()).wasDiscarded()) {
+                        transaction = candidate;
+                    }
+                } catch (RuntimeException e) {
+                    // leave the connection clean for the next batch
+                    if (multi) {
+                        commands.discard();
+                    } else {
+                        commands.unwatch();
+                    }
+                    throw e;
+                }
+            }
+        }
+        if (transaction == null) {
+            throw new RedisException("Gave up applying mutations after " + MAX_TRANSACTION_ATTEMPTS + " concurrent modifications");
+        }
+        written(transaction.written.toArray(new String[0]));
+        if (transaction.refreshed != null) {
+            await(transaction.refreshed).forEach(principalId -> written(redisKeys.key(GROUP_CLOSURE, new String(principalId, StandardCharsets.UTF_8))));
+        }
+    }
+
+    /**
+     * The commands standing for a batch of {@link Mutation}s, along with a view of the sets they need to read that
+     * reflects the commands queued so far
+     * <p>
+     * With {@link RedisBackendOptions#resourcePolicyHashes()}, grants and revocations read the whole hash of their
+     * resource, and any of its assignments still in the original layout are moved into the hash by the same transaction
+     */
+    private class Transaction {
+        private final List<Mutation> mutations;
+        private final Set<String> resources = new LinkedHashSet<>();
+        private final Map<String, Set<String>> sets = new HashMap<>();
+        // resource -> principal -> actions, for the RESOURCE_POLICY_HASH of every resource in the transaction
+        private final Map<String, Map<String, Set<String>>> hashes = new HashMap<>();
+        private final List<Consumer<RedisAsyncCommands<String, byte[]>>> commands = new ArrayList<>();
+        private final Set<String> written = new LinkedHashSet<>();
+        private final Set<String> closures = new LinkedHashSet<>();
+        // the principals whose closure the transaction recomputed, once EXEC has replied
+        private RedisFuture<List<byte[]>> refreshed;
+
+        private Transaction(List<Mutation> mutations) {
+            this.mutations = mutations;
+        }
+
+        /**
+         * WATCH and read the sets the mutations depend on, then translate the mutations into commands
+         */
+        private void prepare(RedisAsyncCommands<String, byte[]> async) {
+            final Set<String> keys = new LinkedHashSet<>();
+            for (Mutation mutation : mutations) {
+                switch (mutation.type()) {
+                    case DeleteGroup:
+                        keys.add(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, mutation.groupId().get()));
+                        break;
+                    case DeletePolicy:
+                        keys.add(redisKeys.key(POLICY_TO_PRINCIPAL_MAP, mutation.policyId().get()));
+                        break;
+                    case GrantActions:
+                        if (resourcePolicyHashes) {
+                            resources.add(mutation.resource().get());
+                        }
+                        break;
+                    case RevokeActions:
+                        if (resourcePolicyHashes) {
+                            resources.add(mutation.resource().get());
+                        } else {
+                            keys.add(redisKeys.actionsKey(mutation.resource().get(), mutation.principalId().get()));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            resources.forEach(resource -> keys.add(redisKeys.key(RESOURCE_POLICY_MAP, resource)));
+            final List<String> watched = new ArrayList<>(keys);
+            resources.forEach(resource -> watched.add(redisKeys.key(RESOURCE_POLICY_HASH, resource)));
+            if (!watched.isEmpty()) {
+                async.watch(watched.toArray(new String[0]));
+                final Map<String, RedisFuture<Map<String, byte[]>>> fields = new HashMap<>();
+                resources.forEach(resource -> fields.put(resource, async.hgetall(redisKeys.key(RESOURCE_POLICY_HASH, resource))));
+                read(async, keys);
+                fields.forEach((resource, future) -> {
+                    final Map<String, Set<String>> hash = new HashMap<>();
+                    await(future).forEach((principal, actions) -> hash.put(principal, ActionSets.decode(new String(actions, StandardCharsets.UTF_8))));
+                    hashes.put(resource, hash);
+                });
+            }
+            // the principals of a policy in the original layout are only known now, their actions are read in turn
+            final Set<String> actionKeys = new LinkedHashSet<>();
+            for (String resource : resources) {
+                for (String principal : sets.get(redisKeys.key(RESOURCE_POLICY_MAP, resource))) {
+                    actionKeys.add(redisKeys.actionsKey(resource, principal));
+                }
+            }
+            if (!actionKeys.isEmpty()) {
+                async.watch(actionKeys.toArray(new String[0]));
+                read(async, actionKeys);
+            }
+            resources.forEach(this::absorb);
+            mutations.forEach(this::translate);
+        }
+
+        private void read(RedisAsyncCommands<String, byte[]> async, Collection<String> keys) {
+            final Map<String, RedisFuture<Set<byte[]>>> futures = new HashMap<>();
+            keys.forEach(key -> futures.put(key, async.smembers(key)));
+            futures.forEach((key, future) -> {
+                final Set<String> members = new HashSet<>();
+                await(future).forEach(member -> members.add(new String(member, StandardCharsets.UTF_8)));
+                sets.put(key, members);
+            });
+        }
+
+        /**
+         * Move the assignments of the given resource that are still in the original layout into its hash
+         */
+        private void absorb(String resource) {
+            final Set<String> principals = sets.get(redisKeys.key(RESOURCE_POLICY_MAP, resource));
+            if (principals.isEmpty()) {
+                return;
+            }
+            final Map<String, Set<String>> hash = hashes.get(resource);
+            for (String principal : principals) {
+                final String actionsKey = redisKeys.actionsKey(resource, principal);
+                hash.computeIfAbsent(principal, k -> new HashSet<>()).addAll(sets.get(actionsKey));
+                hset(resource, principal);
+                del(actionsKey);
+            }
+            del(redisKeys.key(RESOURCE_POLICY_MAP, resource));
+        }
+
+        private void translate(Mutation mutation) {
+            switch (mutation.type()) {
+                case CreateGroup:
+                case UpdateGroup:
+                    final byte[] group = encodeGroup(mutation.group().get());
+                    command(redisKeys.key(GROUP, mutation.group().get().id()), c -> c.set(redisKeys.key(GROUP, mutation.group().get().id()), group));
+                    break;
+                case DeleteGroup: {
+                    final String groupId = mutation.groupId().get();
+                    for (String principal : new ArrayList<>(sets.get(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId)))) {
+                        srem(redisKeys.key(GROUP_TO_GROUP_MAP, principal), groupId);
+                        srem(redisKeys.key(PRINCIPAL_TO_GROUP_MAP, principal), groupId);
+                    }
+                    del(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId));
+                    del(redisKeys.key(GROUP, groupId));
+                    closures.add(groupId);
+                    break;
+                }
+                case AssignPrincipalToGroup: {
+                    final String groupId = mutation.groupId().get();
+                    final String principalId = mutation.principalId().get();
+                    sadd(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId), principalId);
+                    sadd(redisKeys.key(mutation.principalIsGroup() ? GROUP_TO_GROUP_MAP : PRINCIPAL_TO_GROUP_MAP, principalId), groupId);
+                    closures.add(principalId);
+                    break;
+                }
+                case UnassignPrincipalFromGroup: {
+                    final String groupId = mutation.groupId().get();
+                    final String principalId = mutation.principalId().get();
+                    srem(redisKeys.key(GROUP_TO_PRINCIPAL_MAP, groupId), principalId);
+                    srem(redisKeys.key(GROUP_TO_GROUP_MAP, principalId), groupId);
+                    srem(redisKeys.key(PRINCIPAL_TO_GROUP_MAP, principalId), groupId);
+                    closures.add(principalId);
+                    break;
                 }
+                case CreatePolicy:
+                case UpdatePolicy:
+                    final byte[] policy = valueCodec.encode(mutation.policy().get());
+                    command(redisKeys.key(POLICY, mutation.policy().get().id()), c -> c.set(redisKeys.key(POLICY, mutation.policy().get().id()), policy));
+                    break;
+                case DeletePolicy: {
+                    final String policyId = mutation.policyId().get();
+                    for (String principal : new ArrayList<>(sets.get(redisKeys.key(POLICY_TO_PRINCIPAL_MAP, policyId)))) {
+                        srem(redisKeys.key(PRINCIPAL_TO_POLICY_MAP, principal), policyId);
+                    }
+                    del(redisKeys.key(POLICY_TO_PRINCIPAL_MAP, policyId));
+                    del(redisKeys.key(POLICY, policyId));
+                    break;
+                }
+                case AssignPolicy:
+                    sadd(redisKeys.key(POLICY_TO_PRINCIPAL_MAP, mutation.policyId().get()), mutation.principalId().get());
+                    sadd(redisKeys.key(PRINCIPAL_TO_POLICY_MAP, mutation.principalId().get()), mutation.policyId().get());
+                    break;
+                case UnAssignPolicy:
+                    srem(redisKeys.key(POLICY_TO_PRINCIPAL_MAP, mutation.policyId().get()), mutation.principalId().get());
+                    srem(redisKeys.key(PRINCIPAL_TO_POLICY_MAP, mutation.principalId().get()), mutation.policyId().get());
+                    break;
+                case GrantActions: {
+                    final String resource = mutation.resource().get();
+                    final String principal = mutation.principalId().get();
+                    if (resourcePolicyHashes) {
+                        hashes.get(resource).computeIfAbsent(principal, k -> new HashSet<>()).addAll(mutation.actions());
+                        hset(resource, principal);
+                        break;
+                    }
+                    sadd(redisKeys.actionsKey(resource, principal), mutation.actions().toArray(new String[0]));
+                    sadd(redisKeys.key(RESOURCE_POLICY_MAP, resource), principal);
+                    break;
+                }
+                case RevokeActions: {
+                    final String resource = mutation.resource().get();
+                    final String principal = mutation.principalId().get();
+                    if (resourcePolicyHashes) {
+                        final Set<String> actions = hashes.get(resource).get(principal);
+                        if (actions != null) {
+                            actions.removeAll(mutation.actions());
+                            hset(resource, principal);
+                        }
+                        break;
+                    }
+                    final String actionsKey = redisKeys.actionsKey(resource, principal);
+                    srem(actionsKey, mutation.actions().toArray(new String[0]));
+                    if (sets.get(actionsKey).isEmpty()) {
+                        srem(redisKeys.key(RESOURCE_POLICY_MAP, resource), principal);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unsupported mutation " + mutation.type());
+            }
+        }
+
+        private void command(String key, Consumer<RedisAsyncCommands<String, byte[]>> command) {
+            commands.add(command);
+            written.add(key);
+        }
+
+        private void sadd(String key, String... members) {
+            if (members.length == 0) {
+                return;
+            }
+            final byte[][] encoded = utf8(members);
+            command(key, c -> c.sadd(key, encoded));
+            sets.computeIfPresent(key, (k, set) -> {
+                set.addAll(Arrays.asList(members));
+                return set;
+            });
+        }
+
+        private void srem(String key, String... members) {
+            if (members.length == 0) {
+                return;
+            }
+            final byte[][] encoded = utf8(members);
+            command(key, c -> c.srem(key, encoded));
+            sets.computeIfPresent(key, (k, set) -> {
+                set.removeAll(Arrays.asList(members));
+                return set;
+            });
+        }
+
+        private void del(String key) {
+            command(key, c -> c.del(key));
+            sets.computeIfPresent(key, (k, set) -> new HashSet<>());
+        }
+
+        /**
+         * Write the actions the view holds for the given principal into the hash of the given resource, dropping the
+         * principal's field once it holds none
+         */
+        private void hset(String resource, String principal) {
+            final String key = redisKeys.key(RESOURCE_POLICY_HASH, resource);
+            final Set<String> actions = hashes.get(resource).get(principal);
+            if (actions == null || actions.isEmpty()) {
+                hashes.get(resource).remove(principal);
+                command(key, c -> c.hdel(key, principal));
+            } else {
+                final byte[] value = ActionSets.encode(actions).getBytes(StandardCharsets.UTF_8);
+                command(key, c -> c.hset(key, principal, value));
             }
         }
-        return new ArrayList<>(gids);
     }
 
     @Override
     public void close() {
-        sync.shutdown(true);
-        client.shutdown();
+        if (nearCache != null) {
+            nearCache.close();
+        }
+        synchronized (transactionLock) {
+            if (transactionConnection != null) {
+                transactionConnection.close();
+            }
+        }
+        valueConnection.close();
+        if (clusterClient != null) {
+            connection.close();
+            clusterClient.shutdown();
+        } else {
+            sync.shutdown(true);
+            client.shutdown();
+        }
+        if (clientResources != null) {
+            clientResources.shutdown();
+        }
     }
 
     @Override
     public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId) {
-        final List<String> policyIds = resolvePolicyIdsForPrincipal(principalId);
-        return loadPolicies(policyIds);
+        return await(asyncBackend.fetchIdentityPoliciesTransitivelyForPrincipal(principalId));
+    }
+
+    @Override
+    public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId, Set<String> missingPolicyIds) {
+        return await(asyncBackend.fetchIdentityPoliciesTransitivelyForPrincipal(principalId, missingPolicyIds));
     }
 
     @Override
     public void grantActions(String resource, String principal, Set<String> actions) {
-        sync.sadd(RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP + resource + ":" + principal, actions.toArray(new String[0]));
-        sync.sadd(RESOURCE_POLICY_MAP + resource, principal);
+        if (resourcePolicyHashes) {
+            updateResourcePolicyHash("grant", resource, principal, actions);
+            return;
+        }
+        final String actionsKey = redisKeys.actionsKey(resource, principal);
+        final List<String> keysAndMembers = new ArrayList<>();
+        for (String action : actions) {
+            keysAndMembers.addAll(Arrays.asList(actionsKey, action));
+        }
+        keysAndMembers.addAll(Arrays.asList(redisKeys.key(RESOURCE_POLICY_MAP, resource), principal));
+        addToSets(keysAndMembers.toArray(new String[0]));
     }
 
     @Override
     public void revokeActions(String resource, String principal, Set<String> actions) {
-        // TODO make this a transaction & resilient against simple race conditions
-        final Set<String> exisit = sync.smembers(RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP + resource + ":" + principal);
-        sync.srem(RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP + resource + ":" + principal, actions.toArray(new String[0]));
-        exisit.removeAll(actions);
-        if (exisit.isEmpty()) {
-            sync.srem(RESOURCE_POLICY_MAP + resource, principal);
+        if (resourcePolicyHashes) {
+            updateResourcePolicyHash("revoke", resource, principal, actions);
+            return;
         }
+        final String actionsKey = redisKeys.actionsKey(resource, principal);
+        final String[] keys = {redisKeys.key(RESOURCE_POLICY_MAP, resource), actionsKey};
+        final List<String> args = new ArrayList<>();
+        args.add(principal);
+        args.addAll(actions);
+        await(REVOKE_ACTIONS_SCRIPT.<Long>eval(async, ScriptOutputType.INTEGER, keys, args.toArray(new String[0])));
+        written(actionsKey, redisKeys.key(RESOURCE_POLICY_MAP, resource));
+    }
+
+    /**
+     * Grant or revoke actions in the hash of a resource, moving any assignments of the resource still in the original
+     * layout into it, all within a single script. Every key the script touches belongs to the resource, hence to one slot
+     *
+     * @param op grant, revoke, or migrate to only move the original layout
+     * @return the number of actions the principal holds afterwards, or the number of principals moved for migrate
+     */
+    private long updateResourcePolicyHash(String op, String resource, String principal, Set<String> actions) {
+        final String[] keys = {redisKeys.key(RESOURCE_POLICY_HASH, resource), redisKeys.key(RESOURCE_POLICY_MAP, resource)};
+        final List<String> args = new ArrayList<>(Arrays.asList(op, redisKeys.actionsPrefix(resource), principal == null ? "" : principal));
+        args.addAll(actions);
+        final long ret = await(RESOURCE_POLICY_HASH_SCRIPT.<Long>eval(async, ScriptOutputType.INTEGER, keys, args.toArray(new String[0])));
+        // the action sets of the original layout are only ever read through RESOURCE_POLICY_MAP
+        written(keys);
+        return ret;
     }
 
     @Override
     public ResourcePolicy getResourcePolicy(String resource) {
-        final Set<String> principals = sync.smembers(RESOURCE_POLICY_MAP + resource);
-        if (principals != null && !principals.isEmpty()) {
-            final List<ResourcePolicyAssignment> assignments = principals
-                    .stream()
-                    .map(principal -> ImmutableResourcePolicyAssignment
-                            .builder()
-                            .actions(sync.smembers(RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP + resource + ":" + principal))
-                            .principal(principal)
-                            .build()
-                    )
-                    .collect(toList());
-            return ImmutableResourcePolicy
-                    .builder()
-                    .assignments(assignments)
-                    .resource(resource)
-                    .build();
-        }
-        return null;
+        return await(asyncBackend.getResourcePolicy(resource));
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources) {
+        return await(asyncBackend.getResourcePolicies(resources));
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources, Collection<String> principals) {
+        return await(asyncBackend.getResourcePolicies(resources, principals));
     }
 }
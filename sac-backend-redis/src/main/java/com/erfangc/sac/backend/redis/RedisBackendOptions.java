@@ -0,0 +1,132 @@
+package com.erfangc.sac.backend.redis;
+
+import com.erfangc.sac.core.metrics.Metrics;
+import org.immutables.value.Value;
+
+/**
+ * Tuning knobs for {@link RedisBackend}. The defaults match the original behavior and key layout
+ */
+@Value.Immutable
+public interface RedisBackendOptions {
+
+    /**
+     * When enabled, the endpoint given to {@link RedisBackend} is a comma separated list of seed nodes of a Redis
+     * Cluster. Every id is then wrapped in a hash tag within its keys, i.e. PRINCIPAL_TO_GROUP_MAP:{alice}, so that all
+     * the keys of a principal or group share a slot, as do all the keys of a resource or of an identity policy. Features
+     * that span the keys of several ids in one command ({@link #serverSideTraversal()},
+     * {@link #materializedGroupClosure()}) or that rely on a single node ({@link #nearCacheEnabled()}) are not available.
+     * Batches of mutations are applied one by one rather than in a MULTI/EXEC transaction
+     */
+    @Value.Default
+    default boolean cluster() {
+        return false;
+    }
+
+    /**
+     * With {@link #cluster()}, send reads to replicas when one is available (falling back to the master), so that
+     * decisions scale with the number of replicas. Replication is asynchronous, reads may briefly lag recent writes
+     */
+    @Value.Default
+    default boolean readFromReplicas() {
+        return false;
+    }
+
+    /**
+     * When enabled, transitive group membership (and the union of the policy ids assigned to the principal and its groups)
+     * is resolved by a Lua script evaluated inside Redis through EVALSHA, so that a decision pays a single round trip regardless
+     * of the depth of the group hierarchy. The script declares the principal's own keys, but reads those of the groups it
+     * reaches without declaring them in KEYS, since they are only known once it runs. It intentionally breaks the
+     * contract a Redis Cluster routes scripts by, so this option is standalone only and rejected with {@link #cluster()}
+     */
+    @Value.Default
+    default boolean serverSideTraversal() {
+        return false;
+    }
+
+    /**
+     * When enabled, every principal's transitive group membership is materialized under GROUP_CLOSURE keys and kept up to
+     * date by the writes that change group edges, so that resolving it is a single SMEMBERS. Group edges change rarely
+     * but are read on every decision, which is the trade this makes. Takes precedence over {@link #serverSideTraversal()}.
+     * When turning this on for an existing data set, run {@link RedisBackend#rebuildGroupClosure()} once
+     * <p>
+     * An edge write and the closure refresh it causes run as one script, which writes the closure of every principal
+     * below the changed edge without being able to declare those keys in KEYS. This option is therefore standalone only
+     * and rejected with {@link #cluster()}
+     */
+    @Value.Default
+    default boolean materializedGroupClosure() {
+        return false;
+    }
+
+    /**
+     * When enabled, policies and the sets read on the authorization path are cached in process and kept coherent with
+     * writes from any client through Redis keyspace notifications. The server must publish them (notify-keyspace-events
+     * KA), otherwise the backend fails to start. Reads made by the Lua script of {@link #serverSideTraversal()} do not go
+     * through the cache
+     */
+    @Value.Default
+    default boolean nearCacheEnabled() {
+        return false;
+    }
+
+    /**
+     * The maximum number of keys the near cache holds, least recently used ones being evicted first
+     */
+    @Value.Default
+    default int nearCacheMaxEntries() {
+        return 100_000;
+    }
+
+    /**
+     * When enabled, the assignments of a resource policy are kept in a single hash, RESOURCE_POLICY_HASH:&lt;resource&gt;,
+     * mapping each principal to its actions, so that reading a resource policy is one HGETALL rather than an SMEMBERS of
+     * its principals followed by one SMEMBERS per principal. Resource policies written in the original layout are moved
+     * into their hash the next time they are granted or revoked on, or all at once by
+     * {@link RedisBackend#migrateResourcePolicies()}
+     */
+    @Value.Default
+    default boolean resourcePolicyHashes() {
+        return false;
+    }
+
+    /**
+     * With {@link #resourcePolicyHashes()}, whether resource policies still in the original layout are read as well,
+     * in the same round trip as their hash, which costs a command per resource (one per principal on the decision path)
+     * <p>
+     * Off by default, since a data set written with {@link #resourcePolicyHashes()} has nothing in the original layout.
+     * To turn {@link #resourcePolicyHashes()} on for an existing data set, either run
+     * {@link RedisBackend#migrateResourcePolicies()} first, or turn this on until the migration has run. Otherwise the
+     * assignments not migrated yet are ignored by decisions until their resource is next granted or revoked on
+     */
+    @Value.Default
+    default boolean legacyResourcePolicyReads() {
+        return false;
+    }
+
+    /**
+     * How groups and identity policies are stored. Either codec reads values written by the other, so it can be changed
+     * on a live data set, see {@link RedisBackend#migrateValues()}
+     */
+    @Value.Default
+    default ValueCodec valueCodec() {
+        return ValueCodec.json();
+    }
+
+    /**
+     * Where the number and latency of the commands sent to Redis are reported, by command type
+     */
+    @Value.Default
+    default Metrics metrics() {
+        return Metrics.noop();
+    }
+
+    @Value.Check
+    default void check() {
+        if (cluster() && (serverSideTraversal() || materializedGroupClosure() || nearCacheEnabled())) {
+            throw new IllegalStateException("serverSideTraversal, materializedGroupClosure and nearCacheEnabled are not available with cluster");
+        }
+        if (readFromReplicas() && !cluster()) {
+            throw new IllegalStateException("readFromReplicas requires cluster");
+        }
+    }
+}
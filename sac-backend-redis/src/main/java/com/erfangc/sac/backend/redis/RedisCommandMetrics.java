@@ -0,0 +1,65 @@
+package com.erfangc.sac.backend.redis;
+
+import com.erfangc.sac.core.metrics.Counter;
+import com.erfangc.sac.core.metrics.Histogram;
+import com.erfangc.sac.core.metrics.Metrics;
+import io.lettuce.core.metrics.CommandLatencyCollector;
+import io.lettuce.core.metrics.CommandLatencyId;
+import io.lettuce.core.metrics.CommandMetrics;
+import io.lettuce.core.protocol.ProtocolKeyword;
+
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link RedisCommandMetrics} plugs into Lettuce's command latency hook to report every command completed by the
+ * client, pipelined or not, as a count (sac.redis.commands.SMEMBERS) and a completion latency in nanoseconds
+ * (sac.redis.commands.SMEMBERS.nanos)
+ */
+class RedisCommandMetrics implements CommandLatencyCollector {
+
+    private final Metrics metrics;
+    private final Map<String, Instruments> instruments = new ConcurrentHashMap<>();
+
+    RedisCommandMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void recordCommandLatency(SocketAddress local,
+                                     SocketAddress remote,
+                                     ProtocolKeyword commandType,
+                                     long firstResponseLatency,
+                                     long completionLatency) {
+        final Instruments command = instruments.computeIfAbsent(commandType.name(), Instruments::new);
+        command.count.increment();
+        command.latency.record(completionLatency);
+    }
+
+    @Override
+    public Map<CommandLatencyId, CommandMetrics> retrieveMetrics() {
+        // everything goes to Metrics as it happens, there is nothing for Lettuce to publish
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    private class Instruments {
+        private final Counter count;
+        private final Histogram latency;
+
+        private Instruments(String command) {
+            count = metrics.counter("sac.redis.commands." + command);
+            latency = metrics.histogram("sac.redis.commands." + command + ".nanos");
+        }
+    }
+}
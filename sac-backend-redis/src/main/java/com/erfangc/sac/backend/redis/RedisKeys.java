@@ -0,0 +1,60 @@
+package com.erfangc.sac.backend.redis;
+
+import static com.erfangc.sac.backend.redis.RedisBackend.RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP;
+
+/**
+ * {@link RedisKeys} names the key under a prefix for a principal, group, policy or resource id. Against a Redis Cluster
+ * the id is wrapped in a hash tag, so that RESOURCE_POLICY_MAP:{/ledgers/1}, RESOURCE_POLICY_HASH:{/ledgers/1} and
+ * RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP:{/ledgers/1}:alice all hash to the slot of /ledgers/1, and a script that only
+ * touches the keys of one id stays on one node. Redis hashes the text between the first '{' and the first '}' after it,
+ * which for a given id is the same in each of its keys whatever the id contains, unless that text is empty: ids that are
+ * empty or start with '}' cannot be hash tagged
+ */
+final class RedisKeys {
+
+    static final RedisKeys STANDALONE = new RedisKeys(false);
+    static final RedisKeys HASH_TAGGED = new RedisKeys(true);
+
+    private final boolean hashTags;
+
+    private RedisKeys(boolean hashTags) {
+        this.hashTags = hashTags;
+    }
+
+    static RedisKeys of(RedisBackendOptions options) {
+        return options.cluster() ? HASH_TAGGED : STANDALONE;
+    }
+
+    String key(String prefix, String id) {
+        if (!hashTags) {
+            return prefix + id;
+        }
+        if (id.isEmpty() || id.charAt(0) == '}') {
+            throw new IllegalArgumentException("Id '" + id + "' cannot be hash tagged");
+        }
+        return prefix + "{" + id + "}";
+    }
+
+    /**
+     * @return the key of the actions of the given principal on the given resource
+     */
+    String actionsKey(String resource, String principal) {
+        return actionsPrefix(resource) + principal;
+    }
+
+    /**
+     * @return what the keys of the actions of every principal on the given resource start with
+     */
+    String actionsPrefix(String resource) {
+        return key(RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP, resource) + ":";
+    }
+
+    /**
+     * @return the id a key found under the given prefix belongs to
+     */
+    String id(String prefix, String key) {
+        return hashTags
+                ? key.substring(prefix.length() + 1, key.length() - 1)
+                : key.substring(prefix.length());
+    }
+}
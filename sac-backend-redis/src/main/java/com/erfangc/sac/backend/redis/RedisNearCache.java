@@ -0,0 +1,175 @@
+package com.erfangc.sac.backend.redis;
+
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+
+import java.io.Closeable;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.erfangc.sac.backend.redis.RedisBackend.*;
+
+/**
+ * {@link RedisNearCache} keeps decoded values of Redis keys (policies and the members of sets) in process, so that the
+ * authorization path does not go to the server for data that rarely changes
+ * <p>
+ * Coherence across processes relies on Redis keyspace notifications: every write to a key, from any client, publishes
+ * on __keyspace@db__:key. This cache listens on a dedicated connection to the notifications of the keys it may hold,
+ * which all start with one of {@link #CACHED_PREFIXES}, and drops the key. Writes made by this process are dropped
+ * synchronously as well, so that they are visible to the next read without waiting for the notification. Since
+ * notifications are fire and forget, the whole cache is dropped whenever a connection is lost. The server must be
+ * configured to publish keyspace notifications, see {@link #requireKeyspaceNotifications(RedisCommands)}
+ * <p>
+ * A read that started before an invalidation of its key must not populate the cache with what may be the value from
+ * before the write, so a read first registers a token for its key with {@link #beginRead(String)}, any invalidation of
+ * the key discards the token, and the value is only cached if the token is still there. Writes to other keys do not
+ * affect the read. Note that FLUSHDB and FLUSHALL do not emit keyspace notifications
+ */
+class RedisNearCache implements Closeable {
+
+    /**
+     * Cached in place of a key that does not exist
+     */
+    static final Object ABSENT = new Object();
+
+    /**
+     * The prefixes of the keys that may be cached, every other key is read straight from the server
+     */
+    static final List<String> CACHED_PREFIXES = Arrays.asList(
+            PRINCIPAL_TO_GROUP_MAP,
+            GROUP_TO_GROUP_MAP,
+            GROUP_CLOSURE,
+            PRINCIPAL_TO_POLICY_MAP,
+            POLICY,
+            RESOURCE_POLICY_MAP,
+            RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP,
+            RESOURCE_POLICY_HASH
+    );
+
+    private final String channelPrefix;
+    private final Map<String, Object> entries;
+    // the token of the reads in flight by key, guarded by entries
+    private final Map<String, Object> pending;
+    private final StatefulRedisPubSubConnection<String, String> pubSub;
+
+    RedisNearCache(RedisClient client, int database, int maxEntries) {
+        channelPrefix = "__keyspace@" + database + "__:";
+        entries = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        pending = new LinkedHashMap<String, Object>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                // only reads that failed are left behind, dropping a token merely keeps its value from being cached
+                return size() > maxEntries;
+            }
+        };
+        client.addListener(new RedisConnectionStateAdapter() {
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+                clear();
+            }
+
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+                clear();
+            }
+        });
+        pubSub = client.connectPubSub();
+        requireKeyspaceNotifications(pubSub.sync());
+        pubSub.addListener(new RedisPubSubAdapter<String, String>() {
+            @Override
+            public void message(String pattern, String channel, String message) {
+                if (channel.startsWith(channelPrefix)) {
+                    invalidate(channel.substring(channelPrefix.length()));
+                }
+            }
+        });
+        final String[] patterns = CACHED_PREFIXES.stream().map(prefix -> channelPrefix + prefix + "*").toArray(String[]::new);
+        pubSub.sync().psubscribe(patterns);
+    }
+
+    /**
+     * Make sure the server publishes keyspace events (K) for generic (g), string ($), set (s) and hash (h) commands,
+     * without which this cache would silently go stale when other processes write. The server may be shared, so its
+     * configuration is left to its operator rather than changed from here
+     */
+    private static void requireKeyspaceNotifications(RedisCommands<String, String> commands) {
+        final Map<String, String> config = commands.configGet("notify-keyspace-events");
+        final String current = config.getOrDefault("notify-keyspace-events", "");
+        final boolean allClasses = current.contains("A")
+                || current.contains("g") && current.contains("$") && current.contains("s") && current.contains("h");
+        if (!current.contains("K") || !allClasses) {
+            throw new RedisException("The near cache requires keyspace notifications, but notify-keyspace-events is '"
+                    + current + "', set it to KA on the server");
+        }
+    }
+
+    /**
+     * Register a read of the given key that is about to be issued
+     *
+     * @return the token to hand back to {@link #put(String, Object, Object)} with the value read
+     */
+    Object beginRead(String key) {
+        synchronized (entries) {
+            return pending.computeIfAbsent(key, k -> new Object());
+        }
+    }
+
+    /**
+     * @return the cached value, {@link #ABSENT} if the key is known not to exist, or null if nothing is cached
+     */
+    Object get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Cache a value read by a command registered with the given token, unless the key has been invalidated since
+     */
+    void put(String key, Object value, Object token) {
+        synchronized (entries) {
+            if (pending.remove(key, token)) {
+                entries.put(key, value == null ? ABSENT : value);
+            }
+        }
+    }
+
+    void invalidate(String key) {
+        synchronized (entries) {
+            pending.remove(key);
+            entries.remove(key);
+        }
+    }
+
+    void clear() {
+        synchronized (entries) {
+            pending.clear();
+            entries.clear();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        pubSub.close();
+        clear();
+    }
+}
@@ -0,0 +1,39 @@
+package com.erfangc.sac.backend.redis;
+
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link StringByteArrayCodec} reads and writes keys as UTF-8 strings and values as raw bytes, for the connections that
+ * carry values encoded by a {@link ValueCodec}
+ */
+final class StringByteArrayCodec implements RedisCodec<String, byte[]> {
+
+    static final StringByteArrayCodec INSTANCE = new StringByteArrayCodec();
+
+    private StringByteArrayCodec() {
+    }
+
+    @Override
+    public String decodeKey(ByteBuffer bytes) {
+        return StringCodec.UTF8.decodeKey(bytes);
+    }
+
+    @Override
+    public byte[] decodeValue(ByteBuffer bytes) {
+        return ByteArrayCodec.INSTANCE.decodeValue(bytes);
+    }
+
+    @Override
+    public ByteBuffer encodeKey(String key) {
+        return StringCodec.UTF8.encodeKey(key);
+    }
+
+    @Override
+    public ByteBuffer encodeValue(byte[] value) {
+        return ByteArrayCodec.INSTANCE.encodeValue(value);
+    }
+}
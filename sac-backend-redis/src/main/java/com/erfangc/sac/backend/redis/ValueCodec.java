@@ -0,0 +1,30 @@
+package com.erfangc.sac.backend.redis;
+
+/**
+ * {@link ValueCodec} turns the {@link com.erfangc.sac.interfaces.Group}s and
+ * {@link com.erfangc.sac.interfaces.IdentityPolicy}s {@link RedisBackend} stores as plain values into bytes and back.
+ * The codecs offered here read values written by any of them, so that switching codecs never requires rewriting the
+ * data set first: values move to the new format as they are next written, or all at once through
+ * {@link RedisBackend#migrateValues()}
+ */
+public interface ValueCodec {
+
+    byte[] encode(Object value);
+
+    <T> T decode(byte[] bytes, Class<T> type);
+
+    /**
+     * @return the original format, plain JSON
+     */
+    static ValueCodec json() {
+        return JacksonValueCodec.JSON;
+    }
+
+    /**
+     * @return Smile, a binary equivalent of JSON that skips quoting and back references repeated field names, making
+     * payloads smaller and cheaper to decode
+     */
+    static ValueCodec smile() {
+        return JacksonValueCodec.SMILE;
+    }
+}
@@ -0,0 +1,45 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.backend.redis.RedisBackend;
+import com.erfangc.sac.backend.redis.RedisBackendOptions;
+import com.erfangc.sac.core.service.AsyncSimpleAccessControlImpl;
+import com.erfangc.sac.interfaces.AsyncSimpleAccessControl;
+import com.erfangc.sac.interfaces.AuthorizationRequest;
+import com.erfangc.sac.interfaces.AuthorizationResponse;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class RedisAsyncSimpleAccessControl implements AsyncSimpleAccessControl, Closeable {
+
+    private static final String endpoint = System.getProperty("sac.redis.endpoint", "localhost");
+
+    private final RedisBackend backend;
+    private final AsyncSimpleAccessControl delegate;
+
+    public RedisAsyncSimpleAccessControl(String redisEndpoint) {
+        this(redisEndpoint, ImmutableRedisBackendOptions.builder().build());
+    }
+
+    public RedisAsyncSimpleAccessControl(String redisEndpoint, RedisBackendOptions options) {
+        backend = new RedisBackend(redisEndpoint == null ? endpoint : redisEndpoint, options);
+        delegate = new AsyncSimpleAccessControlImpl(backend.asyncBackend());
+    }
+
+    @Override
+    public CompletableFuture<AuthorizationResponse> authorize(AuthorizationRequest request) {
+        return delegate.authorize(request);
+    }
+
+    @Override
+    public CompletableFuture<List<AuthorizationResponse>> authorizeAll(List<AuthorizationRequest> requests) {
+        return delegate.authorizeAll(requests);
+    }
+
+    @Override
+    public void close() {
+        backend.close();
+    }
+}
@@ -1,6 +1,8 @@
 package com.erfangc.sac.redis;
 
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
 import com.erfangc.sac.backend.redis.RedisBackend;
+import com.erfangc.sac.backend.redis.RedisBackendOptions;
 import com.erfangc.sac.core.backend.Backend;
 import com.erfangc.sac.core.service.SimpleAccessControlImpl;
 import com.erfangc.sac.interfaces.*;
@@ -17,7 +19,11 @@ public class RedisSimpleAccessControl implements SimpleAccessControl, Closeable
     private final SimpleAccessControl delegate;
 
     public RedisSimpleAccessControl(String redisEndpoint) {
-        backend = new RedisBackend(redisEndpoint == null ? endpoint : redisEndpoint);
+        this(redisEndpoint, ImmutableRedisBackendOptions.builder().build());
+    }
+
+    public RedisSimpleAccessControl(String redisEndpoint, RedisBackendOptions options) {
+        backend = new RedisBackend(redisEndpoint == null ? endpoint : redisEndpoint, options);
         delegate = new SimpleAccessControlImpl(backend);
     }
 
@@ -106,11 +112,21 @@ public class RedisSimpleAccessControl implements SimpleAccessControl, Closeable
         delegate.unAssignPolicy(policyId, principalId);
     }
 
+    @Override
+    public void applyMutations(List<Mutation> mutations) {
+        delegate.applyMutations(mutations);
+    }
+
     @Override
     public AuthorizationResponse authorize(AuthorizationRequest request) {
         return delegate.authorize(request);
     }
 
+    @Override
+    public List<AuthorizationResponse> authorizeAll(List<AuthorizationRequest> requests) {
+        return delegate.authorizeAll(requests);
+    }
+
     @Override
     public void grantActions(String resource, String principal, Set<String> actions) {
         backend.grantActions(resource, principal, actions);
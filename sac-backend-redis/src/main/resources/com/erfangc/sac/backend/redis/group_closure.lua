@@ -0,0 +1,83 @@
+-- Apply the given group edge writes, then recompute the materialized transitive closure of every principal whose
+-- ancestors may have changed as a result, i.e. the given roots and every principal that belongs to them directly or
+-- transitively. Both happen within this script, so the closure never lags the edges it is derived from
+--
+-- KEYS[1..n] the edge sets (GROUP_TO_PRINCIPAL_MAP, PRINCIPAL_TO_GROUP_MAP, GROUP_TO_GROUP_MAP) written by the call
+-- ARGV[1] add or remove, how each member is written to its key
+-- ARGV[2..n+1] the member written to each key, in the order of KEYS
+-- ARGV[n+2] the PRINCIPAL_TO_GROUP_MAP key prefix
+-- ARGV[n+3] the GROUP_TO_GROUP_MAP key prefix
+-- ARGV[n+4] the GROUP_CLOSURE key prefix (principal -> every group it belongs to directly or transitively)
+-- ARGV[n+5] the GROUP_CLOSURE_DESCENDANTS key prefix (group -> every principal that belongs to it directly or transitively)
+-- ARGV[n+6..] the roots
+--
+-- The closure and edge keys of the principals reached by the recomputation are only known once it runs, so they are
+-- written without being declared in KEYS. This breaks the contract Redis Cluster relies on to route a script, which is
+-- why materializedGroupClosure is only available against a standalone Redis
+--
+-- returns the principals whose closure has been recomputed
+local n = #KEYS
+local command = ARGV[1] == 'add' and 'SADD' or 'SREM'
+for i = 1, n do
+    redis.call(command, KEYS[i], ARGV[i + 1])
+end
+
+local p2g, g2g, closure, descendants = ARGV[n + 2], ARGV[n + 3], ARGV[n + 4], ARGV[n + 5]
+
+local affected = {}
+local ordered = {}
+local function add(id)
+    if not affected[id] then
+        affected[id] = true
+        ordered[#ordered + 1] = id
+    end
+end
+for i = n + 6, #ARGV do
+    add(ARGV[i])
+    for _, descendant in ipairs(redis.call('SMEMBERS', descendants .. ARGV[i])) do
+        add(descendant)
+    end
+end
+
+local function traverse(principal)
+    local seen = {}
+    local gids = {}
+    local queue = redis.call('SMEMBERS', p2g .. principal)
+    for _, gid in ipairs(redis.call('SMEMBERS', g2g .. principal)) do
+        queue[#queue + 1] = gid
+    end
+    local head = 1
+    while head <= #queue do
+        local gid = queue[head]
+        head = head + 1
+        if not seen[gid] then
+            seen[gid] = true
+            gids[#gids + 1] = gid
+            for _, parent in ipairs(redis.call('SMEMBERS', g2g .. gid)) do
+                if not seen[parent] then
+                    queue[#queue + 1] = parent
+                end
+            end
+        end
+    end
+    return seen, gids
+end
+
+for _, principal in ipairs(ordered) do
+    local seen, gids = traverse(principal)
+    for _, old in ipairs(redis.call('SMEMBERS', closure .. principal)) do
+        if not seen[old] then
+            redis.call('SREM', descendants .. old, principal)
+        end
+    end
+    redis.call('DEL', closure .. principal)
+    -- unpack() is bounded by the Lua stack, so large sets are written in chunks
+    for i = 1, #gids, 1000 do
+        redis.call('SADD', closure .. principal, unpack(gids, i, math.min(i + 999, #gids)))
+    end
+    for _, gid in ipairs(gids) do
+        redis.call('SADD', descendants .. gid, principal)
+    end
+end
+
+return ordered
@@ -0,0 +1,68 @@
+-- Grant or revoke actions to a principal on a resource whose policy is kept in a RESOURCE_POLICY_HASH, principal ->
+-- actions as a sorted JSON array. Assignments of the resource still in the original layout are moved into the hash
+-- first, which is all the migrate operation does
+--
+-- KEYS[1] the RESOURCE_POLICY_HASH key of the resource
+-- KEYS[2] the RESOURCE_POLICY_MAP key of the resource
+-- ARGV[1] grant, revoke or migrate
+-- ARGV[2] the RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP key prefix of the resource, i.e. up to the principal
+-- ARGV[3] the principal
+-- ARGV[4..] the actions
+--
+-- returns the number of actions the principal holds afterwards, or the number of principals moved for migrate
+local hash, policy = KEYS[1], KEYS[2]
+local op, actionsPrefix, principal = ARGV[1], ARGV[2], ARGV[3]
+
+local function decode(value)
+    local set = {}
+    if value then
+        for _, action in ipairs(cjson.decode(value)) do
+            set[action] = true
+        end
+    end
+    return set
+end
+
+local function put(field, set)
+    local list = {}
+    for action in pairs(set) do
+        list[#list + 1] = action
+    end
+    if #list == 0 then
+        redis.call('HDEL', hash, field)
+    else
+        table.sort(list)
+        redis.call('HSET', hash, field, cjson.encode(list))
+    end
+    return #list
+end
+
+local legacy = redis.call('SMEMBERS', policy)
+for _, member in ipairs(legacy) do
+    local set = decode(redis.call('HGET', hash, member))
+    for _, action in ipairs(redis.call('SMEMBERS', actionsPrefix .. member)) do
+        set[action] = true
+    end
+    put(member, set)
+    redis.call('DEL', actionsPrefix .. member)
+end
+if #legacy > 0 then
+    redis.call('DEL', policy)
+end
+if op == 'migrate' then
+    return #legacy
+end
+
+local current = redis.call('HGET', hash, principal)
+if op == 'revoke' and not current then
+    return 0
+end
+local set = decode(current)
+for i = 4, #ARGV do
+    if op == 'grant' then
+        set[ARGV[i]] = true
+    else
+        set[ARGV[i]] = nil
+    end
+end
+return put(principal, set)
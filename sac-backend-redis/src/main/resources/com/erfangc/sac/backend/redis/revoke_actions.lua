@@ -0,0 +1,20 @@
+-- Revoke actions from a principal on a resource, and drop the principal from the resource's policy once it holds no
+-- action anymore
+--
+-- KEYS[1] the RESOURCE_POLICY_MAP key of the resource
+-- KEYS[2] the RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP key of the principal on the resource
+-- ARGV[1] the principal
+-- ARGV[2..] the actions
+--
+-- returns the number of actions the principal still holds
+local policy, actions, principal = KEYS[1], KEYS[2], ARGV[1]
+
+-- unpack() is bounded by the Lua stack, so large sets are removed in chunks
+for i = 2, #ARGV, 1000 do
+    redis.call('SREM', actions, unpack(ARGV, i, math.min(i + 999, #ARGV)))
+end
+local left = redis.call('SCARD', actions)
+if left == 0 then
+    redis.call('SREM', policy, principal)
+end
+return left
@@ -0,0 +1,21 @@
+-- Add members to or remove members from sets atomically, i.e. both sides of an assignment
+--
+-- KEYS[i] a set
+-- ARGV[1] add or remove, i.e. SADD or SREM on every set
+-- ARGV[i + 1] the member added to or removed from KEYS[i]
+--
+-- returns the number of members actually added or removed
+local op = ARGV[1]
+local command
+if op == 'add' then
+    command = 'SADD'
+elseif op == 'remove' then
+    command = 'SREM'
+else
+    return redis.error_reply('unknown set operation ' .. tostring(op))
+end
+local changed = 0
+for i = 1, #KEYS do
+    changed = changed + redis.call(command, KEYS[i], ARGV[i + 1])
+end
+return changed
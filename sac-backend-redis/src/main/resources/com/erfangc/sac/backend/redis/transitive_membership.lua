@@ -0,0 +1,51 @@
+-- Resolve the transitive group membership of a principal entirely inside Redis
+--
+-- KEYS[1] the PRINCIPAL_TO_GROUP_MAP key of the principal
+-- KEYS[2] (optional) the PRINCIPAL_TO_POLICY_MAP key of the principal, when given the union of the policy ids assigned
+--         to the principal and to every group it belongs to is returned as well
+-- ARGV[1] the GROUP_TO_GROUP_MAP key prefix
+-- ARGV[2] (optional, with KEYS[2]) the PRINCIPAL_TO_POLICY_MAP key prefix
+--
+-- The keys of the groups reached by the walk are only known once it runs, so they are read without being declared in
+-- KEYS. This breaks the contract Redis Cluster relies on to route a script, which is why serverSideTraversal is only
+-- available against a standalone Redis
+--
+-- returns {groupIds, policyIds}
+local seen = {}
+local gids = {}
+local queue = redis.call('SMEMBERS', KEYS[1])
+local head = 1
+while head <= #queue do
+    local gid = queue[head]
+    head = head + 1
+    if not seen[gid] then
+        seen[gid] = true
+        gids[#gids + 1] = gid
+        local parents = redis.call('SMEMBERS', ARGV[1] .. gid)
+        for _, parent in ipairs(parents) do
+            if not seen[parent] then
+                queue[#queue + 1] = parent
+            end
+        end
+    end
+end
+
+local pids = {}
+if KEYS[2] then
+    local seenPolicies = {}
+    local function collect(key)
+        local assigned = redis.call('SMEMBERS', key)
+        for _, pid in ipairs(assigned) do
+            if not seenPolicies[pid] then
+                seenPolicies[pid] = true
+                pids[#pids + 1] = pid
+            end
+        end
+    end
+    collect(KEYS[2])
+    for _, gid in ipairs(gids) do
+        collect(ARGV[2] .. gid)
+    end
+end
+
+return {gids, pids}
@@ -0,0 +1,55 @@
+package com.erfangc.sac.backend.redis;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.Test;
+
+import static com.erfangc.sac.backend.redis.RedisBackend.*;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class RedisKeysTest {
+
+    @Test
+    public void standaloneKeysAreUnchanged() {
+        assertEquals("GROUP:hr", RedisKeys.STANDALONE.key(GROUP, "hr"));
+        assertEquals("RESOURCE_POLICY_PRINCIPAL_TO_ACTIONS_MAP:/ledgers/1:alice", RedisKeys.STANDALONE.actionsKey("/ledgers/1", "alice"));
+        assertEquals("/ledgers/1", RedisKeys.STANDALONE.id(RESOURCE_POLICY_MAP, "RESOURCE_POLICY_MAP:/ledgers/1"));
+    }
+
+    @Test
+    public void keysOfAnIdShareASlot() {
+        final RedisKeys keys = RedisKeys.HASH_TAGGED;
+        for (String id : asList("/ledgers/1", "alice", "{alice}", "a}b{c")) {
+            final int slot = SlotHash.getSlot(keys.key(RESOURCE_POLICY_MAP, id));
+            assertEquals(slot, SlotHash.getSlot(keys.key(RESOURCE_POLICY_HASH, id)));
+            assertEquals(slot, SlotHash.getSlot(keys.actionsKey(id, "alice")));
+            assertEquals(slot, SlotHash.getSlot(keys.actionsKey(id, "{bob}")));
+            assertEquals(slot, SlotHash.getSlot(keys.key(PRINCIPAL_TO_GROUP_MAP, id)));
+            assertEquals(slot, SlotHash.getSlot(keys.key(PRINCIPAL_TO_POLICY_MAP, id)));
+            assertEquals(slot, SlotHash.getSlot(keys.key(GROUP_TO_GROUP_MAP, id)));
+            assertEquals(id, keys.id(RESOURCE_POLICY_MAP, keys.key(RESOURCE_POLICY_MAP, id)));
+        }
+    }
+
+    @Test
+    public void grantsStayInOneSlot() {
+        final RedisKeys keys = RedisKeys.HASH_TAGGED;
+        assertTrue(sameSlot(keys.actionsKey("/ledgers/1", "alice"), keys.key(RESOURCE_POLICY_MAP, "/ledgers/1")));
+        assertFalse(sameSlot(keys.key(GROUP_TO_PRINCIPAL_MAP, "hr"), keys.key(PRINCIPAL_TO_GROUP_MAP, "alice")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void idsWithoutAHashTagAreRejected() {
+        RedisKeys.HASH_TAGGED.key(GROUP, "}hr");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void clusterRejectsSingleNodeFeatures() {
+        ImmutableRedisBackendOptions.builder().cluster(true).nearCacheEnabled(true).build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void replicaReadsRequireCluster() {
+        ImmutableRedisBackendOptions.builder().readFromReplicas(true).build();
+    }
+}
@@ -0,0 +1,29 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.tests.AsyncTestBase;
+import org.junit.After;
+import org.junit.Before;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+public class RedisAsyncSimpleAccessControlTest extends AsyncTestBase {
+    private RedisServer redisServer;
+
+    @After
+    public void tearDown() {
+        ((RedisAsyncSimpleAccessControl) asyncSac).close();
+        ((RedisSimpleAccessControl) sac).close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = new RedisServer(8080);
+        redisServer.start();
+        sac = new RedisSimpleAccessControl("localhost:8080");
+        asyncSac = new RedisAsyncSimpleAccessControl("localhost:8080");
+        initializePolicyBackendStates();
+    }
+
+}
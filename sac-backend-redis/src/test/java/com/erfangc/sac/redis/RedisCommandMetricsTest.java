@@ -0,0 +1,53 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.core.metrics.InMemoryMetrics;
+import com.erfangc.sac.interfaces.ImmutableGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RedisCommandMetricsTest {
+    private RedisServer redisServer;
+    private RedisSimpleAccessControl sac;
+    private InMemoryMetrics metrics;
+
+    @After
+    public void tearDown() {
+        sac.close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = new RedisServer(8080);
+        redisServer.start();
+        metrics = new InMemoryMetrics();
+        sac = new RedisSimpleAccessControl(
+                "localhost:8080",
+                ImmutableRedisBackendOptions.builder().metrics(metrics).build()
+        );
+    }
+
+    @Test
+    public void commandsAreCounted() {
+        sac.createGroup(ImmutableGroup.builder().id("hr").name("Human Resources").build());
+        sac.assignPrincipalToGroup("hr", "jsmith");
+        sac.assignPrincipalToGroup("hr", "jdoe");
+        sac.getGroupMembershipTransitively("jsmith");
+
+        assertEquals(1, metrics.count("sac.redis.commands.SET"));
+        // both sides of each of the two assignments are applied by a single script
+        assertEquals(0, metrics.count("sac.redis.commands.SADD"));
+        assertEquals(2, metrics.count("sac.redis.commands.EVALSHA"));
+        assertTrue(metrics.count("sac.redis.commands.SMEMBERS") >= 1);
+        assertEquals(2, metrics.histogramOf("sac.redis.commands.EVALSHA.nanos").count());
+        assertTrue(metrics.histogramOf("sac.redis.commands.EVALSHA.nanos").max() > 0);
+    }
+}
@@ -0,0 +1,53 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.backend.redis.RedisBackend;
+import com.erfangc.sac.backend.tests.GroupClosureTestBase;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.ScriptOutputType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+public class RedisGroupClosureTest extends GroupClosureTestBase {
+    private RedisServer redisServer;
+
+    @After
+    public void tearDown() {
+        ((RedisSimpleAccessControl) sac).close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = new RedisServer(8080);
+        redisServer.start();
+        sac = new RedisSimpleAccessControl(
+                "localhost:8080",
+                ImmutableRedisBackendOptions.builder().materializedGroupClosure(true).build()
+        );
+    }
+
+    @Test
+    public void rebuildGroupClosure() {
+        chain();
+        final RedisClient client = RedisClient.create("redis://localhost:8080");
+        client.connect().sync().eval(
+                "for _, key in ipairs(redis.call('KEYS', 'GROUP_CLOSURE*')) do redis.call('DEL', key) end",
+                ScriptOutputType.STATUS
+        );
+        client.shutdown();
+
+        final RedisBackend backend = new RedisBackend(
+                "localhost:8080",
+                ImmutableRedisBackendOptions.builder().materializedGroupClosure(true).build()
+        );
+        // not closed here, closing a RedisBackend shuts the server down which tearDown takes care of
+        backend.rebuildGroupClosure();
+        assertClosureConsistent("rebuilt closure");
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.backend.redis.RedisBackend;
+import com.erfangc.sac.backend.tests.HierarchicalResourcePolicyTestBase;
+import com.erfangc.sac.core.service.ImmutableSimpleAccessControlOptions;
+import com.erfangc.sac.core.service.SimpleAccessControlImpl;
+import org.junit.After;
+import org.junit.Before;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+public class RedisHierarchicalResourcePolicyTest extends HierarchicalResourcePolicyTestBase {
+    private RedisServer redisServer;
+    private RedisBackend backend;
+
+    @After
+    public void tearDown() {
+        backend.close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = RedisServer.builder().port(8080).setting("notify-keyspace-events KA").build();
+        redisServer.start();
+        backend = new RedisBackend("localhost:8080", ImmutableRedisBackendOptions.builder().nearCacheEnabled(true).build());
+        sac = new SimpleAccessControlImpl(
+                backend,
+                ImmutableSimpleAccessControlOptions
+                        .builder()
+                        .hierarchicalResourcePolicies(true)
+                        .decisionCacheEnabled(true)
+                        .build()
+        );
+    }
+
+}
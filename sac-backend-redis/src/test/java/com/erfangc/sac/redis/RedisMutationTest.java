@@ -0,0 +1,30 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.backend.tests.MutationTestBase;
+import org.junit.After;
+import org.junit.Before;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+public class RedisMutationTest extends MutationTestBase {
+    private RedisServer redisServer;
+
+    @After
+    public void tearDown() {
+        ((RedisSimpleAccessControl) sac).close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = RedisServer.builder().port(8080).setting("notify-keyspace-events KA").build();
+        redisServer.start();
+        sac = new RedisSimpleAccessControl(
+                "localhost:8080",
+                ImmutableRedisBackendOptions.builder().materializedGroupClosure(true).nearCacheEnabled(true).build()
+        );
+    }
+
+}
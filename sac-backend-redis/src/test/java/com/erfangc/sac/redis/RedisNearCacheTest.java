@@ -0,0 +1,104 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.interfaces.AuthorizationStatus;
+import com.erfangc.sac.interfaces.ImmutableAuthorizationRequest;
+import com.erfangc.sac.interfaces.SimpleAccessControl;
+import io.lettuce.core.RedisException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class RedisNearCacheTest extends BackendTestBase {
+    private RedisServer redisServer;
+
+    @After
+    public void tearDown() {
+        ((RedisSimpleAccessControl) sac).close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = RedisServer.builder().port(8080).setting("notify-keyspace-events KA").build();
+        redisServer.start();
+        sac = new RedisSimpleAccessControl(
+                "localhost:8080",
+                ImmutableRedisBackendOptions.builder().nearCacheEnabled(true).build()
+        );
+        initializePolicyBackendStates();
+    }
+
+    private static void awaitStatus(SimpleAccessControl sac,
+                                    ImmutableAuthorizationRequest request,
+                                    AuthorizationStatus expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (sac.authorize(request).status() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, sac.authorize(request).status());
+    }
+
+    @Test
+    public void writesFromAnotherProcessInvalidate() throws InterruptedException {
+        // another instance without a near cache, standing for a different process writing to the same server
+        // not closed here, closing a RedisBackend shuts the server down which tearDown takes care of
+        final SimpleAccessControl writer = new RedisSimpleAccessControl("localhost:8080");
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("test request")
+                .action("increase")
+                .principal("jsmith")
+                .resource("/org/employees/jdoe/pay")
+                .build();
+        // warm the near cache with the sets consulted by this decision
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(request).status());
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(request).status());
+
+        writer.assignPrincipalToGroup("hr", "jsmith");
+        awaitStatus(sac, request, AuthorizationStatus.Permitted);
+
+        writer.unassignPrincipalFromGroup("hr", "jsmith");
+        awaitStatus(sac, request, AuthorizationStatus.Denied);
+    }
+
+    @Test
+    public void ownWritesAreVisibleImmediately() {
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("test request")
+                .action("increase")
+                .principal("jsmith")
+                .resource("/org/employees/jdoe/pay")
+                .build();
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(request).status());
+        sac.assignPrincipalToGroup("hr", "jsmith");
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+        sac.unAssignPolicy("manage pay", "hr");
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(request).status());
+        sac.assignPolicy("manage pay", "hr");
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+        sac.deletePolicy("manage pay");
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(request).status());
+    }
+
+    @Test(expected = RedisException.class)
+    public void requiresKeyspaceNotifications() throws IOException {
+        final RedisServer unconfigured = new RedisServer(8081);
+        unconfigured.start();
+        try {
+            new RedisSimpleAccessControl(
+                    "localhost:8081",
+                    ImmutableRedisBackendOptions.builder().nearCacheEnabled(true).build()
+            );
+        } finally {
+            unconfigured.stop();
+        }
+    }
+}
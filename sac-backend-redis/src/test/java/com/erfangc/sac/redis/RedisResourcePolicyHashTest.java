@@ -0,0 +1,123 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.backend.redis.RedisBackend;
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.core.service.SimpleAccessControlImpl;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+import com.erfangc.sac.interfaces.ResourcePolicyAssignment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RedisResourcePolicyHashTest extends BackendTestBase {
+    private RedisServer redisServer;
+    private RedisBackend backend;
+
+    @After
+    public void tearDown() {
+        backend.close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = RedisServer.builder().port(8080).setting("notify-keyspace-events KA").build();
+        redisServer.start();
+        backend = new RedisBackend(
+                "localhost:8080",
+                ImmutableRedisBackendOptions.builder()
+                        .resourcePolicyHashes(true)
+                        .legacyResourcePolicyReads(true)
+                        .nearCacheEnabled(true)
+                        .build()
+        );
+        sac = new SimpleAccessControlImpl(backend);
+        initializePolicyBackendStates();
+    }
+
+    private static Map<String, Set<String>> assignments(ResourcePolicy resourcePolicy) {
+        final Map<String, Set<String>> ret = new HashMap<>();
+        for (ResourcePolicyAssignment assignment : resourcePolicy.assignments().get()) {
+            ret.put(assignment.principal(), new HashSet<>(assignment.actions()));
+        }
+        return ret;
+    }
+
+    private static Set<String> actions(String... actions) {
+        return new HashSet<>(asList(actions));
+    }
+
+    @Test
+    public void legacyPoliciesAreReadAndMigrated() {
+        // not closed here, closing a RedisBackend shuts the server down which tearDown takes care of
+        final RedisBackend legacyBackend = new RedisBackend("localhost:8080");
+        legacyBackend.grantActions("/ledgers/1", "alice", actions("read", "write"));
+        legacyBackend.grantActions("/ledgers/1", "bob", actions("read"));
+        legacyBackend.grantActions("/ledgers/2", "alice", actions("read"));
+        legacyBackend.grantActions("/ledgers/3", "carol", actions("audit"));
+
+        final Map<String, Set<String>> expected = new HashMap<>();
+        expected.put("alice", actions("read", "write"));
+        expected.put("bob", actions("read"));
+        assertEquals(expected, assignments(backend.getResourcePolicy("/ledgers/1")));
+
+        // a grant moves the whole policy of its resource into the hash
+        backend.grantActions("/ledgers/1", "alice", actions("sign"));
+        expected.put("alice", actions("read", "write", "sign"));
+        assertEquals(expected, assignments(backend.getResourcePolicy("/ledgers/1")));
+        assertNull(legacyBackend.getResourcePolicy("/ledgers/1"));
+
+        // so does a revocation, which must not leave the revoked actions behind in the original layout
+        backend.revokeActions("/ledgers/2", "alice", actions("read"));
+        assertNull(backend.getResourcePolicy("/ledgers/2"));
+        assertNull(legacyBackend.getResourcePolicy("/ledgers/2"));
+
+        assertEquals(1, backend.migrateResourcePolicies());
+        assertEquals(0, backend.migrateResourcePolicies());
+        assertNull(legacyBackend.getResourcePolicy("/ledgers/3"));
+
+        final RedisBackend hashOnlyBackend = new RedisBackend(
+                "localhost:8080",
+                ImmutableRedisBackendOptions.builder().resourcePolicyHashes(true).legacyResourcePolicyReads(false).build()
+        );
+        assertEquals(expected, assignments(hashOnlyBackend.getResourcePolicy("/ledgers/1")));
+        assertEquals(actions("audit"), assignments(hashOnlyBackend.getResourcePolicy("/ledgers/3")).get("carol"));
+    }
+
+    @Test
+    public void concurrentGrantsAreNotLost() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final Set<String> granted = new HashSet<>();
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                final String action = "action" + i;
+                granted.add(action);
+                futures.add(executor.submit(() -> backend.grantActions("/ledgers/1", "alice", actions(action))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(granted, assignments(backend.getResourcePolicy("/ledgers/1")).get("alice"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
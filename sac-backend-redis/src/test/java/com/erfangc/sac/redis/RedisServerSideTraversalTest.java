@@ -0,0 +1,92 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.interfaces.AuthorizationStatus;
+import com.erfangc.sac.interfaces.ImmutableAuthorizationRequest;
+import com.erfangc.sac.interfaces.ImmutableGroup;
+import com.erfangc.sac.interfaces.ImmutableIdentityPolicy;
+import io.lettuce.core.RedisClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+public class RedisServerSideTraversalTest extends BackendTestBase {
+    private RedisServer redisServer;
+
+    @After
+    public void tearDown() {
+        ((RedisSimpleAccessControl) sac).close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = new RedisServer(8080);
+        redisServer.start();
+        sac = new RedisSimpleAccessControl(
+                "localhost:8080",
+                ImmutableRedisBackendOptions.builder().serverSideTraversal(true).build()
+        );
+        initializePolicyBackendStates();
+    }
+
+    @Test
+    public void deepCyclicHierarchy() {
+        final int depth = 50;
+        for (int i = 0; i < depth; i++) {
+            sac.createGroup(ImmutableGroup.builder().id("level " + i).name("Level " + i).build());
+            if (i > 0) {
+                sac.assignPrincipalToGroup("level " + i, "level " + (i - 1), true);
+            }
+        }
+        // close the loop, the traversal must still terminate
+        sac.assignPrincipalToGroup("level 0", "level " + (depth - 1), true);
+        sac.assignPrincipalToGroup("level 0", "jsmith");
+        sac.createPolicy(
+                ImmutableIdentityPolicy
+                        .builder()
+                        .id("top secret")
+                        .actions(singletonList("read"))
+                        .resource("/secrets/*")
+                        .build()
+        );
+        sac.assignPolicy("top secret", "level " + (depth - 1));
+
+        assertEquals(depth, sac.getGroupMembershipTransitively("jsmith").size());
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("test request")
+                .action("read")
+                .principal("jsmith")
+                .resource("/secrets/launch-codes")
+                .build();
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(request.withAction("write")).status());
+    }
+
+    @Test
+    public void survivesScriptFlush() {
+        sac.assignPrincipalToGroup("hr", "jsmith");
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("test request")
+                .action("increase")
+                .principal("jsmith")
+                .resource("/org/employees/jdoe/pay")
+                .build();
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+
+        final RedisClient client = RedisClient.create("redis://localhost:8080");
+        client.connect().sync().scriptFlush();
+        client.shutdown();
+
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+    }
+}
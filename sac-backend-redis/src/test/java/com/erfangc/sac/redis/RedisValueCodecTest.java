@@ -0,0 +1,78 @@
+package com.erfangc.sac.redis;
+
+import com.erfangc.sac.backend.redis.ImmutableRedisBackendOptions;
+import com.erfangc.sac.backend.redis.RedisBackend;
+import com.erfangc.sac.backend.redis.ValueCodec;
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.core.service.SimpleAccessControlImpl;
+import com.erfangc.sac.interfaces.IdentityPolicy;
+import com.erfangc.sac.interfaces.ImmutableGroup;
+import com.erfangc.sac.interfaces.ImmutableIdentityPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RedisValueCodecTest extends BackendTestBase {
+    private RedisServer redisServer;
+    private RedisBackend backend;
+
+    @After
+    public void tearDown() {
+        backend.close();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        redisServer = new RedisServer(8080);
+        redisServer.start();
+        backend = new RedisBackend("localhost:8080", ImmutableRedisBackendOptions.builder().valueCodec(ValueCodec.smile()).build());
+        sac = new SimpleAccessControlImpl(backend);
+        initializePolicyBackendStates();
+    }
+
+    private static IdentityPolicy auditPolicy() {
+        return ImmutableIdentityPolicy
+                .builder()
+                .id("audit ledgers")
+                .name("Audit Ledgers")
+                .actions(asList("read", "sign"))
+                .resource("/org/ledgers/*")
+                .build();
+    }
+
+    @Test
+    public void codecsReadEachOther() {
+        final IdentityPolicy policy = auditPolicy();
+        final byte[] json = ValueCodec.json().encode(policy);
+        final byte[] smile = ValueCodec.smile().encode(policy);
+
+        assertTrue(smile.length < json.length);
+        assertEquals(policy, ValueCodec.smile().decode(json, ImmutableIdentityPolicy.class));
+        assertEquals(policy, ValueCodec.json().decode(smile, ImmutableIdentityPolicy.class));
+    }
+
+    @Test
+    public void jsonValuesAreReadAndMigrated() {
+        // not closed here, closing a RedisBackend shuts the server down which tearDown takes care of
+        final RedisBackend jsonBackend = new RedisBackend("localhost:8080");
+        jsonBackend.createPolicy(auditPolicy());
+        jsonBackend.createGroup(ImmutableGroup.builder().id("auditors").name("Auditors").build());
+
+        assertEquals(auditPolicy(), sac.getPolicy("audit ledgers"));
+        assertEquals("Auditors", sac.getGroup("auditors").name());
+
+        // only the two values written as JSON need rewriting
+        assertEquals(2, backend.migrateValues());
+        assertEquals(0, backend.migrateValues());
+        assertEquals(auditPolicy(), jsonBackend.getPolicy("audit ledgers"));
+        assertEquals("Auditors", jsonBackend.getGroup("auditors").name());
+    }
+}
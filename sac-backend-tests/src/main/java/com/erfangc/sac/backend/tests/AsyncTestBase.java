@@ -0,0 +1,95 @@
+package com.erfangc.sac.backend.tests;
+
+import com.erfangc.sac.interfaces.*;
+import org.junit.Test;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that an {@link AsyncSimpleAccessControl} makes the same decisions as the {@link SimpleAccessControl} the
+ * state was set up through. Both must be backed by the same storage
+ */
+public class AsyncTestBase {
+
+    protected SimpleAccessControl sac;
+    protected AsyncSimpleAccessControl asyncSac;
+
+    protected void initializePolicyBackendStates() {
+        sac.createGroup(ImmutableGroup.builder().id("engineers").name("Engineers").build());
+        sac.createGroup(ImmutableGroup.builder().id("staff").name("Staff").build());
+        sac.assignPrincipalToGroup("staff", "engineers", true);
+        sac.assignPrincipalToGroup("engineers", "alice");
+        sac.assignPrincipalToGroup("staff", "bob");
+
+        sac.createPolicy(
+                ImmutableIdentityPolicy
+                        .builder()
+                        .id("read wiki")
+                        .resource("/wiki/*")
+                        .actions(singletonList("read"))
+                        .build()
+        );
+        sac.createPolicy(
+                ImmutableIdentityPolicy
+                        .builder()
+                        .id("deploy")
+                        .resource("/services/*")
+                        .actions(asList("deploy", "restart"))
+                        .build()
+        );
+        sac.assignPolicy("read wiki", "staff");
+        sac.assignPolicy("deploy", "engineers");
+        sac.grantActions("/docs/roadmap", "bob", singleton("edit"));
+    }
+
+    private List<AuthorizationRequest> requests() {
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("1")
+                .principal("alice")
+                .resource("/wiki/home")
+                .action("read")
+                .build();
+        return asList(
+                request,
+                request.withId("2").withResource("/services/api").withAction("deploy"),
+                request.withId("3").withPrincipal("bob").withResource("/services/api").withAction("deploy"),
+                request.withId("4").withPrincipal("bob").withResource("/docs/roadmap").withAction("edit"),
+                request.withId("5").withResource("/docs/roadmap").withAction("edit"),
+                request.withId("6").withPrincipal("carol"),
+                // only permitted when resource policies are hierarchical
+                request.withId("7").withPrincipal("bob").withResource("/docs/roadmap/q3").withAction("edit")
+        );
+    }
+
+    @Test
+    public void authorize() {
+        for (AuthorizationRequest request : requests()) {
+            final AuthorizationResponse response = asyncSac.authorize(request).join();
+            assertEquals(request.id(), response.requestId());
+            assertEquals(request.id(), sac.authorize(request).status(), response.status());
+        }
+    }
+
+    @Test
+    public void authorizeAll() {
+        final List<AuthorizationRequest> requests = requests();
+        final List<AuthorizationResponse> responses = asyncSac.authorizeAll(requests).join();
+        assertEquals(requests.size(), responses.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).id(), responses.get(i).requestId());
+            assertEquals(sac.authorize(requests.get(i)).status(), responses.get(i).status());
+        }
+        assertEquals(AuthorizationStatus.Permitted, responses.get(0).status());
+        assertEquals(AuthorizationStatus.Permitted, responses.get(1).status());
+        assertEquals(AuthorizationStatus.Denied, responses.get(2).status());
+        assertEquals(AuthorizationStatus.Permitted, responses.get(3).status());
+        assertEquals(AuthorizationStatus.Denied, responses.get(4).status());
+        assertEquals(AuthorizationStatus.Denied, responses.get(5).status());
+    }
+}
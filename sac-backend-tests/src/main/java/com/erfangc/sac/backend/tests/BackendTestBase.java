@@ -214,6 +214,36 @@ public class BackendTestBase {
         assertEquals("new policy", identityPolicy.id());
     }
 
+    @Test
+    public void assignPolicyBeforeCreate() {
+        final IdentityPolicy audit = ImmutableIdentityPolicy
+                .builder()
+                .id("audit")
+                .resource("/org/ledgers/*")
+                .actions(singletonList("read"))
+                .build();
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("test request")
+                .action("read")
+                .principal("auditor")
+                .resource("/org/ledgers/2019")
+                .build();
+        sac.assignPolicy(audit.id(), "auditor");
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(request).status());
+        sac.createPolicy(audit);
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+
+        // the same holds within a single batch
+        final ImmutableAuthorizationRequest second = request.withPrincipal("second auditor");
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(second).status());
+        sac.applyMutations(asList(
+                Mutation.assignPolicy("second audit", second.principal()),
+                Mutation.createPolicy(ImmutableIdentityPolicy.copyOf(audit).withId("second audit"))
+        ));
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(second).status());
+    }
+
     @Test
     public void getPolicy() {
         final IdentityPolicy identityPolicy = sac.getPolicy(managePayPolicy().id());
@@ -285,6 +315,45 @@ public class BackendTestBase {
         assertEquals(AuthorizationStatus.Permitted, sac.authorize(authorizationRequest).status());
     }
 
+    @Test
+    public void authorizeAfterPolicyUpdate() {
+        final String hrGuy = "hr guy";
+        sac.assignPrincipalToGroup(humanResources().id(), hrGuy);
+        final ImmutableAuthorizationRequest authorizationRequest = ImmutableAuthorizationRequest
+                .builder()
+                .id("test request")
+                .action("freeze")
+                .principal(hrGuy)
+                .resource("/org/employees/jsmith/pay")
+                .build();
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(authorizationRequest).status());
+
+        // policies already assigned pick up the update
+        sac.updatePolicy(ImmutableIdentityPolicy.copyOf(managePayPolicy()).withActions(asList("increase", "freeze")));
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(authorizationRequest).status());
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(authorizationRequest.withAction("decrease")).status());
+    }
+
+    @Test
+    public void authorizeAfterPolicyDelete() {
+        final String hrGuy = "hr guy";
+        sac.assignPrincipalToGroup(humanResources().id(), hrGuy);
+        final ImmutableAuthorizationRequest authorizationRequest = ImmutableAuthorizationRequest
+                .builder()
+                .id("test request")
+                .action("increase")
+                .principal(hrGuy)
+                .resource("/org/employees/jsmith/pay")
+                .build();
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(authorizationRequest).status());
+
+        sac.deletePolicy(managePayPolicy().id());
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(authorizationRequest).status());
+        // a policy created again under the same id is not assigned to anyone
+        sac.createPolicy(managePayPolicy());
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(authorizationRequest).status());
+    }
+
     @Test
     public void authorizeAgainstResourcePolicy() {
         String hrGuy = "hr guy";
@@ -429,6 +498,42 @@ public class BackendTestBase {
         assertEquals(AuthorizationStatus.Permitted, sac.authorize(request.withAction("read")).status());
     }
 
+    @Test
+    public void authorizeAll() {
+        final String hrGuy = "hr guy";
+        final String itGuy = "it guy";
+        sac.assignPrincipalToGroup(humanResources().id(), hrGuy);
+        sac.assignPrincipalToGroup(networkAdmins().id(), itGuy);
+        sac.grantActions("/books/book1", itGuy, singleton("read"));
+
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("1")
+                .action("increase")
+                .principal(hrGuy)
+                .resource("/org/employees/jsmith/pay")
+                .build();
+        final List<AuthorizationRequest> requests = asList(
+                request,
+                request.withId("2").withAction("login").withResource("/org/servers/server1"),
+                request.withId("3").withPrincipal(itGuy).withAction("login").withResource("/org/servers/server1"),
+                request.withId("4").withPrincipal(itGuy).withAction("read").withResource("/books/book1"),
+                request.withId("5").withAction("read").withResource("/books/book1")
+        );
+        final List<AuthorizationResponse> responses = sac.authorizeAll(requests);
+
+        assertEquals(requests.size(), responses.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).id(), responses.get(i).requestId());
+            assertEquals(sac.authorize(requests.get(i)).status(), responses.get(i).status());
+        }
+        assertEquals(AuthorizationStatus.Permitted, responses.get(0).status());
+        assertEquals(AuthorizationStatus.Denied, responses.get(1).status());
+        assertEquals(AuthorizationStatus.Permitted, responses.get(2).status());
+        assertEquals(AuthorizationStatus.Permitted, responses.get(3).status());
+        assertEquals(AuthorizationStatus.Denied, responses.get(4).status());
+    }
+
     private Set<String> readAndWrite() {
         Set<String> actions = new HashSet<>();
         actions.add("write");
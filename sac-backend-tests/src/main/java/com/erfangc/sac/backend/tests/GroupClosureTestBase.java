@@ -0,0 +1,120 @@
+package com.erfangc.sac.backend.tests;
+
+import com.erfangc.sac.interfaces.ImmutableGroup;
+import com.erfangc.sac.interfaces.SimpleAccessControl;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link GroupClosureTestBase} checks that transitive group membership stays consistent as group edges are added and
+ * removed. The test keeps its own copy of every edge it applies and after each mutation compares what the
+ * {@link SimpleAccessControl} under test reports (i.e. a materialized closure) against a fresh BFS over that copy
+ */
+public class GroupClosureTestBase {
+
+    private static final int GROUPS = 12;
+    private static final int USERS = 8;
+    private static final int MUTATIONS = 300;
+
+    protected SimpleAccessControl sac;
+
+    // principal -> the groups it is directly assigned to
+    private final Map<String, Set<String>> edges = new HashMap<>();
+
+    private static String group(int i) {
+        return "group " + i;
+    }
+
+    private static String user(int i) {
+        return "user " + i;
+    }
+
+    private Set<String> bfs(String principalId) {
+        final Set<String> gids = new HashSet<>();
+        final Queue<String> queue = new ArrayDeque<>(edges.getOrDefault(principalId, Collections.emptySet()));
+        while (!queue.isEmpty()) {
+            final String gid = queue.poll();
+            if (gids.add(gid)) {
+                queue.addAll(edges.getOrDefault(gid, Collections.emptySet()));
+            }
+        }
+        return gids;
+    }
+
+    private void assign(String groupId, String principalId, boolean principalIsGroup) {
+        sac.assignPrincipalToGroup(groupId, principalId, principalIsGroup);
+        edges.computeIfAbsent(principalId, k -> new HashSet<>()).add(groupId);
+    }
+
+    private void unassign(String groupId, String principalId) {
+        sac.unassignPrincipalFromGroup(groupId, principalId);
+        edges.getOrDefault(principalId, Collections.emptySet()).remove(groupId);
+    }
+
+    /**
+     * Compare the transitive membership reported for every user against a fresh BFS over the edges applied so far
+     */
+    protected void assertClosureConsistent(String context) {
+        for (int i = 0; i < USERS; i++) {
+            final String principalId = user(i);
+            assertEquals(
+                    context + ", transitive membership of " + principalId,
+                    bfs(principalId),
+                    new HashSet<>(sac.getGroupMembershipTransitively(principalId))
+            );
+        }
+    }
+
+    @Test
+    public void closureFollowsRandomEdgeChanges() {
+        final Random random = new Random(42);
+        for (int i = 0; i < GROUPS; i++) {
+            sac.createGroup(ImmutableGroup.builder().id(group(i)).name("Group " + i).build());
+        }
+        for (int step = 0; step < MUTATIONS; step++) {
+            final String groupId = group(random.nextInt(GROUPS));
+            final boolean principalIsGroup = random.nextBoolean();
+            final String principalId = principalIsGroup ? group(random.nextInt(GROUPS)) : user(random.nextInt(USERS));
+            if (principalId.equals(groupId)) {
+                continue;
+            }
+            final boolean assigned = edges.getOrDefault(principalId, Collections.emptySet()).contains(groupId);
+            // bias towards adding edges so that deep and cyclic hierarchies show up, while still removing plenty
+            if (assigned && random.nextInt(3) == 0) {
+                unassign(groupId, principalId);
+                assertClosureConsistent("step " + step + ", after removing " + principalId + " from " + groupId);
+            } else if (!assigned) {
+                assign(groupId, principalId, principalIsGroup);
+                assertClosureConsistent("step " + step + ", after adding " + principalId + " to " + groupId);
+            }
+        }
+    }
+
+    @Test
+    public void chain() {
+        for (int i = 0; i < GROUPS; i++) {
+            sac.createGroup(ImmutableGroup.builder().id(group(i)).name("Group " + i).build());
+        }
+        assign(group(0), user(0), false);
+        // grow the chain from the top so that every new edge must be propagated to the user below it
+        for (int i = 1; i < GROUPS; i++) {
+            assign(group(i), group(i - 1), true);
+        }
+        assertEquals(GROUPS, sac.getGroupMembershipTransitively(user(0)).size());
+        assertClosureConsistent("full chain");
+
+        // cutting the chain in the middle drops everything above the cut
+        unassign(group(GROUPS / 2), group(GROUPS / 2 - 1));
+        assertEquals(GROUPS / 2, sac.getGroupMembershipTransitively(user(0)).size());
+        assertClosureConsistent("cut chain");
+
+        // a bypass around the cut brings back everything but the group right above it, closing a cycle changes nothing
+        assign(group(GROUPS / 2 + 1), group(GROUPS / 2 - 1), true);
+        assign(group(0), group(GROUPS - 1), true);
+        assertEquals(GROUPS - 1, sac.getGroupMembershipTransitively(user(0)).size());
+        assertClosureConsistent("bypassed chain");
+    }
+}
@@ -0,0 +1,97 @@
+package com.erfangc.sac.backend.tests;
+
+import com.erfangc.sac.interfaces.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link HierarchicalResourcePolicyTestBase} checks that, with hierarchical resource policies enabled, a grant on a
+ * resource covers every resource below it and nothing else, and that revoking it is observed by decisions made below
+ */
+public class HierarchicalResourcePolicyTestBase {
+
+    protected SimpleAccessControl sac;
+
+    private static AuthorizationRequest request(String principal, String action, String resource) {
+        return ImmutableAuthorizationRequest
+                .builder()
+                .id("1")
+                .principal(principal)
+                .action(action)
+                .resource(resource)
+                .build();
+    }
+
+    private AuthorizationStatus authorize(String principal, String action, String resource) {
+        return sac.authorize(request(principal, action, resource)).status();
+    }
+
+    @Test
+    public void grantOnAnAncestorCoversDescendants() {
+        sac.grantActions("/org/inventory", "jane", singleton("read"));
+
+        assertEquals(AuthorizationStatus.Permitted, authorize("jane", "read", "/org/inventory"));
+        assertEquals(AuthorizationStatus.Permitted, authorize("jane", "read", "/org/inventory/widgets/widget1"));
+        assertEquals(AuthorizationStatus.Denied, authorize("jane", "write", "/org/inventory/widgets/widget1"));
+        // siblings sharing a prefix of the name are not descendants
+        assertEquals(AuthorizationStatus.Denied, authorize("jane", "read", "/org/inventory-archive/widget1"));
+        assertEquals(AuthorizationStatus.Denied, authorize("jane", "read", "/org"));
+        assertEquals(AuthorizationStatus.Denied, authorize("john", "read", "/org/inventory/widgets/widget1"));
+    }
+
+    @Test
+    public void grantsAlongTheAncestryAddUp() {
+        sac.createGroup(ImmutableGroup.builder().id("warehouse").name("warehouse").build());
+        sac.assignPrincipalToGroup("warehouse", "jane");
+        sac.grantActions("/org", "warehouse", singleton("read"));
+        sac.grantActions("/org/inventory/widgets", "jane", singleton("write"));
+
+        assertEquals(AuthorizationStatus.Permitted, authorize("jane", "read", "/org/inventory/widgets/widget1"));
+        assertEquals(AuthorizationStatus.Permitted, authorize("jane", "write", "/org/inventory/widgets/widget1"));
+        assertEquals(AuthorizationStatus.Denied, authorize("jane", "write", "/org/inventory/gadgets/gadget1"));
+    }
+
+    @Test
+    public void revocationOnAnAncestorIsObserved() {
+        sac.grantActions("/org/inventory", "jane", new HashSet<>(Arrays.asList("read", "write")));
+        assertEquals(AuthorizationStatus.Permitted, authorize("jane", "write", "/org/inventory/widgets/widget1"));
+
+        sac.revokeActions("/org/inventory", "jane", singleton("write"));
+        assertEquals(AuthorizationStatus.Denied, authorize("jane", "write", "/org/inventory/widgets/widget1"));
+        assertEquals(AuthorizationStatus.Permitted, authorize("jane", "read", "/org/inventory/widgets/widget1"));
+
+        sac.applyMutations(Arrays.asList(
+                Mutation.grantActions("/org", "jane", singleton("write")),
+                Mutation.revokeActions("/org/inventory", "jane", singleton("read"))
+        ));
+        assertEquals(AuthorizationStatus.Permitted, authorize("jane", "write", "/org/inventory/widgets/widget1"));
+        assertEquals(AuthorizationStatus.Denied, authorize("jane", "read", "/org/inventory/widgets/widget1"));
+    }
+
+    @Test
+    public void batchesResolveAncestorsToo() {
+        sac.grantActions("/org/inventory", "jane", singleton("read"));
+
+        final List<AuthorizationStatus> statuses = sac
+                .authorizeAll(Arrays.asList(
+                        request("jane", "read", "/org/inventory/widgets/widget1"),
+                        request("jane", "read", "/org/inventory/widgets/widget2"),
+                        request("jane", "read", "/org/payroll/2019")
+                ))
+                .stream()
+                .map(AuthorizationResponse::status)
+                .collect(Collectors.toList());
+
+        assertEquals(
+                Arrays.asList(AuthorizationStatus.Permitted, AuthorizationStatus.Permitted, AuthorizationStatus.Denied),
+                statuses
+        );
+    }
+}
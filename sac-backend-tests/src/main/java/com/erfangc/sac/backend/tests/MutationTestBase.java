@@ -0,0 +1,132 @@
+package com.erfangc.sac.backend.tests;
+
+import com.erfangc.sac.interfaces.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+/**
+ * {@link MutationTestBase} checks that a batch applied through {@link SimpleAccessControl#applyMutations(List)} leaves
+ * the same state behind as the equivalent calls made one at a time, and that decisions made before a batch do not
+ * outlive it
+ */
+public class MutationTestBase {
+
+    protected SimpleAccessControl sac;
+
+    private static Group group(String id) {
+        return ImmutableGroup.builder().id(id).name(id).build();
+    }
+
+    private static AuthorizationRequest request(String principal, String action, String resource) {
+        return ImmutableAuthorizationRequest
+                .builder()
+                .id("1")
+                .principal(principal)
+                .action(action)
+                .resource(resource)
+                .build();
+    }
+
+    private AuthorizationStatus authorize(String principal, String action, String resource) {
+        return sac.authorize(request(principal, action, resource)).status();
+    }
+
+    @Test
+    public void onboardInOneBatch() {
+        sac.applyMutations(Arrays.asList(
+                Mutation.createGroup(group("engineering")),
+                Mutation.createGroup(group("platform")),
+                Mutation.assignPrincipalToGroup("engineering", "platform", true),
+                Mutation.assignPrincipalToGroup("platform", "alice"),
+                Mutation.createPolicy(
+                        ImmutableIdentityPolicy
+                                .builder()
+                                .id("deploy services")
+                                .resource("/services/*")
+                                .actions(singletonList("deploy"))
+                                .build()
+                ),
+                Mutation.assignPolicy("deploy services", "engineering"),
+                Mutation.grantActions("/documents/design", "alice", new HashSet<>(Arrays.asList("read", "write")))
+        ));
+
+        assertEquals(
+                new HashSet<>(Arrays.asList("engineering", "platform")),
+                new HashSet<>(sac.getGroupMembershipTransitively("alice"))
+        );
+        assertEquals("platform", sac.getGroup("engineering").assignments().get().get(0).principal());
+        assertEquals(AuthorizationStatus.Permitted, authorize("alice", "deploy", "/services/api"));
+        assertEquals(AuthorizationStatus.Permitted, authorize("alice", "write", "/documents/design"));
+        assertEquals(AuthorizationStatus.Denied, authorize("bob", "deploy", "/services/api"));
+    }
+
+    @Test
+    public void laterMutationsObserveEarlierOnes() {
+        sac.grantActions("/documents/plan", "bob", singleton("read"));
+
+        sac.applyMutations(Arrays.asList(
+                Mutation.createGroup(group("contractors")),
+                Mutation.assignPrincipalToGroup("contractors", "bob"),
+                Mutation.grantActions("/documents/plan", "bob", singleton("write")),
+                Mutation.revokeActions("/documents/plan", "bob", new HashSet<>(Arrays.asList("read", "write"))),
+                Mutation.createPolicy(
+                        ImmutableIdentityPolicy
+                                .builder()
+                                .id("temporary access")
+                                .resource("/documents/*")
+                                .actions(singletonList("read"))
+                                .build()
+                ),
+                Mutation.assignPolicy("temporary access", "contractors"),
+                Mutation.deletePolicy("temporary access"),
+                Mutation.deleteGroup("contractors")
+        ));
+
+        assertNull(sac.getGroup("contractors"));
+        assertNull(sac.getPolicy("temporary access"));
+        assertTrue(sac.getGroupMembership("bob").isEmpty());
+        final ResourcePolicy resourcePolicy = sac.getResourcePolicy("/documents/plan");
+        if (resourcePolicy != null) {
+            for (ResourcePolicyAssignment assignment : resourcePolicy.assignments().orElse(singletonList(null))) {
+                assertTrue(assignment == null || assignment.actions().isEmpty());
+            }
+        }
+        assertEquals(AuthorizationStatus.Denied, authorize("bob", "read", "/documents/plan"));
+    }
+
+    @Test
+    public void decisionsMadeBeforeABatchAreDiscarded() {
+        sac.createGroup(group("auditors"));
+        sac.createPolicy(
+                ImmutableIdentityPolicy
+                        .builder()
+                        .id("read ledgers")
+                        .resource("/ledgers/*")
+                        .actions(singletonList("read"))
+                        .build()
+        );
+        assertEquals(AuthorizationStatus.Denied, authorize("carol", "read", "/ledgers/2019"));
+        assertEquals(AuthorizationStatus.Denied, authorize("carol", "sign", "/reports/annual"));
+
+        sac.applyMutations(Arrays.asList(
+                Mutation.assignPolicy("read ledgers", "auditors"),
+                Mutation.assignPrincipalToGroup("auditors", "carol"),
+                Mutation.grantActions("/reports/annual", "auditors", singleton("sign"))
+        ));
+
+        assertEquals(AuthorizationStatus.Permitted, authorize("carol", "read", "/ledgers/2019"));
+        assertEquals(AuthorizationStatus.Permitted, authorize("carol", "sign", "/reports/annual"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void mutationsMissingAttributesAreRejected() {
+        ImmutableMutation.builder().type(MutationType.GrantActions).resource("/documents/plan").build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.erfangc.sac.benchmarks;
+
+import com.erfangc.sac.interfaces.AuthorizationRequest;
+import com.erfangc.sac.interfaces.AuthorizationResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end cost of {@link com.erfangc.sac.core.service.SimpleAccessControlImpl#authorize(AuthorizationRequest)}: the
+ * transitive membership of the principal, its identity policies, the resource policy and the decision itself
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorizeBenchmark extends BackendState {
+
+    private static final int REQUESTS = 1024;
+
+    @Param({"10", "1000"})
+    public int policies;
+
+    @Param({"1", "8"})
+    public int depth;
+
+    @Param({"4"})
+    public int fanOut;
+
+    @Param({"0.1", "0.5"})
+    public double wildcardDensity;
+
+    private List<AuthorizationRequest> requests;
+    private int next;
+
+    @Override
+    protected void populate() {
+        Organization.populate(sac, policies, depth, fanOut, wildcardDensity);
+        requests = Organization.requests(REQUESTS, policies);
+    }
+
+    @Benchmark
+    public AuthorizationResponse authorize() {
+        next = (next + 1) & (REQUESTS - 1);
+        return sac.authorize(requests.get(next));
+    }
+}
@@ -0,0 +1,58 @@
+package com.erfangc.sac.benchmarks;
+
+import com.erfangc.sac.backend.redis.RedisBackend;
+import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.core.backend.inmemory.CompactInMemoryBackend;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import com.erfangc.sac.core.service.SimpleAccessControlImpl;
+import com.erfangc.sac.interfaces.SimpleAccessControl;
+import org.openjdk.jmh.annotations.*;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+/**
+ * {@link BackendState} stands up the {@link Backend} a benchmark runs against: an {@link InMemoryBackend}, a
+ * {@link CompactInMemoryBackend}, or a {@link RedisBackend} connected to an embedded Redis server started for the trial, then lets the benchmark populate it
+ */
+@State(Scope.Benchmark)
+public abstract class BackendState {
+
+    private static final int REDIS_PORT = 6390;
+
+    @Param({"InMemory", "Compact", "Redis"})
+    public String backend;
+
+    protected Backend store;
+    protected SimpleAccessControl sac;
+    private RedisServer redisServer;
+
+    @Setup(Level.Trial)
+    public void setUpBackend() throws IOException {
+        if ("Redis".equals(backend)) {
+            redisServer = new RedisServer(REDIS_PORT);
+            redisServer.start();
+            store = new RedisBackend("localhost:" + REDIS_PORT);
+        } else if ("Compact".equals(backend)) {
+            store = new CompactInMemoryBackend();
+        } else {
+            store = new InMemoryBackend();
+        }
+        sac = new SimpleAccessControlImpl(store);
+        populate();
+    }
+
+    /**
+     * Write the data set of the benchmark, JMH does not order the trial setups of a class and of its parent
+     */
+    protected abstract void populate();
+
+    @TearDown(Level.Trial)
+    public void tearDownBackend() {
+        if (redisServer != null) {
+            // closing a RedisBackend shuts the server down as well
+            ((RedisBackend) store).close();
+            redisServer.stop();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.erfangc.sac.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A grant of actions on a resource immediately revoked, through {@link
+ * com.erfangc.sac.core.service.SimpleAccessControlImpl} so that the invalidations it triggers are accounted for
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GrantRevokeBenchmark extends BackendState {
+
+    private static final Set<String> ACTIONS = Collections.singleton("read");
+
+    @Param({"1", "1000"})
+    public int resources;
+
+    private int next;
+
+    @Override
+    protected void populate() {
+        // other principals already hold actions on the resources, the way a long lived data set would
+        for (int i = 0; i < resources; i++) {
+            sac.grantActions(Organization.resource(i), "owner " + i, ACTIONS);
+        }
+    }
+
+    @Benchmark
+    public void grantThenRevoke() {
+        next = (next + 1) % resources;
+        final String resource = Organization.resource(next);
+        sac.grantActions(resource, Organization.PRINCIPAL, ACTIONS);
+        sac.revokeActions(resource, Organization.PRINCIPAL, ACTIONS);
+    }
+}
@@ -0,0 +1,35 @@
+package com.erfangc.sac.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of the transitive group membership of a principal, straight from the {@link
+ * com.erfangc.sac.core.backend.Backend}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupMembershipBenchmark extends BackendState {
+
+    @Param({"1", "8", "32"})
+    public int depth;
+
+    @Param({"1", "4", "16"})
+    public int fanOut;
+
+    @Override
+    protected void populate() {
+        Organization.populate(sac, 0, depth, fanOut, 0);
+    }
+
+    @Benchmark
+    public List<String> getGroupMembershipTransitively() {
+        return store.getGroupMembershipTransitively(Organization.PRINCIPAL);
+    }
+}
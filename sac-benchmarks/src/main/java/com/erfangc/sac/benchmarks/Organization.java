@@ -0,0 +1,97 @@
+package com.erfangc.sac.benchmarks;
+
+import com.erfangc.sac.interfaces.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * {@link Organization} lays out the data set the benchmarks run against
+ * <p>
+ * The benchmarked principal belongs to `fanOut` groups, each of which belongs to every one of the `fanOut` groups of
+ * the next level up, `depth` levels high. Its transitive membership therefore counts depth * fanOut groups reached
+ * through fanOut^2 edges per level. Identity policies are spread evenly across the groups, each granting read to
+ * `/records/i/data`, either literally or, for a `wildcardDensity` share of them, through a wildcard in place of its
+ * first segment, which every lookup has to explore
+ */
+public final class Organization {
+
+    public static final String PRINCIPAL = "benchmark principal";
+    private static final long SEED = 42;
+
+    private Organization() {
+    }
+
+    public static String group(int level, int index) {
+        return "group " + level + "-" + index;
+    }
+
+    public static String policy(int index) {
+        return "policy " + index;
+    }
+
+    public static String resource(int index) {
+        return "/records/" + index + "/data";
+    }
+
+    public static List<IdentityPolicy> policies(int policies, double wildcardDensity) {
+        final Random random = new Random(SEED);
+        final List<IdentityPolicy> ret = new ArrayList<>(policies);
+        for (int i = 0; i < policies; i++) {
+            ret.add(
+                    ImmutableIdentityPolicy
+                            .builder()
+                            .id(policy(i))
+                            .resource(random.nextDouble() < wildcardDensity ? "/*/" + i + "/data" : resource(i))
+                            .actions(singletonList("read"))
+                            .build()
+            );
+        }
+        return ret;
+    }
+
+    public static void populate(SimpleAccessControl sac, int policies, int depth, int fanOut, double wildcardDensity) {
+        for (int level = 0; level < depth; level++) {
+            for (int i = 0; i < fanOut; i++) {
+                sac.createGroup(ImmutableGroup.builder().id(group(level, i)).name(group(level, i)).build());
+            }
+        }
+        for (int i = 0; i < fanOut; i++) {
+            sac.assignPrincipalToGroup(group(0, i), PRINCIPAL);
+            for (int level = 1; level < depth; level++) {
+                for (int j = 0; j < fanOut; j++) {
+                    sac.assignPrincipalToGroup(group(level, j), group(level - 1, i), true);
+                }
+            }
+        }
+        int i = 0;
+        for (IdentityPolicy policy : policies(policies, wildcardDensity)) {
+            sac.createPolicy(policy);
+            sac.assignPolicy(policy.id(), group(i % depth, i / depth % fanOut));
+            i++;
+        }
+    }
+
+    /**
+     * @return requests of the benchmarked principal, half of which target a resource covered by one of the policies
+     */
+    public static List<AuthorizationRequest> requests(int count, int policies) {
+        final Random random = new Random(SEED);
+        final List<AuthorizationRequest> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ret.add(
+                    ImmutableAuthorizationRequest
+                            .builder()
+                            .id("request " + i)
+                            .principal(PRINCIPAL)
+                            .action("read")
+                            .resource(resource(random.nextInt(2 * policies)))
+                            .build()
+            );
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,114 @@
+package com.erfangc.sac.benchmarks.load;
+
+import com.erfangc.sac.core.metrics.LogLinearHistogram;
+import com.erfangc.sac.interfaces.ImmutableAuthorizationRequest;
+import com.erfangc.sac.interfaces.SimpleAccessControl;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.erfangc.sac.benchmarks.load.OrganizationGenerator.*;
+
+/**
+ * {@link LoadDriver} runs a closed loop workload against an organization laid out by {@link OrganizationGenerator}:
+ * each thread issues one operation, waits for its outcome and immediately issues the next, so that the offered load
+ * adapts to what the {@link SimpleAccessControl} sustains and latencies are not inflated by queueing in the driver
+ * <p>
+ * Operations mix authorization decisions of random principals on random documents with administrative writes (see
+ * {@link LoadOptions#authorizeRatio()}). Latencies are only recorded once the warm up has elapsed
+ */
+public class LoadDriver {
+
+    private static final Operation[] ADMIN_OPERATIONS = {
+            Operation.GrantActions,
+            Operation.RevokeActions,
+            Operation.AssignPrincipalToGroup,
+            Operation.UnassignPrincipalFromGroup
+    };
+
+    private final SimpleAccessControl sac;
+    private final OrganizationGenerator organization;
+    private final LoadOptions options;
+
+    public LoadDriver(SimpleAccessControl sac, OrganizationGenerator organization, LoadOptions options) {
+        this.sac = sac;
+        this.organization = organization;
+        this.options = options;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(options.threads());
+        final long start = System.nanoTime();
+        final long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        final long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        final List<Future<Map<Operation, LogLinearHistogram>>> futures = new ArrayList<>();
+        for (int thread = 0; thread < options.threads(); thread++) {
+            final Random random = new Random(options.seed() + thread);
+            futures.add(executor.submit(() -> loop(random, measureFrom, measureUntil)));
+        }
+        final Map<Operation, LogLinearHistogram> latencies = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LogLinearHistogram());
+        }
+        try {
+            for (Future<Map<Operation, LogLinearHistogram>> future : futures) {
+                future.get().forEach((operation, histogram) -> latencies.get(operation).add(histogram));
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new LoadReport(measureUntil - measureFrom, latencies);
+    }
+
+    private Map<Operation, LogLinearHistogram> loop(Random random, long measureFrom, long measureUntil) {
+        final Map<Operation, LogLinearHistogram> latencies = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LogLinearHistogram());
+        }
+        final OrganizationSpec spec = organization.spec();
+        long requestId = 0;
+        long now = System.nanoTime();
+        while (now < measureUntil) {
+            final Operation operation = random.nextDouble() < options.authorizeRatio()
+                    ? Operation.Authorize
+                    : ADMIN_OPERATIONS[random.nextInt(ADMIN_OPERATIONS.length)];
+            final String principal = principal(random.nextInt(Math.max(1, spec.principals())));
+            final String resource = organization.resource(random.nextInt(Math.max(1, spec.resources())));
+            final String action = ACTIONS.get(random.nextInt(ACTIONS.size()));
+            final String group = group(random.nextInt(Math.max(1, spec.groups())));
+            final long started = System.nanoTime();
+            switch (operation) {
+                case Authorize:
+                    sac.authorize(
+                            ImmutableAuthorizationRequest
+                                    .builder()
+                                    .id(Long.toString(requestId++))
+                                    .principal(principal)
+                                    .resource(resource)
+                                    .action(action)
+                                    .build()
+                    );
+                    break;
+                case GrantActions:
+                    sac.grantActions(resource, principal, Collections.singleton(action));
+                    break;
+                case RevokeActions:
+                    sac.revokeActions(resource, principal, Collections.singleton(action));
+                    break;
+                case AssignPrincipalToGroup:
+                    sac.assignPrincipalToGroup(group, principal);
+                    break;
+                case UnassignPrincipalFromGroup:
+                    sac.unassignPrincipalFromGroup(group, principal);
+                    break;
+            }
+            now = System.nanoTime();
+            if (started >= measureFrom && now < measureUntil) {
+                latencies.get(operation).record(now - started);
+            }
+        }
+        return latencies;
+    }
+}
@@ -0,0 +1,45 @@
+package com.erfangc.sac.benchmarks.load;
+
+import org.immutables.value.Value;
+
+/**
+ * How {@link LoadDriver} exercises an organization laid out by {@link OrganizationGenerator}
+ */
+@Value.Immutable
+public interface LoadOptions {
+
+    @Value.Default
+    default long seed() {
+        return 42;
+    }
+
+    /**
+     * The number of threads issuing operations, each waiting for the outcome of one operation before issuing the next
+     */
+    @Value.Default
+    default int threads() {
+        return 8;
+    }
+
+    /**
+     * How long operations run before latencies start being recorded
+     */
+    @Value.Default
+    default long warmupSeconds() {
+        return 10;
+    }
+
+    @Value.Default
+    default long durationSeconds() {
+        return 60;
+    }
+
+    /**
+     * The share of operations that are authorization decisions. The rest is split evenly across granting actions,
+     * revoking actions, assigning a principal to a group and unassigning it
+     */
+    @Value.Default
+    default double authorizeRatio() {
+        return 0.95;
+    }
+}
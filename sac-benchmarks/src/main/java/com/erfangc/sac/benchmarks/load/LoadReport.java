@@ -0,0 +1,64 @@
+package com.erfangc.sac.benchmarks.load;
+
+import com.erfangc.sac.core.metrics.LogLinearHistogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Throughput and latency percentiles of a {@link LoadDriver} run, per {@link Operation}
+ */
+public class LoadReport {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final long elapsedNanos;
+    private final Map<Operation, LogLinearHistogram> latencies;
+
+    LoadReport(long elapsedNanos, Map<Operation, LogLinearHistogram> latencies) {
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = new EnumMap<>(latencies);
+    }
+
+    public long count(Operation operation) {
+        final LogLinearHistogram histogram = latencies.get(operation);
+        return histogram == null ? 0 : histogram.count();
+    }
+
+    public long totalCount() {
+        return latencies.values().stream().mapToLong(LogLinearHistogram::count).sum();
+    }
+
+    /**
+     * @return completed operations of the given kind per second
+     */
+    public double throughput(Operation operation) {
+        return count(operation) * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the latency, in nanoseconds, below which the given share of the operations of the given kind completed
+     */
+    public long percentile(Operation operation, double quantile) {
+        final LogLinearHistogram histogram = latencies.get(operation);
+        return histogram == null ? 0 : histogram.percentile(quantile);
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-28s %12s %12s %10s %10s %10s %10s %10s%n", "operation", "count", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (Map.Entry<Operation, LogLinearHistogram> entry : latencies.entrySet()) {
+            final LogLinearHistogram histogram = entry.getValue();
+            if (histogram.count() == 0) {
+                continue;
+            }
+            out.printf("%-28s %12d %12.1f", entry.getKey(), histogram.count(), throughput(entry.getKey()));
+            for (double quantile : QUANTILES) {
+                out.printf(" %10.1f", histogram.percentile(quantile) / 1e3);
+            }
+            out.printf(" %10.1f%n", histogram.max() / 1e3);
+        }
+        out.printf("%-28s %12d %12.1f%n", "total", totalCount(), totalCount() * 1e9 / elapsedNanos);
+    }
+}
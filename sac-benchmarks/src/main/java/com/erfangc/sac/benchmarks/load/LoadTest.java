@@ -0,0 +1,90 @@
+package com.erfangc.sac.benchmarks.load;
+
+import com.erfangc.sac.core.backend.inmemory.CompactInMemoryBackend;
+import com.erfangc.sac.core.service.InMemorySimpleAccessControl;
+import com.erfangc.sac.core.service.SimpleAccessControlImpl;
+import com.erfangc.sac.interfaces.SimpleAccessControl;
+import com.erfangc.sac.redis.RedisSimpleAccessControl;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line entry point generating an organization and driving load against it, i.e.
+ * <p>
+ * java -cp benchmarks.jar com.erfangc.sac.benchmarks.load.LoadTest backend=redis endpoint=localhost:6379 principals=1000000
+ * <p>
+ * Arguments are key=value pairs: backend (inmemory, compact or redis), endpoint (a Redis server, an embedded one is started
+ * otherwise), populate (false to drive load against an organization generated earlier), populateThreads, any property
+ * of {@link OrganizationSpec} and any property of {@link LoadOptions}
+ */
+public class LoadTest {
+
+    private static final int EMBEDDED_REDIS_PORT = 6391;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            arguments.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        final OrganizationSpec spec = ImmutableOrganizationSpec
+                .builder()
+                .seed(Long.parseLong(arguments.getOrDefault("seed", "42")))
+                .groups(Integer.parseInt(arguments.getOrDefault("groups", "10000")))
+                .maxParentsPerGroup(Integer.parseInt(arguments.getOrDefault("maxParentsPerGroup", "3")))
+                .principals(Integer.parseInt(arguments.getOrDefault("principals", "100000")))
+                .maxGroupsPerPrincipal(Integer.parseInt(arguments.getOrDefault("maxGroupsPerPrincipal", "3")))
+                .policies(Integer.parseInt(arguments.getOrDefault("policies", "10000")))
+                .wildcardDensity(Double.parseDouble(arguments.getOrDefault("wildcardDensity", "0.3")))
+                .resources(Integer.parseInt(arguments.getOrDefault("resources", "1000000")))
+                .tenants(Integer.parseInt(arguments.getOrDefault("tenants", "100")))
+                .projectsPerTenant(Integer.parseInt(arguments.getOrDefault("projectsPerTenant", "100")))
+                .build();
+        final LoadOptions options = ImmutableLoadOptions
+                .builder()
+                .seed(spec.seed())
+                .threads(Integer.parseInt(arguments.getOrDefault("threads", "8")))
+                .warmupSeconds(Long.parseLong(arguments.getOrDefault("warmupSeconds", "10")))
+                .durationSeconds(Long.parseLong(arguments.getOrDefault("durationSeconds", "60")))
+                .authorizeRatio(Double.parseDouble(arguments.getOrDefault("authorizeRatio", "0.95")))
+                .build();
+
+        RedisServer redisServer = null;
+        final SimpleAccessControl sac;
+        if ("redis".equals(arguments.getOrDefault("backend", "inmemory"))) {
+            String endpoint = arguments.get("endpoint");
+            if (endpoint == null) {
+                redisServer = new RedisServer(EMBEDDED_REDIS_PORT);
+                redisServer.start();
+                endpoint = "localhost:" + EMBEDDED_REDIS_PORT;
+            }
+            sac = new RedisSimpleAccessControl(endpoint);
+        } else if ("compact".equals(arguments.get("backend"))) {
+            sac = new SimpleAccessControlImpl(new CompactInMemoryBackend());
+        } else {
+            sac = InMemorySimpleAccessControl.getInstance();
+        }
+
+        final OrganizationGenerator organization = new OrganizationGenerator(spec);
+        if (Boolean.parseBoolean(arguments.getOrDefault("populate", "true"))) {
+            final long start = System.nanoTime();
+            organization.populate(sac, Integer.parseInt(arguments.getOrDefault("populateThreads", "8")));
+            System.out.printf("populated %s in %d s%n", spec, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        }
+        new LoadDriver(sac, organization, options).run().print(System.out);
+
+        if (redisServer != null) {
+            ((RedisSimpleAccessControl) sac).close();
+            redisServer.stop();
+        }
+        // closing the connection to an external Redis would shut the server down, yet its threads keep the JVM alive
+        System.exit(0);
+    }
+}
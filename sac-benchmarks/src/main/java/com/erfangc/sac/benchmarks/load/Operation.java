@@ -0,0 +1,12 @@
+package com.erfangc.sac.benchmarks.load;
+
+/**
+ * The kinds of operation {@link LoadDriver} issues
+ */
+public enum Operation {
+    Authorize,
+    GrantActions,
+    RevokeActions,
+    AssignPrincipalToGroup,
+    UnassignPrincipalFromGroup
+}
@@ -0,0 +1,193 @@
+package com.erfangc.sac.benchmarks.load;
+
+import com.erfangc.sac.interfaces.ImmutableGroup;
+import com.erfangc.sac.interfaces.ImmutableIdentityPolicy;
+import com.erfangc.sac.interfaces.SimpleAccessControl;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * {@link OrganizationGenerator} writes the synthetic organization described by an {@link OrganizationSpec} through the
+ * public {@link SimpleAccessControl} API, so that any implementation can be loaded with it
+ * <p>
+ * Every entity draws its randomness from a generator seeded by the spec's seed, its kind and its index, which makes the
+ * outcome independent of how the work is split across threads. Ids follow a fixed naming scheme (see {@link
+ * #principal(int)}, {@link #group(int)} and {@link #resource(int)}) so that load can be generated against the
+ * organization without holding on to any of it
+ */
+public class OrganizationGenerator {
+
+    public static final List<String> ACTIONS = Collections.unmodifiableList(Arrays.asList("read", "write", "share", "delete"));
+
+    private static final int GROUP_EDGES = 1;
+    private static final int PRINCIPAL_EDGES = 2;
+    private static final int POLICIES = 3;
+    private static final int RESOURCE_POLICIES = 4;
+    private static final int GRANTEE_IS_GROUP_PERCENT = 20;
+
+    private final OrganizationSpec spec;
+
+    public OrganizationGenerator(OrganizationSpec spec) {
+        this.spec = spec;
+    }
+
+    public static String principal(int index) {
+        return "principal-" + index;
+    }
+
+    public static String group(int index) {
+        return "group-" + index;
+    }
+
+    public static String policy(int index) {
+        return "policy-" + index;
+    }
+
+    public OrganizationSpec spec() {
+        return spec;
+    }
+
+    public String resource(int index) {
+        return project(index) + "/documents/" + index;
+    }
+
+    private String tenant(int index) {
+        return "/tenants/" + (index % spec.tenants());
+    }
+
+    private String project(int index) {
+        return tenant(index) + "/projects/" + (index / spec.tenants() % spec.projectsPerTenant());
+    }
+
+    private SplittableRandom random(int kind, int index) {
+        // SplittableRandom scrambles its seed, so nearby seeds still yield unrelated sequences
+        return new SplittableRandom(spec.seed() * 0x9E3779B97F4A7C15L + kind * 0xBF58476D1CE4E5B9L + index);
+    }
+
+    /**
+     * Populate the given {@link SimpleAccessControl}, spreading the writes of each kind of entity across the given
+     * number of threads
+     */
+    public void populate(SimpleAccessControl sac, int threads) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            forEach(executor, threads, spec.groups(), i -> sac.createGroup(
+                    ImmutableGroup.builder().id(group(i)).name("Group " + i).build()
+            ));
+            forEach(executor, threads, spec.groups(), i -> {
+                for (int parent : parentsOfGroup(i)) {
+                    sac.assignPrincipalToGroup(group(parent), group(i), true);
+                }
+            });
+            forEach(executor, threads, spec.principals(), i -> {
+                for (int gid : groupsOfPrincipal(i)) {
+                    sac.assignPrincipalToGroup(group(gid), principal(i));
+                }
+            });
+            forEach(executor, threads, spec.policies(), i -> writePolicy(sac, i));
+            forEach(executor, threads, spec.resources(), i -> writeResourcePolicy(sac, i));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return the groups the given group directly belongs to, all of lower index so that no cycle can form
+     */
+    Set<Integer> parentsOfGroup(int index) {
+        final Set<Integer> ret = new TreeSet<>();
+        if (index == 0 || spec.groups() == 0) {
+            return ret;
+        }
+        final SplittableRandom random = random(GROUP_EDGES, index);
+        final int parents = 1 + random.nextInt(spec.maxParentsPerGroup());
+        for (int i = 0; i < parents; i++) {
+            ret.add(random.nextInt(index));
+        }
+        return ret;
+    }
+
+    /**
+     * @return the groups the given principal directly belongs to, biased towards groups of higher index, which sit
+     * deeper in the DAG
+     */
+    Set<Integer> groupsOfPrincipal(int index) {
+        final Set<Integer> ret = new TreeSet<>();
+        if (spec.groups() == 0) {
+            return ret;
+        }
+        final SplittableRandom random = random(PRINCIPAL_EDGES, index);
+        final int groups = 1 + random.nextInt(spec.maxGroupsPerPrincipal());
+        for (int i = 0; i < groups; i++) {
+            ret.add(Math.max(random.nextInt(spec.groups()), random.nextInt(spec.groups())));
+        }
+        return ret;
+    }
+
+    private void writePolicy(SimpleAccessControl sac, int index) {
+        final SplittableRandom random = random(POLICIES, index);
+        final int document = random.nextInt(Math.max(1, spec.resources()));
+        final String resource;
+        if (random.nextDouble() < spec.wildcardDensity()) {
+            resource = random.nextBoolean() ? project(document) + "/*" : tenant(document) + "/*";
+        } else {
+            resource = resource(document);
+        }
+        sac.createPolicy(
+                ImmutableIdentityPolicy
+                        .builder()
+                        .id(policy(index))
+                        .resource(resource)
+                        .actions(ACTIONS.subList(0, 1 + random.nextInt(ACTIONS.size())))
+                        .build()
+        );
+        if (spec.groups() > 0) {
+            sac.assignPolicy(policy(index), group(random.nextInt(spec.groups())));
+        }
+    }
+
+    private void writeResourcePolicy(SimpleAccessControl sac, int index) {
+        final SplittableRandom random = random(RESOURCE_POLICIES, index);
+        final String grantee = spec.groups() > 0 && random.nextInt(100) < GRANTEE_IS_GROUP_PERCENT
+                ? group(random.nextInt(spec.groups()))
+                : principal(random.nextInt(Math.max(1, spec.principals())));
+        sac.grantActions(
+                resource(index),
+                grantee,
+                new HashSet<>(ACTIONS.subList(0, 1 + random.nextInt(ACTIONS.size())))
+        );
+    }
+
+    /**
+     * Run the given write for every index below count, in contiguous slices across threads, and return once all are
+     * done
+     */
+    private static void forEach(ExecutorService executor, int threads, int count, IntConsumer write) {
+        final List<Future<?>> futures = new ArrayList<>();
+        final int slice = Math.max(1, (count + threads - 1) / threads);
+        for (int start = 0; start < count; start += slice) {
+            final int from = start;
+            final int to = Math.min(count, start + slice);
+            futures.add(executor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    write.accept(i);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.erfangc.sac.benchmarks.load;
+
+import org.immutables.value.Value;
+
+/**
+ * The shape of a synthetic organization laid out by {@link OrganizationGenerator}. Two organizations generated from
+ * equal specs are identical
+ */
+@Value.Immutable
+public interface OrganizationSpec {
+
+    @Value.Default
+    default long seed() {
+        return 42;
+    }
+
+    /**
+     * Groups form a DAG: each one but the first belongs to between one and {@link #maxParentsPerGroup()} groups of lower
+     * index
+     */
+    @Value.Default
+    default int groups() {
+        return 10_000;
+    }
+
+    @Value.Default
+    default int maxParentsPerGroup() {
+        return 3;
+    }
+
+    /**
+     * Principals that are not groups, each belonging to between one and {@link #maxGroupsPerPrincipal()} groups
+     */
+    @Value.Default
+    default int principals() {
+        return 100_000;
+    }
+
+    @Value.Default
+    default int maxGroupsPerPrincipal() {
+        return 3;
+    }
+
+    /**
+     * Identity policies, each assigned to a single group
+     */
+    @Value.Default
+    default int policies() {
+        return 10_000;
+    }
+
+    /**
+     * The share of identity policies covering a whole project or a whole tenant through a wildcard, as opposed to a
+     * single document
+     */
+    @Value.Default
+    default double wildcardDensity() {
+        return 0.3;
+    }
+
+    /**
+     * Documents, each carrying a {@link com.erfangc.sac.interfaces.ResourcePolicy} granting actions to one principal or
+     * group. Documents are spread across {@link #tenants()} tenants of {@link #projectsPerTenant()} projects each
+     */
+    @Value.Default
+    default int resources() {
+        return 1_000_000;
+    }
+
+    @Value.Default
+    default int tenants() {
+        return 100;
+    }
+
+    @Value.Default
+    default int projectsPerTenant() {
+        return 100;
+    }
+}
@@ -0,0 +1,65 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.benchmarks.Organization;
+import com.erfangc.sac.interfaces.AuthorizationRequest;
+import com.erfangc.sac.interfaces.AuthorizationResponse;
+import com.erfangc.sac.interfaces.IdentityPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PolicyDecisionMaker} alone, without any backend: `scanAndDecide` matches each policy in turn like every
+ * decision made without the decision index does, `compileAndDecide` includes building the {@link PolicyTrie} out of the
+ * policies, while `decide` only walks a trie compiled beforehand
+ * <p>
+ * This lives in the package of {@link PolicyDecisionMaker} since it is not public
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PolicyDecisionMakerBenchmark {
+
+    private static final int REQUESTS = 1024;
+
+    @Param({"10", "100", "1000"})
+    public int policies;
+
+    @Param({"0", "0.1", "0.5"})
+    public double wildcardDensity;
+
+    private final PolicyDecisionMaker decisionMaker = new PolicyDecisionMaker();
+    private List<IdentityPolicy> identityPolicies;
+    private PolicyTrie trie;
+    private List<AuthorizationRequest> requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        identityPolicies = Organization.policies(policies, wildcardDensity);
+        trie = decisionMaker.compile(identityPolicies);
+        requests = Organization.requests(REQUESTS, policies);
+    }
+
+    @Benchmark
+    public AuthorizationResponse scanAndDecide() {
+        next = (next + 1) & (REQUESTS - 1);
+        return decisionMaker.makeAccessDecision(requests.get(next), identityPolicies);
+    }
+
+    @Benchmark
+    public AuthorizationResponse compileAndDecide() {
+        next = (next + 1) & (REQUESTS - 1);
+        return decisionMaker.makeAccessDecision(requests.get(next), decisionMaker.compile(identityPolicies));
+    }
+
+    @Benchmark
+    public AuthorizationResponse decide() {
+        next = (next + 1) & (REQUESTS - 1);
+        return decisionMaker.makeAccessDecision(requests.get(next), trie);
+    }
+}
@@ -0,0 +1,35 @@
+package com.erfangc.sac.benchmarks.load;
+
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import com.erfangc.sac.core.service.SimpleAccessControlImpl;
+import com.erfangc.sac.interfaces.SimpleAccessControl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadDriverTest {
+
+    @Test
+    public void mixedWorkload() throws InterruptedException {
+        final OrganizationGenerator organization = new OrganizationGenerator(
+                ImmutableOrganizationSpec.builder().groups(50).principals(500).policies(100).resources(1_000).build()
+        );
+        final SimpleAccessControl sac = new SimpleAccessControlImpl(new InMemoryBackend());
+        organization.populate(sac, 2);
+
+        final LoadReport report = new LoadDriver(
+                sac,
+                organization,
+                ImmutableLoadOptions.builder().threads(2).warmupSeconds(0).durationSeconds(1).authorizeRatio(0.5).build()
+        ).run();
+
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            assertTrue(operation.name(), report.count(operation) > 0);
+            assertTrue(report.percentile(operation, 0.5) <= report.percentile(operation, 0.99));
+            total += report.count(operation);
+        }
+        assertEquals(total, report.totalCount());
+    }
+}
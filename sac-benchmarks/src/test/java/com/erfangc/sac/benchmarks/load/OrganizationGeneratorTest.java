@@ -0,0 +1,74 @@
+package com.erfangc.sac.benchmarks.load;
+
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import com.erfangc.sac.core.service.SimpleAccessControlImpl;
+import com.erfangc.sac.interfaces.SimpleAccessControl;
+import org.junit.Test;
+
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class OrganizationGeneratorTest {
+
+    private final OrganizationSpec spec = ImmutableOrganizationSpec
+            .builder()
+            .groups(200)
+            .principals(1_000)
+            .policies(300)
+            .resources(2_000)
+            .tenants(10)
+            .projectsPerTenant(10)
+            .build();
+
+    @Test
+    public void independentOfThreads() {
+        final OrganizationGenerator generator = new OrganizationGenerator(spec);
+        final SimpleAccessControl single = new SimpleAccessControlImpl(new InMemoryBackend());
+        final SimpleAccessControl parallel = new SimpleAccessControlImpl(new InMemoryBackend());
+        generator.populate(single, 1);
+        generator.populate(parallel, 4);
+
+        for (int i = 0; i < spec.principals(); i += 7) {
+            final String principal = OrganizationGenerator.principal(i);
+            assertEquals(
+                    new HashSet<>(single.getGroupMembershipTransitively(principal)),
+                    new HashSet<>(parallel.getGroupMembershipTransitively(principal))
+            );
+        }
+        for (int i = 0; i < spec.policies(); i += 7) {
+            assertEquals(single.getPolicy(OrganizationGenerator.policy(i)), parallel.getPolicy(OrganizationGenerator.policy(i)));
+        }
+        for (int i = 0; i < spec.resources(); i += 7) {
+            final String resource = generator.resource(i);
+            assertEquals(single.getResourcePolicy(resource), parallel.getResourcePolicy(resource));
+        }
+    }
+
+    @Test
+    public void groupsFormADag() {
+        final OrganizationGenerator generator = new OrganizationGenerator(spec);
+        assertTrue(generator.parentsOfGroup(0).isEmpty());
+        for (int i = 1; i < spec.groups(); i++) {
+            final int group = i;
+            assertFalse(generator.parentsOfGroup(i).isEmpty());
+            assertTrue(generator.parentsOfGroup(i).stream().allMatch(parent -> parent < group));
+        }
+        for (int i = 0; i < spec.principals(); i++) {
+            assertFalse(generator.groupsOfPrincipal(i).isEmpty());
+        }
+    }
+
+    @Test
+    public void seeded() {
+        final OrganizationGenerator generator = new OrganizationGenerator(spec);
+        final OrganizationGenerator same = new OrganizationGenerator(spec);
+        final OrganizationGenerator other = new OrganizationGenerator(ImmutableOrganizationSpec.copyOf(spec).withSeed(7));
+        boolean differs = false;
+        for (int i = 0; i < spec.principals(); i++) {
+            assertEquals(generator.groupsOfPrincipal(i), same.groupsOfPrincipal(i));
+            differs |= !generator.groupsOfPrincipal(i).equals(other.groupsOfPrincipal(i));
+        }
+        assertTrue(differs);
+    }
+}
@@ -0,0 +1,33 @@
+package com.erfangc.sac.core.backend;
+
+import com.erfangc.sac.interfaces.IdentityPolicy;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AsyncBackend} is the non-blocking variant of the read side of {@link Backend}, exposing only what is needed to make an
+ * authorization decision. Every method returns immediately with a future that completes once the underlying storage has answered
+ */
+public interface AsyncBackend {
+
+    CompletableFuture<ResourcePolicy> getResourcePolicy(String resource);
+
+    CompletableFuture<Map<String, ResourcePolicy>> getResourcePolicies(Collection<String> resources);
+
+    /**
+     * @return the resource policies of the given resource and of its ancestors, closest first, as
+     * {@link ResourcePolicyManager#getResourcePolicyHierarchy(String)}
+     */
+    default CompletableFuture<List<ResourcePolicy>> getResourcePolicyHierarchy(String resource) {
+        final List<String> ancestry = ResourceHierarchy.ancestry(resource);
+        return getResourcePolicies(ancestry).thenApply(found -> ResourceHierarchy.ordered(ancestry, found));
+    }
+
+    CompletableFuture<List<String>> getGroupMembershipTransitively(String principalId);
+
+    CompletableFuture<List<IdentityPolicy>> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId);
+}
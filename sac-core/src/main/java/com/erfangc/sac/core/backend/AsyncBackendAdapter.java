@@ -0,0 +1,45 @@
+package com.erfangc.sac.core.backend;
+
+import com.erfangc.sac.interfaces.IdentityPolicy;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AsyncBackendAdapter} exposes a blocking {@link Backend} as an {@link AsyncBackend} by running each call on the given
+ * {@link Executor}. For backends that never block, such as the in-memory one, a direct executor (i.e. {@code Runnable::run}) is enough
+ */
+public class AsyncBackendAdapter implements AsyncBackend {
+
+    private final Backend backend;
+    private final Executor executor;
+
+    public AsyncBackendAdapter(Backend backend, Executor executor) {
+        this.backend = backend;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<ResourcePolicy> getResourcePolicy(String resource) {
+        return CompletableFuture.supplyAsync(() -> backend.getResourcePolicy(resource), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ResourcePolicy>> getResourcePolicies(Collection<String> resources) {
+        return CompletableFuture.supplyAsync(() -> backend.getResourcePolicies(resources), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getGroupMembershipTransitively(String principalId) {
+        return CompletableFuture.supplyAsync(() -> backend.getGroupMembershipTransitively(principalId), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<IdentityPolicy>> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId) {
+        return CompletableFuture.supplyAsync(() -> backend.fetchIdentityPoliciesTransitivelyForPrincipal(principalId), executor);
+    }
+}
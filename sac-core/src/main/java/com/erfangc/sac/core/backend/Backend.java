@@ -1,8 +1,10 @@
 package com.erfangc.sac.core.backend;
 
 import com.erfangc.sac.interfaces.IdentityPolicy;
+import com.erfangc.sac.interfaces.Mutation;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * {@link Backend} is the aggregating interface that incorporates methods and features from all the
@@ -11,4 +13,28 @@ import java.util.List;
  */
 public interface Backend extends GroupManager, ResourcePolicyManager, IdentityPolicyManager {
     List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId);
+
+    /**
+     * As {@link #fetchIdentityPoliciesTransitivelyForPrincipal(String)}, also reporting the policies assigned to the
+     * principal or to one of its groups that do not exist (yet). Whatever is derived from the result depends on those
+     * as well, since creating one of them changes it. This default cannot tell them apart and reports none;
+     * implementations that keep assignments to missing policies should override it
+     *
+     * @param missingPolicyIds receives the id of every assigned policy that does not exist
+     */
+    default List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId, Set<String> missingPolicyIds) {
+        return fetchIdentityPoliciesTransitivelyForPrincipal(principalId);
+    }
+
+    /**
+     * Apply the given writes in order. This default applies them one at a time; implementations should override it to
+     * apply the whole batch as a single unit (one lock acquisition, snapshot or transaction)
+     *
+     * @param mutations the writes to apply
+     */
+    default void applyMutations(List<Mutation> mutations) {
+        for (Mutation mutation : mutations) {
+            Mutations.apply(this, mutation);
+        }
+    }
 }
@@ -3,12 +3,35 @@ package com.erfangc.sac.core.backend;
 
 import com.erfangc.sac.interfaces.IdentityPolicy;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 public interface IdentityPolicyManager {
 
     void createPolicy(IdentityPolicy identityPolicy);
 
     IdentityPolicy getPolicy(String policyId);
 
+    /**
+     * Retrieve each of the given policies. The default implementation looks them up one at a time through
+     * {@link #getPolicy(String)}; implementations backed by a remote store should override it to fetch all of them in
+     * as few round trips as possible
+     *
+     * @param policyIds the policy identifiers
+     * @return a map of policy identifier to {@link IdentityPolicy}, policies that do not exist are absent from the map
+     */
+    default Map<String, IdentityPolicy> getPolicies(Collection<String> policyIds) {
+        final Map<String, IdentityPolicy> ret = new HashMap<>();
+        for (String policyId : policyIds) {
+            final IdentityPolicy policy = getPolicy(policyId);
+            if (policy != null) {
+                ret.put(policyId, policy);
+            }
+        }
+        return ret;
+    }
+
     void updatePolicy(IdentityPolicy identityPolicy);
 
     void deletePolicy(String policyId);
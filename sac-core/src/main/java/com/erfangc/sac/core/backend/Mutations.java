@@ -0,0 +1,58 @@
+package com.erfangc.sac.core.backend;
+
+import com.erfangc.sac.interfaces.Mutation;
+
+/**
+ * Helpers for applying {@link Mutation}s to a {@link Backend}
+ */
+public final class Mutations {
+
+    private Mutations() {
+    }
+
+    /**
+     * Apply the given mutation by calling the method of the given {@link Backend} it stands for
+     */
+    public static void apply(Backend backend, Mutation mutation) {
+        switch (mutation.type()) {
+            case CreateGroup:
+                backend.createGroup(mutation.group().get());
+                break;
+            case UpdateGroup:
+                backend.updateGroup(mutation.group().get());
+                break;
+            case DeleteGroup:
+                backend.deleteGroup(mutation.groupId().get());
+                break;
+            case AssignPrincipalToGroup:
+                backend.assignPrincipalToGroup(mutation.groupId().get(), mutation.principalId().get(), mutation.principalIsGroup());
+                break;
+            case UnassignPrincipalFromGroup:
+                backend.unassignPrincipalFromGroup(mutation.groupId().get(), mutation.principalId().get());
+                break;
+            case CreatePolicy:
+                backend.createPolicy(mutation.policy().get());
+                break;
+            case UpdatePolicy:
+                backend.updatePolicy(mutation.policy().get());
+                break;
+            case DeletePolicy:
+                backend.deletePolicy(mutation.policyId().get());
+                break;
+            case AssignPolicy:
+                backend.assignPolicy(mutation.policyId().get(), mutation.principalId().get());
+                break;
+            case UnAssignPolicy:
+                backend.unAssignPolicy(mutation.policyId().get(), mutation.principalId().get());
+                break;
+            case GrantActions:
+                backend.grantActions(mutation.resource().get(), mutation.principalId().get(), mutation.actions());
+                break;
+            case RevokeActions:
+                backend.revokeActions(mutation.resource().get(), mutation.principalId().get(), mutation.actions());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported mutation " + mutation.type());
+        }
+    }
+}
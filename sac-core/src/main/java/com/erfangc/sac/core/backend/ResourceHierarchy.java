@@ -0,0 +1,82 @@
+package com.erfangc.sac.core.backend;
+
+import com.erfangc.sac.interfaces.ImmutableResourcePolicy;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+import com.erfangc.sac.interfaces.ResourcePolicyAssignment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for resolving resource policies hierarchically, where resources are '/' separated paths and a policy attached
+ * to a resource also applies to every resource below it. The ancestors of {@code /org/inventory/widgets/widget1} are
+ * {@code /org/inventory/widgets}, {@code /org/inventory} and {@code /org}
+ * <p>
+ * Only ancestors within the first {@link #MAX_DEPTH} segments of a path are consulted, which bounds the lookups behind a
+ * decision regardless of what the requested resource looks like. The policy of the resource itself always applies
+ */
+public final class ResourceHierarchy {
+
+    public static final int MAX_DEPTH = 32;
+
+    private ResourceHierarchy() {
+    }
+
+    /**
+     * @return the given resource followed by its ancestors, closest first
+     */
+    public static List<String> ancestry(String resource) {
+        final List<String> ret = new ArrayList<>();
+        ret.add(resource);
+        int depth = 0;
+        int end = resource.indexOf('/');
+        while (end >= 0 && depth++ < MAX_DEPTH) {
+            if (end > 0) {
+                ret.add(resource.substring(0, end));
+            }
+            end = resource.indexOf('/', end + 1);
+        }
+        // the ancestors were found from the root down
+        Collections.reverse(ret.subList(1, ret.size()));
+        return ret;
+    }
+
+    /**
+     * @param ancestry a resource followed by its ancestors, as returned by {@link #ancestry(String)}
+     * @param found    the policies found for any of them
+     * @return the policies found, in the order of the ancestry
+     */
+    public static List<ResourcePolicy> ordered(List<String> ancestry, Map<String, ResourcePolicy> found) {
+        final List<ResourcePolicy> ret = new ArrayList<>(found.size());
+        for (String resource : ancestry) {
+            final ResourcePolicy resourcePolicy = found.get(resource);
+            if (resourcePolicy != null) {
+                ret.add(resourcePolicy);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Merge the policies of a resource and of its ancestors into the single policy in effect for the resource
+     *
+     * @param resource the requested resource
+     * @param policies the policies found along its ancestry, closest first
+     * @return a policy holding the assignments of every given policy, closest first, or null if there are none
+     */
+    public static ResourcePolicy inherit(String resource, List<ResourcePolicy> policies) {
+        if (policies.isEmpty()) {
+            return null;
+        }
+        if (policies.size() == 1) {
+            return policies.get(0);
+        }
+        final List<ResourcePolicyAssignment> assignments = new ArrayList<>();
+        for (ResourcePolicy policy : policies) {
+            policy.assignments().ifPresent(assignments::addAll);
+        }
+        return ImmutableResourcePolicy.builder().resource(resource).assignments(assignments).build();
+    }
+}
@@ -1,8 +1,10 @@
 package com.erfangc.sac.core.backend;
 
+import com.erfangc.sac.interfaces.ImmutableResourcePolicy;
 import com.erfangc.sac.interfaces.ResourcePolicy;
+import com.erfangc.sac.interfaces.ResourcePolicyAssignment;
 
-import java.util.Set;
+import java.util.*;
 
 /**
  * {@link ResourcePolicyManager} manages the lifecycle and persistence of {@link com.erfangc.sac.interfaces.ResourcePolicy} instances
@@ -41,4 +43,65 @@ public interface ResourcePolicyManager {
      * @return a {@link ResourcePolicy}
      */
     ResourcePolicy getResourcePolicy(String resource);
+
+    /**
+     * Retrieve the policies associated with each of the given resources. The default implementation looks them up one
+     * at a time through {@link #getResourcePolicy(String)}; implementations backed by a remote store should override it
+     * to fetch all of them in as few round trips as possible
+     *
+     * @param resources the resource identifiers
+     * @return a map of resource identifier to {@link ResourcePolicy}, resources without a policy are absent from the map
+     */
+    default Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources) {
+        final Map<String, ResourcePolicy> ret = new HashMap<>();
+        for (String resource : resources) {
+            final ResourcePolicy resourcePolicy = getResourcePolicy(resource);
+            if (resourcePolicy != null) {
+                ret.put(resource, resourcePolicy);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Retrieve, for each of the given resources, the assignments of its policy to any of the given principals, i.e. the
+     * part of the policy a decision on behalf of a principal and its groups can use. The default implementation filters
+     * {@link #getResourcePolicies(Collection)}; implementations that can read part of a policy should override it, so
+     * that the cost of a decision does not grow with the number of principals a resource is shared with
+     *
+     * @param resources  the resource identifiers
+     * @param principals the principals whose assignments are wanted
+     * @return a map of resource identifier to the matching part of its {@link ResourcePolicy}, resources without any
+     * assignment to the given principals are absent from the map
+     */
+    default Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources, Collection<String> principals) {
+        final Set<String> wanted = new HashSet<>(principals);
+        final Map<String, ResourcePolicy> ret = new HashMap<>();
+        getResourcePolicies(resources).forEach((resource, resourcePolicy) -> {
+            final List<ResourcePolicyAssignment> assignments = new ArrayList<>();
+            for (ResourcePolicyAssignment assignment : resourcePolicy.assignments().orElse(Collections.emptyList())) {
+                if (wanted.contains(assignment.principal())) {
+                    assignments.add(assignment);
+                }
+            }
+            if (!assignments.isEmpty()) {
+                ret.put(resource, ImmutableResourcePolicy.builder().resource(resource).assignments(assignments).build());
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Retrieve the policies associated with the given resource and with each of its ancestors, as defined by
+     * {@link ResourceHierarchy}. The default implementation fetches every key of the ancestry at once through
+     * {@link #getResourcePolicies(Collection)}, so that the cost is bounded by the depth of the resource rather than the
+     * number of resources on the system
+     *
+     * @param resource the resource identifier
+     * @return the {@link ResourcePolicy}s found, closest first
+     */
+    default List<ResourcePolicy> getResourcePolicyHierarchy(String resource) {
+        final List<String> ancestry = ResourceHierarchy.ancestry(resource);
+        return ResourceHierarchy.ordered(ancestry, getResourcePolicies(ancestry));
+    }
 }
@@ -0,0 +1,13 @@
+package com.erfangc.sac.core.backend;
+
+/**
+ * {@link SnapshotBackend} is a {@link Backend} whose whole state is versioned. Callers that need several reads to observe
+ * the same version (i.e. the lookups behind a single authorization decision) pin one through {@link #snapshot()}
+ */
+public interface SnapshotBackend extends Backend {
+
+    /**
+     * @return a read only view of the current version, unaffected by writes that happen after this call
+     */
+    Backend snapshot();
+}
@@ -0,0 +1,657 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.core.backend.Mutations;
+import com.erfangc.sac.interfaces.*;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * {@link CompactInMemoryBackend} keeps the same state as {@link InMemoryBackend} in a fraction of the heap, for
+ * organizations of millions of principals. Principal (and group), policy and action ids are interned to dense ints by
+ * {@link Interner}s, and every adjacency (the direct groups of a principal, the members of a group, the policies
+ * assigned to a principal and the principals a policy is assigned to) is an {@link IntSet} in an array indexed by those
+ * ints. Groups and policies are stored once, and resource policies keep their assignments as int arrays
+ * <p>
+ * Groups are also numbered densely among themselves, and each group holds the groups it belongs to transitively as a
+ * {@code long[]} bitset over those numbers, kept up to date whenever an edge out of a group changes. Organizations have a
+ * few thousand groups at most, so these bitsets are a few dozen words long, whereas materializing a closure per
+ * principal as {@link InMemoryBackend} does would not fit millions of principals. A principal's transitive membership is
+ * the word-wise OR of its direct groups and their closures, and its identity policies are found by scanning the set
+ * bits of that membership
+ * <p>
+ * All state is guarded by a single read write lock: reads run concurrently, writes (and {@link #applyMutations(List)}
+ * batches) one at a time. Interned ids are never released, so principals that come and go keep a few bytes each
+ */
+public class CompactInMemoryBackend implements Backend {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int[] NONE = new int[0];
+    private static final long[] NO_GROUPS = new long[0];
+
+    private final Interner principals = new Interner();
+    private final Interner policyIds = new Interner();
+    private final Interner actions = new Interner();
+
+    // indexed by principal
+    private Group[] groups = new Group[INITIAL_CAPACITY];
+    private IntSet[] directGroups = new IntSet[INITIAL_CAPACITY];
+    private IntSet[] memberPrincipals = new IntSet[INITIAL_CAPACITY];
+    private IntSet[] memberGroups = new IntSet[INITIAL_CAPACITY];
+    private IntSet[] principalPolicies = new IntSet[INITIAL_CAPACITY];
+    // 1 + the index of the principal among groups, 0 if it is not a group
+    private int[] groupIndexes = new int[INITIAL_CAPACITY];
+    // indexed by group
+    private int[] groupPrincipals = new int[INITIAL_CAPACITY];
+    private long[][] closures = new long[INITIAL_CAPACITY][];
+    private int groupCount;
+    // indexed by policy
+    private IdentityPolicy[] policies = new IdentityPolicy[INITIAL_CAPACITY];
+    private IntSet[] policyPrincipals = new IntSet[INITIAL_CAPACITY];
+
+    private final Map<String, CompactResourcePolicy> resourcePolicies = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private <T> T read(Supplier<T> read) {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return read.get();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private void write(Runnable write) {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            write.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Intern a principal id, growing the arrays indexed by principal as needed. Callers hold the write lock
+     */
+    private int principal(String principalId) {
+        final int id = principals.intern(principalId);
+        if (id == groups.length) {
+            final int capacity = groups.length * 2;
+            groups = Arrays.copyOf(groups, capacity);
+            directGroups = Arrays.copyOf(directGroups, capacity);
+            memberPrincipals = Arrays.copyOf(memberPrincipals, capacity);
+            memberGroups = Arrays.copyOf(memberGroups, capacity);
+            principalPolicies = Arrays.copyOf(principalPolicies, capacity);
+            groupIndexes = Arrays.copyOf(groupIndexes, capacity);
+        }
+        return id;
+    }
+
+    /**
+     * Number the given principal among groups if it is not yet, computing its closure. Callers hold the write lock
+     *
+     * @return the index of the given principal among groups
+     */
+    private int group(int principalId) {
+        if (groupIndexes[principalId] == 0) {
+            if (groupCount == groupPrincipals.length) {
+                groupPrincipals = Arrays.copyOf(groupPrincipals, groupCount * 2);
+                closures = Arrays.copyOf(closures, groupCount * 2);
+            }
+            groupPrincipals[groupCount] = principalId;
+            groupIndexes[principalId] = ++groupCount;
+            closures[groupCount - 1] = traverse(principalId);
+        }
+        return groupIndexes[principalId] - 1;
+    }
+
+    private static boolean test(long[] bits, int index) {
+        return (index >> 6) < bits.length && (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the groups the given principal belongs to directly or transitively, as a bitset over group indexes, found
+     * by a breadth first search over the direct groups of each group
+     */
+    private long[] traverse(int principalId) {
+        if (directGroups[principalId] == null) {
+            return NO_GROUPS;
+        }
+        final long[] bits = new long[(groupCount + 63) >> 6];
+        int[] queue = directGroups[principalId].toArray();
+        int size = queue.length;
+        for (int i = 0; i < size; i++) {
+            final int index = groupIndexes[queue[i]] - 1;
+            bits[index >> 6] |= 1L << index;
+        }
+        for (int head = 0; head < size; head++) {
+            final IntSet parents = directGroups[queue[head]];
+            if (parents == null) {
+                continue;
+            }
+            for (int parent : parents.toArray()) {
+                final int index = groupIndexes[parent] - 1;
+                if (!test(bits, index)) {
+                    bits[index >> 6] |= 1L << index;
+                    if (size == queue.length) {
+                        queue = Arrays.copyOf(queue, size * 2);
+                    }
+                    queue[size++] = parent;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Recompute the closure of the given group and of every group below it, after an edge out of the given group
+     * changed. Plain principals below it hold no closure of their own and need nothing
+     */
+    private void refreshClosures(int principalId) {
+        if (groupIndexes[principalId] == 0) {
+            return;
+        }
+        final IntSet seen = new IntSet();
+        seen.add(principalId);
+        int[] queue = {principalId};
+        int size = 1;
+        for (int head = 0; head < size; head++) {
+            final int group = queue[head];
+            closures[groupIndexes[group] - 1] = traverse(group);
+            for (IntSet[] members : Arrays.asList(memberGroups, memberPrincipals)) {
+                for (int member : members(members, group)) {
+                    if (groupIndexes[member] != 0 && seen.add(member)) {
+                        if (size == queue.length) {
+                            queue = Arrays.copyOf(queue, size * 2);
+                        }
+                        queue[size++] = member;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the groups the given principal belongs to directly or transitively, as a bitset over group indexes: the
+     * closure of a group, or the word-wise OR of the direct groups of a plain principal and of their closures
+     */
+    private long[] ancestors(int principalId) {
+        if (principalId < 0) {
+            return NO_GROUPS;
+        }
+        if (groupIndexes[principalId] != 0) {
+            return closures[groupIndexes[principalId] - 1];
+        }
+        final IntSet direct = directGroups[principalId];
+        if (direct == null) {
+            return NO_GROUPS;
+        }
+        final long[] bits = new long[(groupCount + 63) >> 6];
+        direct.forEach(group -> {
+            final int index = groupIndexes[group] - 1;
+            bits[index >> 6] |= 1L << index;
+            final long[] closure = closures[index];
+            for (int word = 0; word < closure.length; word++) {
+                bits[word] |= closure[word];
+            }
+        });
+        return bits;
+    }
+
+    /**
+     * Call the given consumer with the principal id of every group in the given bitset
+     */
+    private void forEachGroup(long[] bits, IntConsumer consumer) {
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                consumer.accept(groupPrincipals[(word << 6) + Long.numberOfTrailingZeros(remaining)]);
+                remaining &= remaining - 1;
+            }
+        }
+    }
+
+    private int policy(String policyId) {
+        final int id = policyIds.intern(policyId);
+        if (id == policies.length) {
+            final int capacity = policies.length * 2;
+            policies = Arrays.copyOf(policies, capacity);
+            policyPrincipals = Arrays.copyOf(policyPrincipals, capacity);
+        }
+        return id;
+    }
+
+    private static void link(IntSet[] sets, int from, int to) {
+        if (sets[from] == null) {
+            sets[from] = new IntSet();
+        }
+        sets[from].add(to);
+    }
+
+    private static void unlink(IntSet[] sets, int from, int to) {
+        final IntSet set = sets[from];
+        // empty sets are dropped, most principals never have members nor policies of their own
+        if (set != null && set.remove(to) && set.isEmpty()) {
+            sets[from] = null;
+        }
+    }
+
+    private static int[] members(IntSet[] sets, int id) {
+        return id < 0 || sets[id] == null ? NONE : sets[id].toArray();
+    }
+
+    private List<String> principalNames(int[] ids) {
+        final List<String> ret = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            ret.add(principals.name(id));
+        }
+        return ret;
+    }
+
+    @Override
+    public void createGroup(Group group) {
+        write(() -> {
+            final int gid = principal(group.id());
+            group(gid);
+            groups[gid] = ImmutableGroup.copyOf(group).withAssignments(emptyList());
+        });
+    }
+
+    @Override
+    public Group getGroup(String id) {
+        return read(() -> {
+            final int gid = principals.find(id);
+            if (gid < 0 || groups[gid] == null) {
+                return null;
+            }
+            final List<GroupAssignment> assignments = new ArrayList<>();
+            for (int member : members(memberGroups, gid)) {
+                assignments.add(ImmutableGroupAssignment.builder().principal(principals.name(member)).principalIsGroup(true).groupId(id).build());
+            }
+            for (int member : members(memberPrincipals, gid)) {
+                assignments.add(ImmutableGroupAssignment.builder().principal(principals.name(member)).groupId(id).build());
+            }
+            return ImmutableGroup.copyOf(groups[gid]).withAssignments(assignments);
+        });
+    }
+
+    @Override
+    public void updateGroup(Group group) {
+        createGroup(group);
+    }
+
+    @Override
+    public void deleteGroup(String groupId) {
+        write(() -> {
+            final int gid = principals.find(groupId);
+            if (gid < 0) {
+                return;
+            }
+            final int[] principalMembers = members(memberPrincipals, gid);
+            final int[] groupMembers = members(memberGroups, gid);
+            for (int member : principalMembers) {
+                unlink(directGroups, member, gid);
+            }
+            for (int member : groupMembers) {
+                unlink(directGroups, member, gid);
+            }
+            memberPrincipals[gid] = null;
+            memberGroups[gid] = null;
+            groups[gid] = null;
+            for (int member : principalMembers) {
+                refreshClosures(member);
+            }
+            for (int member : groupMembers) {
+                refreshClosures(member);
+            }
+        });
+    }
+
+    @Override
+    public Node getGroupTree(String groupId) {
+        return read(() -> {
+            final Node root = new Node().setChildren(new ArrayList<>()).setName(groupId);
+            final int rootId = principals.find(groupId);
+            if (rootId < 0) {
+                return root;
+            }
+            final Deque<Node> nodes = new ArrayDeque<>();
+            final Deque<Integer> ids = new ArrayDeque<>();
+            nodes.push(root);
+            ids.push(rootId);
+            final IntSet seen = new IntSet();
+            while (!nodes.isEmpty()) {
+                final Node node = nodes.pop();
+                final int id = ids.pop();
+                seen.add(id);
+                for (int child : members(memberGroups, id)) {
+                    if (!seen.contains(child)) {
+                        final Node childNode = new Node().setName(principals.name(child)).setChildren(new ArrayList<>());
+                        node.getChildren().add(childNode);
+                        nodes.push(childNode);
+                        ids.push(child);
+                    }
+                }
+            }
+            return root;
+        });
+    }
+
+    @Override
+    public List<String> getAllPrincipalsForGroup(String groupId) {
+        return read(() -> principalNames(members(memberPrincipals, principals.find(groupId))));
+    }
+
+    @Override
+    public List<String> getGroupMembership(String principalId) {
+        return read(() -> principalNames(members(directGroups, principals.find(principalId))));
+    }
+
+    @Override
+    public List<String> getGroupMembershipTransitively(String principalId) {
+        return read(() -> {
+            final List<String> ret = new ArrayList<>();
+            forEachGroup(ancestors(principals.find(principalId)), group -> ret.add(principals.name(group)));
+            return ret;
+        });
+    }
+
+    @Override
+    public void assignPrincipalToGroup(String groupId, String principalId) {
+        assignPrincipalToGroup(groupId, principalId, false);
+    }
+
+    @Override
+    public void assignPrincipalToGroup(String groupId, String principalId, boolean principalIsGroup) {
+        write(() -> {
+            final int gid = principal(groupId);
+            final int pid = principal(principalId);
+            group(gid);
+            if (principalIsGroup) {
+                group(pid);
+            }
+            link(principalIsGroup ? memberGroups : memberPrincipals, gid, pid);
+            link(directGroups, pid, gid);
+            refreshClosures(pid);
+        });
+    }
+
+    @Override
+    public void unassignPrincipalFromGroup(String groupId, String principalId) {
+        write(() -> {
+            final int gid = principals.find(groupId);
+            final int pid = principals.find(principalId);
+            if (gid < 0 || pid < 0) {
+                return;
+            }
+            unlink(memberGroups, gid, pid);
+            unlink(memberPrincipals, gid, pid);
+            unlink(directGroups, pid, gid);
+            refreshClosures(pid);
+        });
+    }
+
+    @Override
+    public void createPolicy(IdentityPolicy identityPolicy) {
+        write(() -> policies[policy(identityPolicy.id())] = identityPolicy);
+    }
+
+    @Override
+    public IdentityPolicy getPolicy(String policyId) {
+        return read(() -> {
+            final int id = policyIds.find(policyId);
+            return id < 0 ? null : policies[id];
+        });
+    }
+
+    @Override
+    public void updatePolicy(IdentityPolicy identityPolicy) {
+        createPolicy(identityPolicy);
+    }
+
+    @Override
+    public void deletePolicy(String policyId) {
+        write(() -> {
+            final int id = policyIds.find(policyId);
+            if (id < 0) {
+                return;
+            }
+            // the reverse index spares visiting every principal's assignments
+            for (int principal : members(policyPrincipals, id)) {
+                unlink(principalPolicies, principal, id);
+            }
+            policyPrincipals[id] = null;
+            policies[id] = null;
+        });
+    }
+
+    @Override
+    public void assignPolicy(String policyId, String principalId) {
+        write(() -> {
+            final int id = policy(policyId);
+            final int pid = principal(principalId);
+            link(policyPrincipals, id, pid);
+            link(principalPolicies, pid, id);
+        });
+    }
+
+    @Override
+    public void unAssignPolicy(String policyId, String principalId) {
+        write(() -> {
+            final int id = policyIds.find(policyId);
+            final int pid = principals.find(principalId);
+            if (id < 0 || pid < 0) {
+                return;
+            }
+            unlink(policyPrincipals, id, pid);
+            unlink(principalPolicies, pid, id);
+        });
+    }
+
+    @Override
+    public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId) {
+        return fetchIdentityPoliciesTransitivelyForPrincipal(principalId, new HashSet<>());
+    }
+
+    @Override
+    public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId, Set<String> missingPolicyIds) {
+        return read(() -> {
+            final int pid = principals.find(principalId);
+            if (pid < 0) {
+                return new ArrayList<>();
+            }
+            final IntSet ids = new IntSet();
+            addPolicies(pid, ids);
+            forEachGroup(ancestors(pid), group -> addPolicies(group, ids));
+            final List<IdentityPolicy> ret = new ArrayList<>(ids.size());
+            ids.forEach(id -> {
+                // assignments outlive neither their policy nor the policy's latest version
+                if (policies[id] != null) {
+                    ret.add(policies[id]);
+                } else {
+                    missingPolicyIds.add(policyIds.name(id));
+                }
+            });
+            return ret;
+        });
+    }
+
+    private void addPolicies(int principalId, IntSet into) {
+        final IntSet assigned = principalPolicies[principalId];
+        if (assigned != null) {
+            assigned.forEach(into::add);
+        }
+    }
+
+    @Override
+    public void grantActions(String resource, String principal, Set<String> actions) {
+        write(() -> {
+            final CompactResourcePolicy existing = resourcePolicies.get(resource);
+            resourcePolicies.put(
+                    resource,
+                    (existing == null ? CompactResourcePolicy.EMPTY : existing).grant(principal(principal), internActions(actions))
+            );
+        });
+    }
+
+    @Override
+    public void revokeActions(String resource, String principal, Set<String> actions) {
+        write(() -> {
+            final CompactResourcePolicy existing = resourcePolicies.get(resource);
+            resourcePolicies.put(
+                    resource,
+                    (existing == null ? CompactResourcePolicy.EMPTY : existing).revoke(principal(principal), internActions(actions))
+            );
+        });
+    }
+
+    private int[] internActions(Set<String> names) {
+        final int[] ret = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            ret[i++] = actions.intern(name);
+        }
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    @Override
+    public ResourcePolicy getResourcePolicy(String resource) {
+        return read(() -> toResourcePolicy(resource, resourcePolicies.get(resource)));
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources) {
+        return read(() -> {
+            final Map<String, ResourcePolicy> ret = new HashMap<>();
+            for (String resource : resources) {
+                final ResourcePolicy resourcePolicy = toResourcePolicy(resource, resourcePolicies.get(resource));
+                if (resourcePolicy != null) {
+                    ret.put(resource, resourcePolicy);
+                }
+            }
+            return ret;
+        });
+    }
+
+    private ResourcePolicy toResourcePolicy(String resource, CompactResourcePolicy compact) {
+        if (compact == null) {
+            return null;
+        }
+        final List<ResourcePolicyAssignment> assignments = new ArrayList<>(compact.principals.length);
+        for (int i = 0; i < compact.principals.length; i++) {
+            final List<String> names = new ArrayList<>(compact.actions[i].length);
+            for (int action : compact.actions[i]) {
+                names.add(actions.name(action));
+            }
+            assignments.add(ImmutableResourcePolicyAssignment.builder().principal(principals.name(compact.principals[i])).actions(names).build());
+        }
+        return ImmutableResourcePolicy
+                .builder()
+                .resource(resource)
+                .description("Policy to protect " + resource)
+                .assignments(assignments)
+                .build();
+    }
+
+    /**
+     * Apply the given mutations under a single acquisition of the write lock, so that readers observe all of them or
+     * none
+     */
+    @Override
+    public void applyMutations(List<Mutation> mutations) {
+        // the write lock is reentrant, each mutation merely re-enters it
+        write(() -> mutations.forEach(mutation -> Mutations.apply(this, mutation)));
+    }
+
+    /**
+     * The assignments of a resource policy as parallel arrays: each principal along with the sorted ids of the actions
+     * granted to it. Instances are immutable, every change produces a new one
+     */
+    private static final class CompactResourcePolicy {
+
+        private static final CompactResourcePolicy EMPTY = new CompactResourcePolicy(NONE, new int[0][]);
+
+        private final int[] principals;
+        private final int[][] actions;
+
+        private CompactResourcePolicy(int[] principals, int[][] actions) {
+            this.principals = principals;
+            this.actions = actions;
+        }
+
+        private int indexOf(int principal) {
+            for (int i = 0; i < principals.length; i++) {
+                if (principals[i] == principal) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private CompactResourcePolicy grant(int principal, int[] granted) {
+            final int i = indexOf(principal);
+            if (i < 0) {
+                final int[] nextPrincipals = Arrays.copyOf(principals, principals.length + 1);
+                final int[][] nextActions = Arrays.copyOf(actions, actions.length + 1);
+                nextPrincipals[principals.length] = principal;
+                nextActions[actions.length] = granted;
+                return new CompactResourcePolicy(nextPrincipals, nextActions);
+            }
+            final int[][] nextActions = actions.clone();
+            nextActions[i] = union(actions[i], granted);
+            return new CompactResourcePolicy(principals, nextActions);
+        }
+
+        /**
+         * Like {@link InMemoryBackend}, the principal keeps its (possibly empty) assignment and an unknown principal
+         * leaves the policy unchanged
+         */
+        private CompactResourcePolicy revoke(int principal, int[] revoked) {
+            final int i = indexOf(principal);
+            if (i < 0) {
+                return this;
+            }
+            final int[][] nextActions = actions.clone();
+            nextActions[i] = difference(actions[i], revoked);
+            return new CompactResourcePolicy(principals, nextActions);
+        }
+
+        private static int[] union(int[] a, int[] b) {
+            final int[] ret = new int[a.length + b.length];
+            int i = 0, j = 0, n = 0;
+            while (i < a.length || j < b.length) {
+                if (j == b.length || (i < a.length && a[i] < b[j])) {
+                    ret[n++] = a[i++];
+                } else if (i == a.length || b[j] < a[i]) {
+                    ret[n++] = b[j++];
+                } else {
+                    ret[n++] = a[i++];
+                    j++;
+                }
+            }
+            return Arrays.copyOf(ret, n);
+        }
+
+        private static int[] difference(int[] a, int[] b) {
+            final int[] ret = new int[a.length];
+            int n = 0;
+            for (int action : a) {
+                if (Arrays.binarySearch(b, action) < 0) {
+                    ret[n++] = action;
+                }
+            }
+            return Arrays.copyOf(ret, n);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.core.backend.Mutations;
+import com.erfangc.sac.core.backend.SnapshotBackend;
+import com.erfangc.sac.interfaces.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * {@link CopyOnWriteInMemoryBackend} publishes its whole state (groups, transitive closures, policy assignments and
+ * resource policies) as a frozen {@link InMemoryBackend} behind a single volatile reference. Readers dereference it once
+ * and never lock nor observe a write in progress
+ * <p>
+ * Writers are serialized: each one copies the current snapshot, applies its mutations to the copy and swaps it in. A
+ * copy costs as much as the whole state, so bulk changes should go through {@link #batch(Consumer)}, which applies any
+ * number of mutations to a single copy. This trades write throughput for read scalability, and suits authorization
+ * state that is read far more often than it changes
+ */
+public class CopyOnWriteInMemoryBackend implements SnapshotBackend {
+
+    private final Object writeLock = new Object();
+    private volatile InMemoryBackend snapshot;
+
+    public CopyOnWriteInMemoryBackend() {
+        final InMemoryBackend empty = new InMemoryBackend();
+        empty.freeze();
+        snapshot = empty;
+    }
+
+    @Override
+    public Backend snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Apply the given mutations as a single new version. Readers either see all of them or none, and if the mutations
+     * throw, nothing is published
+     *
+     * @param mutations writes (and reads of the version being built) against the given {@link Backend}. They must not
+     *                  go through this instance, nor keep the given {@link Backend} past their return
+     */
+    public void batch(Consumer<Backend> mutations) {
+        synchronized (writeLock) {
+            final InMemoryBackend next = new InMemoryBackend(snapshot);
+            mutations.accept(next);
+            next.freeze();
+            snapshot = next;
+        }
+    }
+
+    /**
+     * Apply the given mutations to a single copy of the current version, see {@link #batch(Consumer)}
+     */
+    @Override
+    public void applyMutations(List<Mutation> mutations) {
+        batch(backend -> mutations.forEach(mutation -> Mutations.apply(backend, mutation)));
+    }
+
+    @Override
+    public void createGroup(Group group) {
+        batch(backend -> backend.createGroup(group));
+    }
+
+    @Override
+    public Group getGroup(String id) {
+        return snapshot.getGroup(id);
+    }
+
+    @Override
+    public void updateGroup(Group group) {
+        batch(backend -> backend.updateGroup(group));
+    }
+
+    @Override
+    public void deleteGroup(String groupId) {
+        batch(backend -> backend.deleteGroup(groupId));
+    }
+
+    @Override
+    public Node getGroupTree(String groupId) {
+        return snapshot.getGroupTree(groupId);
+    }
+
+    @Override
+    public List<String> getAllPrincipalsForGroup(String groupId) {
+        return snapshot.getAllPrincipalsForGroup(groupId);
+    }
+
+    @Override
+    public List<String> getGroupMembership(String principalId) {
+        return snapshot.getGroupMembership(principalId);
+    }
+
+    @Override
+    public List<String> getGroupMembershipTransitively(String principalId) {
+        return snapshot.getGroupMembershipTransitively(principalId);
+    }
+
+    @Override
+    public void assignPrincipalToGroup(String groupId, String principalId) {
+        batch(backend -> backend.assignPrincipalToGroup(groupId, principalId));
+    }
+
+    @Override
+    public void assignPrincipalToGroup(String groupId, String principalId, boolean principalIsGroup) {
+        batch(backend -> backend.assignPrincipalToGroup(groupId, principalId, principalIsGroup));
+    }
+
+    @Override
+    public void unassignPrincipalFromGroup(String groupId, String principalId) {
+        batch(backend -> backend.unassignPrincipalFromGroup(groupId, principalId));
+    }
+
+    @Override
+    public void createPolicy(IdentityPolicy identityPolicy) {
+        batch(backend -> backend.createPolicy(identityPolicy));
+    }
+
+    @Override
+    public IdentityPolicy getPolicy(String policyId) {
+        return snapshot.getPolicy(policyId);
+    }
+
+    @Override
+    public Map<String, IdentityPolicy> getPolicies(Collection<String> policyIds) {
+        return snapshot.getPolicies(policyIds);
+    }
+
+    @Override
+    public void updatePolicy(IdentityPolicy identityPolicy) {
+        batch(backend -> backend.updatePolicy(identityPolicy));
+    }
+
+    @Override
+    public void deletePolicy(String policyId) {
+        batch(backend -> backend.deletePolicy(policyId));
+    }
+
+    @Override
+    public void assignPolicy(String policyId, String principalId) {
+        batch(backend -> backend.assignPolicy(policyId, principalId));
+    }
+
+    @Override
+    public void unAssignPolicy(String policyId, String principalId) {
+        batch(backend -> backend.unAssignPolicy(policyId, principalId));
+    }
+
+    @Override
+    public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId) {
+        return snapshot.fetchIdentityPoliciesTransitivelyForPrincipal(principalId);
+    }
+
+    @Override
+    public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId, Set<String> missingPolicyIds) {
+        return snapshot.fetchIdentityPoliciesTransitivelyForPrincipal(principalId, missingPolicyIds);
+    }
+
+    @Override
+    public void grantActions(String resource, String principal, Set<String> actions) {
+        batch(backend -> backend.grantActions(resource, principal, actions));
+    }
+
+    @Override
+    public void revokeActions(String resource, String principal, Set<String> actions) {
+        batch(backend -> backend.revokeActions(resource, principal, actions));
+    }
+
+    @Override
+    public ResourcePolicy getResourcePolicy(String resource) {
+        return snapshot.getResourcePolicy(resource);
+    }
+
+    @Override
+    public List<ResourcePolicy> getResourcePolicyHierarchy(String resource) {
+        return snapshot.getResourcePolicyHierarchy(resource);
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources) {
+        return snapshot.getResourcePolicies(resources);
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources, Collection<String> principals) {
+        return snapshot.getResourcePolicies(resources, principals);
+    }
+}
@@ -1,36 +1,107 @@
 package com.erfangc.sac.core.backend.inmemory;
 
 import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.core.backend.Mutations;
 import com.erfangc.sac.interfaces.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import static java.util.Collections.emptyList;
-import static java.util.Collections.emptyMap;
-import static java.util.stream.Collectors.toCollection;
-import static java.util.stream.Collectors.toMap;
+import static java.util.Collections.*;
 
+/**
+ * {@link InMemoryBackend} keeps everything in {@link ConcurrentHashMap}s so that reads never lock. Writes lock only
+ * what they touch: policy assignments lock a stripe chosen by the policy id, resource policies are updated atomically
+ * per resource, and assigning a plain principal to a group locks the stripes of the principal and the group. Edges
+ * between groups can move the transitive membership of any number of principals below them, so those are the only
+ * writes that exclude every other group membership write
+ */
 public class InMemoryBackend implements Backend {
 
-    private Map<String, Group> groups;
-    private Map<String, IdentityPolicy> policies;
+    private static final int STRIPES = 64;
 
-    private Map<String, Map<String, String>> groupToPrincipalMap;
-    private Map<String, Map<String, Group>> groupToGroupMap;
-    private Map<String, Map<String, Group>> principalToGroupMap;
-    private Map<String, Map<String, String>> policyToPrincipalMap;
-    private Map<String, Map<String, IdentityPolicy>> principalToPolicyMap;
-    private Map<String, ImmutableResourcePolicy> resourcePolicyMap;
+    private final Map<String, Group> groups;
+    private final Map<String, IdentityPolicy> policies;
+
+    private final Map<String, Set<String>> groupToPrincipalMap;
+    private final Map<String, Set<String>> groupToGroupMap;
+    private final Map<String, Set<String>> principalToGroupMap;
+    // policy assignments by id in both directions, so that deleting a policy only visits its assignees. Policies are
+    // resolved through the policies map at read time, so that updates are seen without touching any assignment
+    private final Map<String, Set<String>> policyToPrincipalMap;
+    private final Map<String, Set<String>> principalToPolicyMap;
+    private final Map<String, ImmutableResourcePolicy> resourcePolicyMap;
+    // the same resource policies by path segment, for hierarchical lookups. Updated from within the atomic update of
+    // resourcePolicyMap, so that writes to the same resource reach it in order
+    private final ResourceTrie resourceTrie;
+    // materialized transitive closure of principalToGroupMap, maintained whenever a group edge changes so that
+    // resolving transitive membership is a single lookup. Ancestor sets are never mutated once published
+    private final Map<String, Set<String>> ancestorsMap;
+    private final Map<String, Set<String>> descendantsMap;
+
+    private final ReadWriteLock groupEdgeLock = new ReentrantReadWriteLock();
+    private final Object[] stripes = new Object[STRIPES];
+    private volatile boolean frozen;
 
     public InMemoryBackend() {
-        policies = new HashMap<>();
-        groups = new HashMap<>();
-        groupToGroupMap = new HashMap<>();
-        groupToPrincipalMap = new HashMap<>();
-        principalToGroupMap = new HashMap<>();
-        policyToPrincipalMap = new HashMap<>();
-        principalToPolicyMap = new HashMap<>();
-        resourcePolicyMap = new HashMap<>();
+        policies = new ConcurrentHashMap<>();
+        groups = new ConcurrentHashMap<>();
+        groupToGroupMap = new ConcurrentHashMap<>();
+        groupToPrincipalMap = new ConcurrentHashMap<>();
+        principalToGroupMap = new ConcurrentHashMap<>();
+        policyToPrincipalMap = new ConcurrentHashMap<>();
+        principalToPolicyMap = new ConcurrentHashMap<>();
+        resourcePolicyMap = new ConcurrentHashMap<>();
+        resourceTrie = new ResourceTrie();
+        ancestorsMap = new ConcurrentHashMap<>();
+        descendantsMap = new ConcurrentHashMap<>();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Deep copy the given backend, which must not be written to while it is being copied. The copy is writable even if
+     * the source is frozen
+     */
+    InMemoryBackend(InMemoryBackend source) {
+        this();
+        groups.putAll(source.groups);
+        policies.putAll(source.policies);
+        copySets(source.groupToPrincipalMap, groupToPrincipalMap);
+        copySets(source.groupToGroupMap, groupToGroupMap);
+        copySets(source.principalToGroupMap, principalToGroupMap);
+        copySets(source.policyToPrincipalMap, policyToPrincipalMap);
+        copySets(source.principalToPolicyMap, principalToPolicyMap);
+        resourcePolicyMap.putAll(source.resourcePolicyMap);
+        resourcePolicyMap.forEach(resourceTrie::put);
+        // ancestor sets are immutable and can be shared
+        ancestorsMap.putAll(source.ancestorsMap);
+        copySets(source.descendantsMap, descendantsMap);
+    }
+
+    private static void copySets(Map<String, Set<String>> from, Map<String, Set<String>> to) {
+        from.forEach((k, v) -> {
+            final Set<String> copy = newSet(k);
+            copy.addAll(v);
+            to.put(k, copy);
+        });
+    }
+
+    /**
+     * Reject every write from now on, so that this instance can be published as an immutable snapshot
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    private void checkWritable() {
+        if (frozen) {
+            throw new IllegalStateException("This backend is a frozen snapshot and cannot be written to");
+        }
     }
 
     private static ImmutableResourcePolicy newPolicy(String resource) {
@@ -42,84 +113,202 @@ public class InMemoryBackend implements Backend {
                 .build();
     }
 
+    private static Set<String> newSet(String ignored) {
+        return ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Add the given value to the set held under the given key, atomically with respect to {@link #unlink}
+     */
+    private static void link(Map<String, Set<String>> map, String key, String value) {
+        map.compute(key, (k, values) -> {
+            final Set<String> ret = values == null ? newSet(k) : values;
+            ret.add(value);
+            return ret;
+        });
+    }
+
+    /**
+     * Remove the given value from the set held under the given key, dropping the set once empty
+     */
+    private static void unlink(Map<String, Set<String>> map, String key, String value) {
+        map.computeIfPresent(key, (k, values) -> {
+            values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    private static int stripeIndex(String id) {
+        return (id.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private Object stripe(String id) {
+        return stripes[stripeIndex(id)];
+    }
+
+    /**
+     * @return whether the given principal is a group, or at least has members of its own, in which case changing its
+     * memberships moves the transitive membership of other principals as well
+     */
+    private boolean isGroup(String principalId) {
+        return groups.containsKey(principalId)
+                || groupToGroupMap.containsKey(principalId)
+                || groupToPrincipalMap.containsKey(principalId)
+                || descendantsMap.containsKey(principalId);
+    }
+
     @Override
     public void createGroup(Group group) {
+        checkWritable();
         groups.put(group.id(), group);
     }
 
     @Override
     public Group getGroup(String groupId) {
-        if (!groups.containsKey(groupId)) {
+        final Group group = groups.get(groupId);
+        if (group == null) {
             return null;
         }
-        final Map<String, Group> g2g = groupToGroupMap.getOrDefault(groupId, new HashMap<>());
-        final Map<String, String> g2p = groupToPrincipalMap.getOrDefault(groupId, new HashMap<>());
+        final Set<String> g2g = groupToGroupMap.getOrDefault(groupId, emptySet());
+        final Set<String> g2p = groupToPrincipalMap.getOrDefault(groupId, emptySet());
         List<GroupAssignment> assignments = new ArrayList<>();
-        g2g.values().forEach(a -> assignments.add(ImmutableGroupAssignment.builder().principal(a.id()).principalIsGroup(true).groupId(groupId).build()));
-        g2p.values().forEach(p -> assignments.add(ImmutableGroupAssignment.builder().principal(p).groupId(groupId).build()));
-        return ImmutableGroup.copyOf(groups.get(groupId))
+        g2g.forEach(g -> assignments.add(ImmutableGroupAssignment.builder().principal(g).principalIsGroup(true).groupId(groupId).build()));
+        g2p.forEach(p -> assignments.add(ImmutableGroupAssignment.builder().principal(p).groupId(groupId).build()));
+        return ImmutableGroup.copyOf(group)
                 .withAssignments(assignments);
     }
 
     @Override
     public void updateGroup(Group group) {
+        checkWritable();
         groups.put(group.id(), group);
     }
 
     @Override
-    public synchronized void deleteGroup(String groupId) {
-        final Set<String> principals = groupToPrincipalMap.getOrDefault(groupId, emptyMap()).keySet();
-        principals.forEach(principal -> {
-            groupToGroupMap.getOrDefault(principal, emptyMap()).remove(groupId);
-            principalToGroupMap.getOrDefault(principal, emptyMap()).remove(groupId);
+    public void deleteGroup(String groupId) {
+        checkWritable();
+        applyToGroup(() -> {
+            final Set<String> principals = groupToPrincipalMap.getOrDefault(groupId, emptySet());
+            principals.forEach(principal -> {
+                groupToGroupMap.getOrDefault(principal, emptySet()).remove(groupId);
+                principalToGroupMap.getOrDefault(principal, emptySet()).remove(groupId);
+            });
+            groups.remove(groupId);
+            // only principals that could reach the deleted group can have lost ancestors
+            retraverse(groupId);
         });
-        groups.remove(groupId);
     }
 
     @Override
-    public synchronized void assignPrincipalToGroup(String groupId, String principalId) {
+    public void assignPrincipalToGroup(String groupId, String principalId) {
         this.assignPrincipalToGroup(groupId, principalId, false);
     }
 
     @Override
-    public synchronized void assignPrincipalToGroup(String groupId,
-                                                    String principalId,
-                                                    boolean principalIsGroup) {
-        if (principalIsGroup) {
-            final Map<String, Group> m1 = groupToGroupMap.getOrDefault(groupId, new HashMap<>());
-            m1.put(principalId, this.getGroup(principalId));
-            groupToGroupMap.put(groupId, m1);
-        } else {
-            final Map<String, String> m2 = groupToPrincipalMap.getOrDefault(groupId, new HashMap<>());
-            m2.put(principalId, principalId);
-            groupToPrincipalMap.put(groupId, m2);
+    public void assignPrincipalToGroup(String groupId,
+                                       String principalId,
+                                       boolean principalIsGroup) {
+        checkWritable();
+        final Runnable assign = () -> {
+            if (principalIsGroup) {
+                groupToGroupMap.computeIfAbsent(groupId, InMemoryBackend::newSet).add(principalId);
+            } else {
+                groupToPrincipalMap.computeIfAbsent(groupId, InMemoryBackend::newSet).add(principalId);
+            }
+            principalToGroupMap.computeIfAbsent(principalId, InMemoryBackend::newSet).add(groupId);
+            // a new edge only adds ancestors: the principal and everything below it now also reach groupId and its ancestors
+            final Set<String> reached = new HashSet<>(ancestorsMap.getOrDefault(groupId, emptySet()));
+            reached.add(groupId);
+            for (String affected : withDescendants(principalId)) {
+                final Set<String> ancestors = new HashSet<>(ancestorsMap.getOrDefault(affected, emptySet()));
+                ancestors.addAll(reached);
+                updateAncestors(affected, ancestors);
+            }
+        };
+        if (principalIsGroup || !applyToPlainPrincipal(groupId, principalId, assign)) {
+            applyToGroup(assign);
+        }
+    }
+
+    @Override
+    public void unassignPrincipalFromGroup(String groupId, String principalId) {
+        checkWritable();
+        final Runnable unassign = () -> {
+            groupToGroupMap.getOrDefault(groupId, emptySet()).remove(principalId);
+            groupToPrincipalMap.getOrDefault(groupId, emptySet()).remove(principalId);
+            principalToGroupMap.getOrDefault(principalId, emptySet()).remove(groupId);
+            // groupId may still be reachable through another path, so ancestors below the removed edge are recomputed
+            retraverse(principalId);
+        };
+        if (!applyToPlainPrincipal(groupId, principalId, unassign)) {
+            applyToGroup(unassign);
+        }
+    }
+
+    /**
+     * Change an edge out of a principal without members of its own, which moves that principal's ancestors and nothing
+     * else. Such changes only exclude changes to edges between groups, and to edges touching the same principal or group
+     * through their stripes, which are locked in index order so that two such changes never deadlock
+     *
+     * @return false without applying the change if the principal turns out to have members, see {@link #applyToGroup(Runnable)}
+     */
+    private boolean applyToPlainPrincipal(String groupId, String principalId, Runnable change) {
+        if (isGroup(principalId)) {
+            return false;
+        }
+        final Lock lock = groupEdgeLock.readLock();
+        lock.lock();
+        try {
+            final int i = stripeIndex(groupId);
+            final int j = stripeIndex(principalId);
+            synchronized (stripes[Math.min(i, j)]) {
+                synchronized (stripes[Math.max(i, j)]) {
+                    // checked again now that nothing can add members to the principal anymore
+                    if (isGroup(principalId)) {
+                        return false;
+                    }
+                    change.run();
+                    return true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Change an edge out of a group, which may move the ancestors of every principal below it, exclusively
+     */
+    private void applyToGroup(Runnable change) {
+        final Lock lock = groupEdgeLock.writeLock();
+        lock.lock();
+        try {
+            change.run();
+        } finally {
+            lock.unlock();
         }
-        final Map<String, Group> m3 = principalToGroupMap.getOrDefault(principalId, new HashMap<>());
-        m3.put(groupId, this.getGroup(groupId));
-        principalToGroupMap.put(principalId, m3);
     }
 
+    /**
+     * Apply the given mutations while holding the lock that excludes every other group membership write, so that a batch
+     * of membership changes takes it once instead of once per edge. Readers never lock and may observe the batch
+     * partially applied, see {@link CopyOnWriteInMemoryBackend} for batches that become visible all at once
+     */
     @Override
-    public synchronized void unassignPrincipalFromGroup(String groupId, String principalId) {
-        final Map<String, Group> m1 = groupToGroupMap.getOrDefault(groupId, new HashMap<>());
-        m1.remove(principalId);
-        groupToGroupMap.put(groupId, m1);
-        final Map<String, String> m2 = groupToPrincipalMap.getOrDefault(groupId, new HashMap<>());
-        m2.remove(principalId);
-        groupToPrincipalMap.put(groupId, m2);
-        final Map<String, Group> m3 = principalToGroupMap.getOrDefault(principalId, new HashMap<>());
-        m3.remove(groupId);
-        principalToGroupMap.put(principalId, m3);
+    public void applyMutations(List<Mutation> mutations) {
+        checkWritable();
+        // the locks taken by each mutation are reentrant, the group edge lock is merely re-entered
+        applyToGroup(() -> mutations.forEach(mutation -> Mutations.apply(this, mutation)));
     }
 
     @Override
     public List<String> getAllPrincipalsForGroup(String groupId) {
-        return new ArrayList<>(groupToPrincipalMap.get(groupId).keySet());
+        return new ArrayList<>(groupToPrincipalMap.getOrDefault(groupId, emptySet()));
     }
 
     @Override
     public List<String> getGroupMembership(String principalId) {
-        return new ArrayList<>(principalToGroupMap.get(principalId).keySet());
+        return new ArrayList<>(principalToGroupMap.getOrDefault(principalId, emptySet()));
     }
 
     @Override
@@ -132,7 +321,7 @@ public class InMemoryBackend implements Backend {
             final Node node = stack.pop();
             seen.add(node.getName());
             if (groupToGroupMap.containsKey(node.getName())) {
-                final Set<String> childGids = groupToGroupMap.get(node.getName()).keySet();
+                final Set<String> childGids = groupToGroupMap.get(node.getName());
                 for (String childGid : childGids) {
                     if (!seen.contains(childGid)) {
                         final Node childNode = new Node().setName(childGid).setChildren(new ArrayList<>());
@@ -147,6 +336,7 @@ public class InMemoryBackend implements Backend {
 
     @Override
     public void createPolicy(IdentityPolicy identityPolicy) {
+        checkWritable();
         policies.put(identityPolicy.id(), identityPolicy);
     }
 
@@ -157,62 +347,98 @@ public class InMemoryBackend implements Backend {
 
     @Override
     public void updatePolicy(IdentityPolicy identityPolicy) {
+        checkWritable();
         policies.put(identityPolicy.id(), identityPolicy);
     }
 
     @Override
-    public synchronized void deletePolicy(String policyId) {
-        policies.remove(policyId);
-        // remove any associated policy maps
-        policyToPrincipalMap.remove(policyId);
-        // rebuild the principalToPolicy map, this is very inefficient
-        final Map<String, Map<String, IdentityPolicy>> updatedPrincipalToPolicyMap = principalToPolicyMap
-                .entrySet()
-                .stream()
-                .collect(
-                        toMap(
-                                Map.Entry::getKey,
-                                s -> {
-                                    final Map<String, IdentityPolicy> value = new HashMap<>(s.getValue());
-                                    value.remove(policyId);
-                                    return value;
-                                })
-                );
-        principalToPolicyMap = updatedPrincipalToPolicyMap;
+    public void deletePolicy(String policyId) {
+        checkWritable();
+        synchronized (stripe(policyId)) {
+            policies.remove(policyId);
+            final Set<String> assignees = policyToPrincipalMap.remove(policyId);
+            if (assignees != null) {
+                assignees.forEach(principalId -> unlink(principalToPolicyMap, principalId, policyId));
+            }
+        }
     }
 
     @Override
-    public synchronized void assignPolicy(String policyId, String principalId) {
-        final Map<String, String> m1 = policyToPrincipalMap.getOrDefault(policyId, new HashMap<>());
-        final Map<String, IdentityPolicy> m2 = principalToPolicyMap.getOrDefault(principalId, new HashMap<>());
-        m1.put(policyId, principalId);
-        m2.put(policyId, getPolicy(policyId));
-        policyToPrincipalMap.put(policyId, m1);
-        principalToPolicyMap.put(principalId, m2);
+    public void assignPolicy(String policyId, String principalId) {
+        checkWritable();
+        synchronized (stripe(policyId)) {
+            // the policy may not exist yet, in which case the assignment takes effect once it is created
+            link(policyToPrincipalMap, policyId, principalId);
+            link(principalToPolicyMap, principalId, policyId);
+        }
     }
 
     @Override
-    public synchronized void unAssignPolicy(String policyId, String principalId) {
-        final Map<String, String> m1 = policyToPrincipalMap.getOrDefault(policyId, new HashMap<>());
-        final Map<String, IdentityPolicy> m2 = principalToPolicyMap.getOrDefault(principalId, new HashMap<>());
-        m1.remove(policyId);
-        m2.remove(policyId);
+    public void unAssignPolicy(String policyId, String principalId) {
+        checkWritable();
+        synchronized (stripe(policyId)) {
+            unlink(policyToPrincipalMap, policyId, principalId);
+            unlink(principalToPolicyMap, principalId, policyId);
+        }
     }
 
     @Override
     public List<String> getGroupMembershipTransitively(String principalId) {
-        final Map<String, Group> m1 = principalToGroupMap.get(principalId);
+        return new ArrayList<>(ancestorsMap.getOrDefault(principalId, emptySet()));
+    }
+
+    /**
+     * @return the given principal along with every principal that belongs to it directly or transitively, i.e. every
+     * principal whose ancestors may change when an edge out of the given principal changes
+     */
+    private Set<String> withDescendants(String principalId) {
+        final Set<String> ret = new HashSet<>(descendantsMap.getOrDefault(principalId, emptySet()));
+        ret.add(principalId);
+        return ret;
+    }
+
+    private void retraverse(String principalId) {
+        for (String affected : withDescendants(principalId)) {
+            updateAncestors(affected, traverse(affected));
+        }
+    }
+
+    private void updateAncestors(String principalId, Set<String> ancestors) {
+        for (String gid : ancestorsMap.getOrDefault(principalId, emptySet())) {
+            if (!ancestors.contains(gid)) {
+                descendantsMap.computeIfPresent(gid, (k, descendants) -> {
+                    descendants.remove(principalId);
+                    return descendants.isEmpty() ? null : descendants;
+                });
+            }
+        }
+        for (String gid : ancestors) {
+            descendantsMap.compute(gid, (k, descendants) -> {
+                final Set<String> ret = descendants == null ? newSet(k) : descendants;
+                ret.add(principalId);
+                return ret;
+            });
+        }
+        if (ancestors.isEmpty()) {
+            ancestorsMap.remove(principalId);
+        } else {
+            ancestorsMap.put(principalId, unmodifiableSet(ancestors));
+        }
+    }
+
+    private Set<String> traverse(String principalId) {
+        final Set<String> m1 = principalToGroupMap.get(principalId);
         // BFS to to construct a list of group membership and transitive group memberships for this principal
         // gids = groupIds, represents the group Ids the BFS has seen so far, used to both keep track of the results of the
         // traversal but also mark visited 'nodes' and prevent them from being processed again
         Set<String> gids = new HashSet<>();
         if (m1 != null) {
-            Queue<String> queue = m1.values().stream().map(Group::id).collect(toCollection(ArrayDeque::new));
+            Queue<String> queue = new ArrayDeque<>(m1);
             while (!queue.isEmpty()) {
                 final String gid = queue.poll();
                 gids.add(gid);
                 if (principalToGroupMap.containsKey(gid)) {
-                    for (String cGid : principalToGroupMap.get(gid).keySet()) {
+                    for (String cGid : principalToGroupMap.get(gid)) {
                         if (!gids.contains(cGid)) {
                             queue.add(cGid);
                         }
@@ -220,65 +446,110 @@ public class InMemoryBackend implements Backend {
                 }
             }
         }
-        return new ArrayList<>(gids);
+        return gids;
     }
 
     @Override
     public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId) {
-        Set<IdentityPolicy> ret = principalToPolicyMap.containsKey(principalId) ? new HashSet<>(principalToPolicyMap
-                .get(principalId)
-                .values()) : new HashSet<>();
-        final List<String> gids = getGroupMembershipTransitively(principalId);
-        gids.forEach(gid -> ret.addAll(new ArrayList<>(principalToPolicyMap.getOrDefault(gid, emptyMap()).values())));
-        return new ArrayList<>(ret);
+        return fetchIdentityPoliciesTransitivelyForPrincipal(principalId, new HashSet<>());
     }
 
     @Override
-    public synchronized void grantActions(String resource, String principal, Set<String> actions) {
-        final ImmutableResourcePolicy policy = resourcePolicyMap.getOrDefault(resource, newPolicy(resource));
-        // for each attached assignment, determine if the principal is already granted the actions
-        final List<ResourcePolicyAssignment> resourcePolicyAssignments = policy.assignments().orElse(new ArrayList<>());
-        boolean found = false;
-        List<ResourcePolicyAssignment> results = new ArrayList<>();
-        for (ResourcePolicyAssignment assignment : resourcePolicyAssignments) {
-            if (assignment.principal().equals(principal)) {
-                final Set<String> union = new HashSet<>(assignment.actions());
-                union.addAll(actions);
-                ImmutableResourcePolicyAssignment updated = ImmutableResourcePolicyAssignment
-                        .copyOf(assignment)
-                        .withActions(union);
-                results.add(updated);
-                found = true;
+    public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId, Set<String> missingPolicyIds) {
+        final Set<String> policyIds = new HashSet<>(principalToPolicyMap.getOrDefault(principalId, emptySet()));
+        final List<String> gids = getGroupMembershipTransitively(principalId);
+        gids.forEach(gid -> policyIds.addAll(principalToPolicyMap.getOrDefault(gid, emptySet())));
+        final List<IdentityPolicy> ret = new ArrayList<>(policyIds.size());
+        for (String policyId : policyIds) {
+            final IdentityPolicy policy = policies.get(policyId);
+            if (policy != null) {
+                ret.add(policy);
             } else {
-                results.add(assignment);
+                missingPolicyIds.add(policyId);
             }
         }
-        if (!found) {
-            results.add(ImmutableResourcePolicyAssignment.builder().actions(actions).principal(principal).build());
-        }
-        resourcePolicyMap.put(resource, policy.withAssignments(results));
+        return ret;
     }
 
     @Override
-    public synchronized void revokeActions(String resource, String principal, Set<String> actions) {
-        final ImmutableResourcePolicy policy = resourcePolicyMap.getOrDefault(resource, newPolicy(resource));
-        // for each attached assignment, determine if the principal is already granted the actions
-        final List<ResourcePolicyAssignment> resourcePolicyAssignments = policy.assignments().orElse(new ArrayList<>());
-        List<ResourcePolicyAssignment> results = new ArrayList<>();
-        for (ResourcePolicyAssignment assignment : resourcePolicyAssignments) {
-            if (assignment.principal().equals(principal)) {
-                final HashSet<String> removed = new HashSet<>(assignment.actions());
-                removed.removeAll(actions);
-                results.add(ImmutableResourcePolicyAssignment.copyOf(assignment).withActions(removed));
-            } else {
-                results.add(assignment);
+    public void grantActions(String resource, String principal, Set<String> actions) {
+        checkWritable();
+        resourcePolicyMap.compute(resource, (k, existing) -> {
+            final ImmutableResourcePolicy policy = existing == null ? newPolicy(resource) : existing;
+            // for each attached assignment, determine if the principal is already granted the actions
+            final List<ResourcePolicyAssignment> resourcePolicyAssignments = policy.assignments().orElse(new ArrayList<>());
+            boolean found = false;
+            List<ResourcePolicyAssignment> results = new ArrayList<>();
+            for (ResourcePolicyAssignment assignment : resourcePolicyAssignments) {
+                if (assignment.principal().equals(principal)) {
+                    final Set<String> union = new HashSet<>(assignment.actions());
+                    union.addAll(actions);
+                    ImmutableResourcePolicyAssignment updated = ImmutableResourcePolicyAssignment
+                            .copyOf(assignment)
+                            .withActions(union);
+                    results.add(updated);
+                    found = true;
+                } else {
+                    results.add(assignment);
+                }
             }
-        }
-        resourcePolicyMap.put(resource, policy.withAssignments(results));
+            if (!found) {
+                results.add(ImmutableResourcePolicyAssignment.builder().actions(actions).principal(principal).build());
+            }
+            final ImmutableResourcePolicy updated = policy.withAssignments(results);
+            resourceTrie.put(resource, updated);
+            return updated;
+        });
+    }
+
+    @Override
+    public void revokeActions(String resource, String principal, Set<String> actions) {
+        checkWritable();
+        resourcePolicyMap.compute(resource, (k, existing) -> {
+            final ImmutableResourcePolicy policy = existing == null ? newPolicy(resource) : existing;
+            // for each attached assignment, determine if the principal is already granted the actions
+            final List<ResourcePolicyAssignment> resourcePolicyAssignments = policy.assignments().orElse(new ArrayList<>());
+            List<ResourcePolicyAssignment> results = new ArrayList<>();
+            for (ResourcePolicyAssignment assignment : resourcePolicyAssignments) {
+                if (assignment.principal().equals(principal)) {
+                    final HashSet<String> removed = new HashSet<>(assignment.actions());
+                    removed.removeAll(actions);
+                    results.add(ImmutableResourcePolicyAssignment.copyOf(assignment).withActions(removed));
+                } else {
+                    results.add(assignment);
+                }
+            }
+            final ImmutableResourcePolicy updated = policy.withAssignments(results);
+            resourceTrie.put(resource, updated);
+            return updated;
+        });
     }
 
     @Override
     public ResourcePolicy getResourcePolicy(String resource) {
         return resourcePolicyMap.get(resource);
     }
+
+    @Override
+    public List<ResourcePolicy> getResourcePolicyHierarchy(String resource) {
+        final List<ResourcePolicy> ret = new ArrayList<>();
+        final ResourcePolicy resourcePolicy = resourcePolicyMap.get(resource);
+        if (resourcePolicy != null) {
+            ret.add(resourcePolicy);
+        }
+        resourceTrie.collectAncestors(resource, ret);
+        return ret;
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources) {
+        final Map<String, ResourcePolicy> ret = new HashMap<>();
+        for (String resource : resources) {
+            final ResourcePolicy resourcePolicy = resourcePolicyMap.get(resource);
+            if (resourcePolicy != null) {
+                ret.put(resource, resourcePolicy);
+            }
+        }
+        return ret;
+    }
 }
@@ -0,0 +1,122 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * {@link IntSet} is a set of non negative ints held in a single open addressing (linear probing) array, without boxing
+ * nor an entry object per element. It starts small, since most adjacency sets of an organization only hold a handful of
+ * ids, and is not thread safe
+ */
+final class IntSet {
+
+    private static final int FREE = -1;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] slots;
+    private int size;
+
+    IntSet() {
+        slots = new int[INITIAL_CAPACITY];
+        Arrays.fill(slots, FREE);
+    }
+
+    private static int hash(int value) {
+        final int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slot(int value) {
+        final int mask = slots.length - 1;
+        int i = hash(value) & mask;
+        while (slots[i] != FREE && slots[i] != value) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int value) {
+        return slots[slot(value)] == value;
+    }
+
+    /**
+     * @return whether the value was absent
+     */
+    boolean add(int value) {
+        final int i = slot(value);
+        if (slots[i] == value) {
+            return false;
+        }
+        slots[i] = value;
+        // keep the table at most half full so that probe sequences stay short
+        if (++size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the value was present
+     */
+    boolean remove(int value) {
+        final int mask = slots.length - 1;
+        int i = slot(value);
+        if (slots[i] != value) {
+            return false;
+        }
+        // shift the rest of the probe sequence back, so that lookups never need tombstones
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (slots[j] == FREE) {
+                break;
+            }
+            final int home = hash(slots[j]) & mask;
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        slots[i] = FREE;
+        size--;
+        return true;
+    }
+
+    void forEach(IntConsumer consumer) {
+        for (int value : slots) {
+            if (value != FREE) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    int[] toArray() {
+        final int[] ret = new int[size];
+        int n = 0;
+        for (int value : slots) {
+            if (value != FREE) {
+                ret[n++] = value;
+            }
+        }
+        return ret;
+    }
+
+    private void rehash(int capacity) {
+        final int[] old = slots;
+        slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+        for (int value : old) {
+            if (value != FREE) {
+                slots[slot(value)] = value;
+            }
+        }
+    }
+}
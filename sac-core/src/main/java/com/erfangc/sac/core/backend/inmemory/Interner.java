@@ -0,0 +1,70 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import java.util.Arrays;
+
+/**
+ * {@link Interner} assigns dense ints, in order of first appearance, to string ids and maps them back. The lookup table
+ * is a single open addressing array of ints rather than a map of boxed values. Ids are never released, so that an int
+ * handed out stays valid for the lifetime of the interner. Not thread safe
+ */
+final class Interner {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    // index + 1 into names, 0 marks a free slot
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private int size;
+
+    private int slot(String name) {
+        final int mask = slots.length - 1;
+        final int h = name.hashCode() * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (slots[i] != 0 && !names[slots[i] - 1].equals(name)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * @return the int standing for the given id, or -1 if it was never interned
+     */
+    int find(String name) {
+        final int i = slot(name);
+        return slots[i] - 1;
+    }
+
+    /**
+     * @return the int standing for the given id, assigning the next one if it was never interned
+     */
+    int intern(String name) {
+        final int i = slot(name);
+        if (slots[i] != 0) {
+            return slots[i] - 1;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        slots[i] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        for (int id = 0; id < size; id++) {
+            slots[slot(names[id])] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import com.erfangc.sac.core.backend.ResourceHierarchy;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link ResourceTrie} indexes resource policies by the '/' separated segments of their resource, so that the policies
+ * of every ancestor of a resource (as defined by {@link ResourceHierarchy}) are found in a single walk down the trie,
+ * costing the depth of the resource no matter how many resources hold a policy. Reads never lock, writes to the same
+ * resource must be serialized by the caller
+ */
+final class ResourceTrie {
+
+    private final Node root = new Node();
+
+    void put(String resource, ResourcePolicy policy) {
+        Node node = root;
+        int start = 0;
+        int end = resource.indexOf('/');
+        while (end >= 0) {
+            node = node.children.computeIfAbsent(resource.substring(start, end), k -> new Node());
+            start = end + 1;
+            end = resource.indexOf('/', start);
+        }
+        node.children.computeIfAbsent(resource.substring(start), k -> new Node()).policy = policy;
+    }
+
+    /**
+     * Add the policies of the ancestors of the given resource, closest first, to the given list
+     */
+    void collectAncestors(String resource, List<ResourcePolicy> into) {
+        final int from = into.size();
+        Node node = root;
+        int depth = 0;
+        int start = 0;
+        int end = resource.indexOf('/');
+        while (end >= 0 && depth++ < ResourceHierarchy.MAX_DEPTH) {
+            node = node.children.get(resource.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            // the empty prefix before a leading '/' is not an ancestor
+            if (end > 0 && node.policy != null) {
+                into.add(node.policy);
+            }
+            start = end + 1;
+            end = resource.indexOf('/', start);
+        }
+        // the walk went from the root down
+        Collections.reverse(into.subList(from, into.size()));
+    }
+
+    private static final class Node {
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+        private volatile ResourcePolicy policy;
+    }
+}
@@ -0,0 +1,9 @@
+package com.erfangc.sac.core.metrics;
+
+/**
+ * A monotonically increasing count of events
+ */
+public interface Counter {
+
+    void increment();
+}
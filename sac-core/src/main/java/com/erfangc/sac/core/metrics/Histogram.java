@@ -0,0 +1,9 @@
+package com.erfangc.sac.core.metrics;
+
+/**
+ * A distribution of values, typically latencies in nanoseconds, from which percentiles are derived
+ */
+public interface Histogram {
+
+    void record(long value);
+}
@@ -0,0 +1,59 @@
+package com.erfangc.sac.core.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link InMemoryMetrics} keeps every instrument in process, histograms being {@link LogLinearHistogram}s, for tests,
+ * benchmarks, or to be scraped periodically by an exporter
+ */
+public class InMemoryMetrics implements Metrics {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LogLinearHistogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public Counter counter(String name) {
+        final LongAdder adder = counters.computeIfAbsent(name, k -> new LongAdder());
+        return adder::increment;
+    }
+
+    @Override
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LogLinearHistogram());
+    }
+
+    /**
+     * @return the current value of every counter by name
+     */
+    public Map<String, Long> counters() {
+        final Map<String, Long> ret = new TreeMap<>();
+        counters.forEach((name, adder) -> ret.put(name, adder.sum()));
+        return ret;
+    }
+
+    /**
+     * @return the live histograms by name
+     */
+    public Map<String, LogLinearHistogram> histograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(histograms));
+    }
+
+    /**
+     * @return the current value of the given counter, 0 if it has never been looked up
+     */
+    public long count(String counter) {
+        final LongAdder adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * @return the given histogram, or null if it has never been looked up
+     */
+    public LogLinearHistogram histogramOf(String histogram) {
+        return histograms.get(histogram);
+    }
+}
@@ -0,0 +1,228 @@
+package com.erfangc.sac.core.metrics;
+
+import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.interfaces.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * {@link InstrumentedBackend} times every call made to the {@link Backend} it decorates into a histogram named after the
+ * method, i.e. sac.backend.getGroupMembershipTransitively.nanos. The overloads of assignPrincipalToGroup, and those of
+ * getResourcePolicies, share theirs
+ * <p>
+ * Note that the decorator hides whether the underlying backend is a {@link com.erfangc.sac.core.backend.SnapshotBackend},
+ * so decisions made against a decorated one are not pinned to a single snapshot
+ */
+public class InstrumentedBackend implements Backend {
+
+    private final Backend backend;
+    private final Histogram createGroup;
+    private final Histogram getGroup;
+    private final Histogram updateGroup;
+    private final Histogram deleteGroup;
+    private final Histogram getGroupTree;
+    private final Histogram getAllPrincipalsForGroup;
+    private final Histogram getGroupMembership;
+    private final Histogram getGroupMembershipTransitively;
+    private final Histogram assignPrincipalToGroup;
+    private final Histogram unassignPrincipalFromGroup;
+    private final Histogram createPolicy;
+    private final Histogram getPolicy;
+    private final Histogram getPolicies;
+    private final Histogram updatePolicy;
+    private final Histogram deletePolicy;
+    private final Histogram assignPolicy;
+    private final Histogram unAssignPolicy;
+    private final Histogram fetchIdentityPoliciesTransitivelyForPrincipal;
+    private final Histogram grantActions;
+    private final Histogram revokeActions;
+    private final Histogram getResourcePolicy;
+    private final Histogram getResourcePolicies;
+    private final Histogram getResourcePolicyHierarchy;
+    private final Histogram applyMutations;
+
+    public InstrumentedBackend(Backend backend, Metrics metrics) {
+        this.backend = backend;
+        createGroup = metrics.histogram("sac.backend.createGroup.nanos");
+        getGroup = metrics.histogram("sac.backend.getGroup.nanos");
+        updateGroup = metrics.histogram("sac.backend.updateGroup.nanos");
+        deleteGroup = metrics.histogram("sac.backend.deleteGroup.nanos");
+        getGroupTree = metrics.histogram("sac.backend.getGroupTree.nanos");
+        getAllPrincipalsForGroup = metrics.histogram("sac.backend.getAllPrincipalsForGroup.nanos");
+        getGroupMembership = metrics.histogram("sac.backend.getGroupMembership.nanos");
+        getGroupMembershipTransitively = metrics.histogram("sac.backend.getGroupMembershipTransitively.nanos");
+        assignPrincipalToGroup = metrics.histogram("sac.backend.assignPrincipalToGroup.nanos");
+        unassignPrincipalFromGroup = metrics.histogram("sac.backend.unassignPrincipalFromGroup.nanos");
+        createPolicy = metrics.histogram("sac.backend.createPolicy.nanos");
+        getPolicy = metrics.histogram("sac.backend.getPolicy.nanos");
+        getPolicies = metrics.histogram("sac.backend.getPolicies.nanos");
+        updatePolicy = metrics.histogram("sac.backend.updatePolicy.nanos");
+        deletePolicy = metrics.histogram("sac.backend.deletePolicy.nanos");
+        assignPolicy = metrics.histogram("sac.backend.assignPolicy.nanos");
+        unAssignPolicy = metrics.histogram("sac.backend.unAssignPolicy.nanos");
+        fetchIdentityPoliciesTransitivelyForPrincipal = metrics.histogram("sac.backend.fetchIdentityPoliciesTransitivelyForPrincipal.nanos");
+        grantActions = metrics.histogram("sac.backend.grantActions.nanos");
+        revokeActions = metrics.histogram("sac.backend.revokeActions.nanos");
+        getResourcePolicy = metrics.histogram("sac.backend.getResourcePolicy.nanos");
+        getResourcePolicies = metrics.histogram("sac.backend.getResourcePolicies.nanos");
+        getResourcePolicyHierarchy = metrics.histogram("sac.backend.getResourcePolicyHierarchy.nanos");
+        applyMutations = metrics.histogram("sac.backend.applyMutations.nanos");
+    }
+
+    private static void time(Histogram histogram, Runnable call) {
+        final long start = System.nanoTime();
+        try {
+            call.run();
+        } finally {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    private static <T> T time(Histogram histogram, Supplier<T> call) {
+        final long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void createGroup(Group group) {
+        time(createGroup, () -> backend.createGroup(group));
+    }
+
+    @Override
+    public Group getGroup(String id) {
+        return time(getGroup, () -> backend.getGroup(id));
+    }
+
+    @Override
+    public void updateGroup(Group group) {
+        time(updateGroup, () -> backend.updateGroup(group));
+    }
+
+    @Override
+    public void deleteGroup(String groupId) {
+        time(deleteGroup, () -> backend.deleteGroup(groupId));
+    }
+
+    @Override
+    public Node getGroupTree(String groupId) {
+        return time(getGroupTree, () -> backend.getGroupTree(groupId));
+    }
+
+    @Override
+    public List<String> getAllPrincipalsForGroup(String groupId) {
+        return time(getAllPrincipalsForGroup, () -> backend.getAllPrincipalsForGroup(groupId));
+    }
+
+    @Override
+    public List<String> getGroupMembership(String principalId) {
+        return time(getGroupMembership, () -> backend.getGroupMembership(principalId));
+    }
+
+    @Override
+    public List<String> getGroupMembershipTransitively(String principalId) {
+        return time(getGroupMembershipTransitively, () -> backend.getGroupMembershipTransitively(principalId));
+    }
+
+    @Override
+    public void assignPrincipalToGroup(String groupId, String principalId) {
+        time(assignPrincipalToGroup, () -> backend.assignPrincipalToGroup(groupId, principalId));
+    }
+
+    @Override
+    public void assignPrincipalToGroup(String groupId, String principalId, boolean principalIsGroup) {
+        time(assignPrincipalToGroup, () -> backend.assignPrincipalToGroup(groupId, principalId, principalIsGroup));
+    }
+
+    @Override
+    public void unassignPrincipalFromGroup(String groupId, String principalId) {
+        time(unassignPrincipalFromGroup, () -> backend.unassignPrincipalFromGroup(groupId, principalId));
+    }
+
+    @Override
+    public void createPolicy(IdentityPolicy identityPolicy) {
+        time(createPolicy, () -> backend.createPolicy(identityPolicy));
+    }
+
+    @Override
+    public IdentityPolicy getPolicy(String policyId) {
+        return time(getPolicy, () -> backend.getPolicy(policyId));
+    }
+
+    @Override
+    public Map<String, IdentityPolicy> getPolicies(Collection<String> policyIds) {
+        return time(getPolicies, () -> backend.getPolicies(policyIds));
+    }
+
+    @Override
+    public void updatePolicy(IdentityPolicy identityPolicy) {
+        time(updatePolicy, () -> backend.updatePolicy(identityPolicy));
+    }
+
+    @Override
+    public void deletePolicy(String policyId) {
+        time(deletePolicy, () -> backend.deletePolicy(policyId));
+    }
+
+    @Override
+    public void assignPolicy(String policyId, String principalId) {
+        time(assignPolicy, () -> backend.assignPolicy(policyId, principalId));
+    }
+
+    @Override
+    public void unAssignPolicy(String policyId, String principalId) {
+        time(unAssignPolicy, () -> backend.unAssignPolicy(policyId, principalId));
+    }
+
+    @Override
+    public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId) {
+        return time(fetchIdentityPoliciesTransitivelyForPrincipal, () -> backend.fetchIdentityPoliciesTransitivelyForPrincipal(principalId));
+    }
+
+    @Override
+    public List<IdentityPolicy> fetchIdentityPoliciesTransitivelyForPrincipal(String principalId, Set<String> missingPolicyIds) {
+        return time(fetchIdentityPoliciesTransitivelyForPrincipal, () -> backend.fetchIdentityPoliciesTransitivelyForPrincipal(principalId, missingPolicyIds));
+    }
+
+    @Override
+    public void grantActions(String resource, String principal, Set<String> actions) {
+        time(grantActions, () -> backend.grantActions(resource, principal, actions));
+    }
+
+    @Override
+    public void revokeActions(String resource, String principal, Set<String> actions) {
+        time(revokeActions, () -> backend.revokeActions(resource, principal, actions));
+    }
+
+    @Override
+    public ResourcePolicy getResourcePolicy(String resource) {
+        return time(getResourcePolicy, () -> backend.getResourcePolicy(resource));
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources) {
+        return time(getResourcePolicies, () -> backend.getResourcePolicies(resources));
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources, Collection<String> principals) {
+        return time(getResourcePolicies, () -> backend.getResourcePolicies(resources, principals));
+    }
+
+    @Override
+    public List<ResourcePolicy> getResourcePolicyHierarchy(String resource) {
+        return time(getResourcePolicyHierarchy, () -> backend.getResourcePolicyHierarchy(resource));
+    }
+
+    @Override
+    public void applyMutations(List<Mutation> mutations) {
+        time(applyMutations, () -> backend.applyMutations(mutations));
+    }
+}
@@ -0,0 +1,99 @@
+package com.erfangc.sac.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link LogLinearHistogram} counts values in log-linear buckets, in the fashion of HdrHistogram: every power of two
+ * range is split into 32 equal buckets, which bounds the relative error of a reported percentile to about 3% over the
+ * whole range of a long while taking a fixed 15KB. Recording is lock free and safe from any number of threads
+ */
+public class LogLinearHistogram implements Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return the value at the middle of the given bucket
+     */
+    private static long valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        final long lowest = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * @param value a non-negative value, negative ones are counted as 0
+     */
+    @Override
+    public void record(long value) {
+        final long recorded = Math.max(0, value);
+        counts.incrementAndGet(bucket(recorded));
+        count.incrementAndGet();
+        max.accumulateAndGet(recorded, Math::max);
+    }
+
+    /**
+     * Add every value recorded by the given histogram to this one
+     */
+    public void add(LogLinearHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            final long n = other.counts.get(i);
+            if (n != 0) {
+                counts.addAndGet(i, n);
+            }
+        }
+        count.addAndGet(other.count.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return an estimate of the value below which the given share of the recorded values falls. While values are being
+     * recorded concurrently this is a best effort estimate
+     */
+    public long percentile(double quantile) {
+        final long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        final long highest = max.get();
+        if (rank >= total) {
+            return highest;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(valueOf(i), highest);
+            }
+        }
+        return highest;
+    }
+}
@@ -0,0 +1,25 @@
+package com.erfangc.sac.core.metrics;
+
+/**
+ * {@link Metrics} is where the library reports what it measures, to be bridged to whatever monitoring system is in use
+ * <p>
+ * Instruments are looked up once, when the instrumented component is built, and are then recorded into from any thread
+ * on the hot path, so implementations should make recording cheap and non-blocking. {@link #noop()} (the default
+ * everywhere) discards everything, and instrumented components skip their measurements altogether when given it
+ */
+public interface Metrics {
+
+    static Metrics noop() {
+        return NoopMetrics.INSTANCE;
+    }
+
+    /**
+     * @param name a dot separated name, i.e. sac.authorize.permitted
+     */
+    Counter counter(String name);
+
+    /**
+     * @param name a dot separated name, ending with .nanos for latencies recorded in nanoseconds
+     */
+    Histogram histogram(String name);
+}
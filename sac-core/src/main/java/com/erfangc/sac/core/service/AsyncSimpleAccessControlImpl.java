@@ -0,0 +1,135 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.core.backend.AsyncBackend;
+import com.erfangc.sac.core.backend.ResourceHierarchy;
+import com.erfangc.sac.interfaces.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AsyncSimpleAccessControlImpl} makes the same decisions as a {@link SimpleAccessControlImpl} given the same
+ * {@link SimpleAccessControlOptions#hierarchicalResourcePolicies()}, but composes the futures returned by an
+ * {@link AsyncBackend} instead of blocking on each lookup. The options that only affect how decisions are made and
+ * reported (the decision index and cache, metrics and traces) do not apply here
+ */
+public class AsyncSimpleAccessControlImpl implements AsyncSimpleAccessControl {
+
+    private final AsyncBackend backend;
+    private final PolicyDecisionMaker policyDecisionMaker;
+    private final boolean hierarchicalResourcePolicies;
+
+    public AsyncSimpleAccessControlImpl(AsyncBackend backend) {
+        this(backend, ImmutableSimpleAccessControlOptions.builder().build());
+    }
+
+    public AsyncSimpleAccessControlImpl(AsyncBackend backend, SimpleAccessControlOptions options) {
+        this.backend = backend;
+        policyDecisionMaker = new PolicyDecisionMaker();
+        hierarchicalResourcePolicies = options.hierarchicalResourcePolicies();
+    }
+
+    /**
+     * @return the resource policy in effect for the given resource, inherited from its ancestors as well if resource
+     * policies are hierarchical
+     */
+    private CompletableFuture<ResourcePolicy> resourcePolicy(String resource) {
+        if (!hierarchicalResourcePolicies) {
+            return backend.getResourcePolicy(resource);
+        }
+        return backend.getResourcePolicyHierarchy(resource).thenApply(policies -> ResourceHierarchy.inherit(resource, policies));
+    }
+
+    /**
+     * @return the resource policies in effect for each of the given resources, fetching every key (ancestors included)
+     * at once
+     */
+    private CompletableFuture<Map<String, ResourcePolicy>> resourcePolicies(Set<String> resources) {
+        if (!hierarchicalResourcePolicies) {
+            return backend.getResourcePolicies(resources);
+        }
+        final Map<String, List<String>> ancestries = new HashMap<>();
+        final Set<String> keys = new HashSet<>();
+        for (String resource : resources) {
+            final List<String> ancestry = ResourceHierarchy.ancestry(resource);
+            ancestries.put(resource, ancestry);
+            keys.addAll(ancestry);
+        }
+        return backend.getResourcePolicies(keys).thenApply(found -> {
+            final Map<String, ResourcePolicy> ret = new HashMap<>();
+            ancestries.forEach((resource, ancestry) -> {
+                final ResourcePolicy resourcePolicy = ResourceHierarchy.inherit(resource, ResourceHierarchy.ordered(ancestry, found));
+                if (resourcePolicy != null) {
+                    ret.put(resource, resourcePolicy);
+                }
+            });
+            return ret;
+        });
+    }
+
+    @Override
+    public CompletableFuture<AuthorizationResponse> authorize(AuthorizationRequest request) {
+        final String principal = request.principal();
+        return resourcePolicy(request.resource())
+                .thenCompose(resourcePolicy -> {
+                    if (resourcePolicy == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    // short circuit the process if permission is already granted through the resource policy
+                    return backend
+                            .getGroupMembershipTransitively(principal)
+                            .thenApply(gids -> policyDecisionMaker.makeResourcePolicyDecision(request, resourcePolicy, gids));
+                })
+                .thenCompose(response -> {
+                    if (response != null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    return backend
+                            .fetchIdentityPoliciesTransitivelyForPrincipal(principal)
+                            .thenApply(policies -> policyDecisionMaker.makeAccessDecision(request, policies));
+                });
+    }
+
+    @Override
+    public CompletableFuture<List<AuthorizationResponse>> authorizeAll(List<AuthorizationRequest> requests) {
+        final Set<String> resources = new HashSet<>();
+        final Set<String> principals = new HashSet<>();
+        for (AuthorizationRequest request : requests) {
+            resources.add(request.resource());
+            principals.add(request.principal());
+        }
+        // every lookup of the batch is issued up front so they are all in flight at the same time
+        final CompletableFuture<Map<String, ResourcePolicy>> resourcePolicies = resourcePolicies(resources);
+        final Map<String, CompletableFuture<Set<String>>> groups = new HashMap<>();
+        final Map<String, CompletableFuture<PolicyMatcher>> policies = new HashMap<>();
+        for (String principal : principals) {
+            groups.put(principal, backend.getGroupMembershipTransitively(principal).thenApply(HashSet::new));
+            policies.put(
+                    principal,
+                    backend.fetchIdentityPoliciesTransitivelyForPrincipal(principal).thenApply(policyDecisionMaker::compile)
+            );
+        }
+        final List<CompletableFuture<?>> all = new ArrayList<>();
+        all.add(resourcePolicies);
+        all.addAll(groups.values());
+        all.addAll(policies.values());
+        return CompletableFuture
+                .allOf(all.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    final List<AuthorizationResponse> responses = new ArrayList<>(requests.size());
+                    for (AuthorizationRequest request : requests) {
+                        final AuthorizationResponse response = policyDecisionMaker.makeResourcePolicyDecision(
+                                request,
+                                resourcePolicies.join().get(request.resource()),
+                                groups.get(request.principal()).join()
+                        );
+                        responses.add(
+                                response != null
+                                        ? response
+                                        : policyDecisionMaker.makeAccessDecision(request, policies.get(request.principal()).join())
+                        );
+                    }
+                    return responses;
+                });
+    }
+}
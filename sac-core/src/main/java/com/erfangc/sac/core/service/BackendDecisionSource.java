@@ -0,0 +1,53 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.interfaces.IdentityPolicy;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+
+import java.util.*;
+
+/**
+ * {@link BackendDecisionSource} reads everything from the {@link Backend} on every call
+ */
+class BackendDecisionSource implements DecisionSource {
+
+    private final Backend backend;
+    private final PolicyDecisionMaker policyDecisionMaker;
+
+    BackendDecisionSource(Backend backend, PolicyDecisionMaker policyDecisionMaker) {
+        this.backend = backend;
+        this.policyDecisionMaker = policyDecisionMaker;
+    }
+
+    @Override
+    public ResourcePolicy getResourcePolicy(String resource) {
+        return backend.getResourcePolicy(resource);
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources) {
+        return backend.getResourcePolicies(resources);
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources, Collection<String> principals) {
+        return backend.getResourcePolicies(resources, principals);
+    }
+
+    @Override
+    public List<ResourcePolicy> getResourcePolicyHierarchy(String resource) {
+        return backend.getResourcePolicyHierarchy(resource);
+    }
+
+    @Override
+    public Collection<String> getGroupMembershipTransitively(String principalId) {
+        return backend.getGroupMembershipTransitively(principalId);
+    }
+
+    @Override
+    public PolicyMatcher getIdentityPolicies(String principalId) {
+        final Set<String> missingPolicyIds = new HashSet<>();
+        final List<IdentityPolicy> policies = backend.fetchIdentityPoliciesTransitivelyForPrincipal(principalId, missingPolicyIds);
+        return policyDecisionMaker.list(policies, missingPolicyIds);
+    }
+}
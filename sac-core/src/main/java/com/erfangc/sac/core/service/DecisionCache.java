@@ -0,0 +1,308 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.core.backend.ResourceHierarchy;
+import com.erfangc.sac.interfaces.AuthorizationRequest;
+import com.erfangc.sac.interfaces.AuthorizationResponse;
+import com.erfangc.sac.interfaces.ImmutableAuthorizationResponse;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link DecisionCache} remembers the outcome of recent decisions by (principal, resource, action)
+ * <p>
+ * Each entry records what its decision depended on: the principal, its transitive groups, the identity policies that
+ * were consulted and the resource (along with its ancestors, when resource policies are hierarchical). Reverse indexes
+ * from each of those to the entries let a mutation drop exactly the decisions it may have changed. Entries are evicted
+ * in approximately least recently used order once their estimated footprint exceeds the configured weight, and are
+ * never served past their time to live. As with {@link DecisionIndex}, an {@link InvalidationLog} prevents a decision
+ * that raced with a mutation of something it depends on from being cached
+ * <p>
+ * Lookups do not take the lock: a hit only marks its entry as referenced, and the eviction order is maintained by
+ * writers, which give referenced entries a second chance before evicting them
+ */
+class DecisionCache {
+
+    // rough per entry cost of the key, the entry, the response and the reverse index slots, on top of the strings
+    private static final int ENTRY_OVERHEAD = 256;
+    private static final int MAX_REMEMBERED_INVALIDATIONS = 10_000;
+
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final boolean hierarchical;
+    private final LongSupplier nanoClock;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // everything below is guarded by this, entries is only modified while holding it as well
+    private final LinkedHashMap<Key, Entry> evictionOrder = new LinkedHashMap<>();
+    private final Map<String, Set<Key>> byPrincipal = new HashMap<>();
+    private final Map<String, Set<Key>> byPolicy = new HashMap<>();
+    private final Map<String, Set<Key>> byResource = new HashMap<>();
+    private final InvalidationLog invalidationLog = new InvalidationLog(MAX_REMEMBERED_INVALIDATIONS);
+    private long weight;
+    private long evictions;
+    private long invalidations;
+
+    DecisionCache(long maxWeight, long ttlMillis, boolean hierarchical) {
+        this(maxWeight, ttlMillis, hierarchical, System::nanoTime);
+    }
+
+    DecisionCache(long maxWeight, long ttlMillis, LongSupplier nanoClock) {
+        this(maxWeight, ttlMillis, false, nanoClock);
+    }
+
+    /**
+     * @param hierarchical whether decisions depend on the resource policies of the ancestors of their resource as well,
+     *                     see {@link ResourceHierarchy}
+     */
+    DecisionCache(long maxWeight, long ttlMillis, boolean hierarchical, LongSupplier nanoClock) {
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.hierarchical = hierarchical;
+        this.nanoClock = nanoClock;
+    }
+
+    private static void link(Map<String, Set<Key>> index, String id, Key key) {
+        index.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+    }
+
+    private static void unlink(Map<String, Set<Key>> index, String id, Key key) {
+        final Set<Key> keys = index.get(id);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                index.remove(id);
+            }
+        }
+    }
+
+    private static long weigh(Key key, AuthorizationResponse response) {
+        final int chars = key.principal.length()
+                + key.resource.length()
+                + key.action.length()
+                + response.remarks().map(String::length).orElse(0);
+        return ENTRY_OVERHEAD + 2L * chars;
+    }
+
+    /**
+     * @return the current stamp, to be captured before the lookups of a decision that may be cached
+     */
+    long stamp() {
+        return invalidationLog.stamp();
+    }
+
+    /**
+     * @return the cached decision for the given request, bearing the id of the given request, or null
+     */
+    AuthorizationResponse get(AuthorizationRequest request) {
+        final Key key = new Key(request.principal(), request.resource(), request.action());
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.expiresAt > 0) {
+            expire(key, entry);
+            misses.increment();
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        hits.increment();
+        return ImmutableAuthorizationResponse.copyOf(entry.response).withRequestId(request.id());
+    }
+
+    /**
+     * Cache a decision made from lookups that started at the given stamp
+     *
+     * @param groups    the transitive groups of the principal
+     * @param policyIds the identity policies consulted, if any, along with those assigned that did not exist
+     */
+    synchronized void put(AuthorizationRequest request,
+                          AuthorizationResponse response,
+                          Collection<String> groups,
+                          Collection<String> policyIds,
+                          long stamp) {
+        final Key key = new Key(request.principal(), request.resource(), request.action());
+        final List<String> principals = new ArrayList<>(groups.size() + 1);
+        principals.add(key.principal);
+        principals.addAll(groups);
+        final List<String> resources = hierarchical ? ResourceHierarchy.ancestry(key.resource) : Collections.singletonList(key.resource);
+        if (invalidationLog.invalidatedSince(stamp, principals, policyIds, resources)) {
+            // something it depends on changed while the decision was being made, it is still good for the caller but
+            // not to keep
+            return;
+        }
+        remove(key);
+        final Entry entry = new Entry(
+                response,
+                nanoClock.getAsLong() + ttlNanos,
+                weigh(key, response),
+                new ArrayList<>(groups),
+                new ArrayList<>(policyIds),
+                resources
+        );
+        entries.put(key, entry);
+        evictionOrder.put(key, entry);
+        weight += entry.weight;
+        link(byPrincipal, key.principal, key);
+        entry.groups.forEach(gid -> link(byPrincipal, gid, key));
+        entry.policyIds.forEach(pid -> link(byPolicy, pid, key));
+        entry.resources.forEach(resource -> link(byResource, resource, key));
+
+        while (weight > maxWeight && !evictionOrder.isEmpty()) {
+            final Map.Entry<Key, Entry> eldest = evictionOrder.entrySet().iterator().next();
+            final Entry candidate = eldest.getValue();
+            evictionOrder.remove(eldest.getKey());
+            if (candidate.referenced) {
+                // read since it was last considered, move it to the back of the line
+                candidate.referenced = false;
+                evictionOrder.put(eldest.getKey(), candidate);
+            } else {
+                entries.remove(eldest.getKey());
+                unlink(eldest.getKey(), candidate);
+                evictions++;
+            }
+        }
+    }
+
+    private synchronized void expire(Key key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            evictionOrder.remove(key);
+            unlink(key, entry);
+            evictions++;
+        }
+    }
+
+    private void remove(Key key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            evictionOrder.remove(key);
+            unlink(key, removed);
+        }
+    }
+
+    private void unlink(Key key, Entry entry) {
+        weight -= entry.weight;
+        unlink(byPrincipal, key.principal, key);
+        entry.groups.forEach(gid -> unlink(byPrincipal, gid, key));
+        entry.policyIds.forEach(pid -> unlink(byPolicy, pid, key));
+        entry.resources.forEach(resource -> unlink(byResource, resource, key));
+    }
+
+    private void invalidate(Set<Key> keys) {
+        if (keys != null) {
+            for (Key key : new ArrayList<>(keys)) {
+                remove(key);
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Drop every decision made for the given principal, or if it is a group, for any of its direct or transitive members
+     */
+    synchronized void invalidatePrincipal(String principalId) {
+        invalidationLog.invalidatePrincipal(principalId);
+        invalidate(byPrincipal.get(principalId));
+    }
+
+    /**
+     * Drop every decision that consulted the given identity policy, or found it assigned but missing
+     */
+    synchronized void invalidatePolicy(String policyId) {
+        invalidationLog.invalidatePolicy(policyId);
+        invalidate(byPolicy.get(policyId));
+    }
+
+    /**
+     * Drop every decision made on the given resource, or when resource policies are hierarchical, on any resource below it
+     */
+    synchronized void invalidateResource(String resource) {
+        invalidationLog.invalidateResource(resource);
+        invalidate(byResource.get(resource));
+    }
+
+    /**
+     * Drop every decision the given principals, policies and resources may have changed, as the individual invalidate
+     * methods would, under a single acquisition of the lock
+     */
+    synchronized void invalidate(Collection<String> principalIds, Collection<String> policyIds, Collection<String> resources) {
+        principalIds.forEach(this::invalidatePrincipal);
+        policyIds.forEach(this::invalidatePolicy);
+        resources.forEach(this::invalidateResource);
+    }
+
+    synchronized DecisionCacheStats stats() {
+        return ImmutableDecisionCacheStats
+                .builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .evictions(evictions)
+                .invalidations(invalidations)
+                .size(entries.size())
+                .weight(weight)
+                .build();
+    }
+
+    private static class Key {
+        private final String principal;
+        private final String resource;
+        private final String action;
+        private final int hash;
+
+        private Key(String principal, String resource, String action) {
+            this.principal = principal;
+            this.resource = resource;
+            this.action = action;
+            this.hash = Objects.hash(principal, resource, action);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return principal.equals(other.principal) && resource.equals(other.resource) && action.equals(other.action);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Entry {
+        private final AuthorizationResponse response;
+        private final long expiresAt;
+        private final long weight;
+        private final List<String> groups;
+        private final List<String> policyIds;
+        private final List<String> resources;
+        private volatile boolean referenced;
+
+        private Entry(AuthorizationResponse response,
+                      long expiresAt,
+                      long weight,
+                      List<String> groups,
+                      List<String> policyIds,
+                      List<String> resources) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+            this.groups = groups;
+            this.policyIds = policyIds;
+            this.resources = resources;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.erfangc.sac.core.service;
+
+import org.immutables.value.Value;
+
+/**
+ * A point in time view of the counters of the decision cache of a {@link SimpleAccessControlImpl}, see
+ * {@link SimpleAccessControlOptions#decisionCacheEnabled()}
+ */
+@Value.Immutable
+public interface DecisionCacheStats {
+
+    long hits();
+
+    long misses();
+
+    /**
+     * Decisions dropped to stay within {@link SimpleAccessControlOptions#decisionCacheMaxWeight()} or because they
+     * outlived {@link SimpleAccessControlOptions#decisionCacheTtlMillis()}
+     */
+    long evictions();
+
+    /**
+     * Decisions dropped because a mutation touched something they depend on
+     */
+    long invalidations();
+
+    long size();
+
+    long weight();
+}
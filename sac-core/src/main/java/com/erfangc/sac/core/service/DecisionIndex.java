@@ -0,0 +1,276 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.core.backend.ResourceHierarchy;
+import com.erfangc.sac.core.backend.SnapshotBackend;
+import com.erfangc.sac.interfaces.IdentityPolicy;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+
+import java.util.*;
+
+/**
+ * {@link DecisionIndex} materializes each principal's effective state (transitive groups and a compiled
+ * {@link PolicyTrie} of its identity policies) as well as resource policies, so that in steady state an authorization
+ * decision is a pure in-memory lookup with no {@link Backend} calls
+ * <p>
+ * Entries are compiled lazily on first use and invalidated incrementally: the index remembers which principals depend
+ * on a given group or policy, so that a mutation only discards the entries it can affect. An {@link InvalidationLog}
+ * prevents a compilation that raced with a mutation of something it depends on from publishing stale state
+ */
+class DecisionIndex implements DecisionSource {
+
+    private static final int MAX_REMEMBERED_INVALIDATIONS = 10_000;
+
+    private final Backend backend;
+    private final PolicyDecisionMaker policyDecisionMaker;
+
+    // access ordered, guarded by itself; entries are only added or removed while also holding this
+    private final Map<String, CompiledPrincipal> principals;
+    private final Map<String, Optional<ResourcePolicy>> resourcePolicies;
+    // reverse dependencies, guarded by this
+    private final Map<String, Set<String>> groupDependents = new HashMap<>();
+    private final Map<String, Set<String>> policyDependents = new HashMap<>();
+    private final InvalidationLog invalidationLog = new InvalidationLog(MAX_REMEMBERED_INVALIDATIONS);
+
+    DecisionIndex(Backend backend,
+                  PolicyDecisionMaker policyDecisionMaker,
+                  int maxPrincipals,
+                  int maxResources) {
+        this.backend = backend;
+        this.policyDecisionMaker = policyDecisionMaker;
+        this.principals = new LinkedHashMap<String, CompiledPrincipal>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledPrincipal> eldest) {
+                if (size() <= maxPrincipals) {
+                    return false;
+                }
+                unlinkAll(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        this.resourcePolicies = new LinkedHashMap<String, Optional<ResourcePolicy>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Optional<ResourcePolicy>> eldest) {
+                return size() > maxResources;
+            }
+        };
+    }
+
+    private static void link(Map<String, Set<String>> dependents, Collection<String> keys, String principalId) {
+        for (String key : keys) {
+            dependents.computeIfAbsent(key, k -> new HashSet<>()).add(principalId);
+        }
+    }
+
+    private static void unlink(Map<String, Set<String>> dependents, Collection<String> keys, String principalId) {
+        for (String key : keys) {
+            final Set<String> set = dependents.get(key);
+            if (set != null) {
+                set.remove(principalId);
+                if (set.isEmpty()) {
+                    dependents.remove(key);
+                }
+            }
+        }
+    }
+
+    @Override
+    public ResourcePolicy getResourcePolicy(String resource) {
+        synchronized (resourcePolicies) {
+            final Optional<ResourcePolicy> cached = resourcePolicies.get(resource);
+            if (cached != null) {
+                return cached.orElse(null);
+            }
+        }
+        final long stamp = invalidationLog.stamp();
+        final ResourcePolicy resourcePolicy = backend.getResourcePolicy(resource);
+        synchronized (resourcePolicies) {
+            if (!invalidated(resource, stamp)) {
+                resourcePolicies.put(resource, Optional.ofNullable(resourcePolicy));
+            }
+        }
+        return resourcePolicy;
+    }
+
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources) {
+        final Map<String, ResourcePolicy> ret = new HashMap<>();
+        final List<String> misses = new ArrayList<>();
+        synchronized (resourcePolicies) {
+            for (String resource : resources) {
+                final Optional<ResourcePolicy> cached = resourcePolicies.get(resource);
+                if (cached == null) {
+                    misses.add(resource);
+                } else {
+                    cached.ifPresent(resourcePolicy -> ret.put(resource, resourcePolicy));
+                }
+            }
+        }
+        if (misses.isEmpty()) {
+            return ret;
+        }
+        final long stamp = invalidationLog.stamp();
+        final Map<String, ResourcePolicy> fetched = backend.getResourcePolicies(misses);
+        synchronized (resourcePolicies) {
+            for (String resource : misses) {
+                if (!invalidated(resource, stamp)) {
+                    resourcePolicies.put(resource, Optional.ofNullable(fetched.get(resource)));
+                }
+            }
+        }
+        ret.putAll(fetched);
+        return ret;
+    }
+
+    /**
+     * Whole policies are kept, as they serve the decisions of every principal
+     */
+    @Override
+    public Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources, Collection<String> principals) {
+        return getResourcePolicies(resources);
+    }
+
+    // caller must hold resourcePolicies
+    private boolean invalidated(String resource, long stamp) {
+        return invalidationLog.invalidatedSince(stamp, Collections.emptySet(), Collections.emptySet(), Collections.singleton(resource));
+    }
+
+    /**
+     * Resolve the ancestry key by key, so that each ancestor is remembered (and invalidated) on its own
+     */
+    @Override
+    public List<ResourcePolicy> getResourcePolicyHierarchy(String resource) {
+        final List<String> ancestry = ResourceHierarchy.ancestry(resource);
+        return ResourceHierarchy.ordered(ancestry, getResourcePolicies(ancestry));
+    }
+
+    @Override
+    public Collection<String> getGroupMembershipTransitively(String principalId) {
+        return compiled(principalId).groups;
+    }
+
+    @Override
+    public PolicyTrie getIdentityPolicies(String principalId) {
+        return compiled(principalId).policies;
+    }
+
+    private CompiledPrincipal compiled(String principalId) {
+        final CompiledPrincipal cached;
+        synchronized (principals) {
+            cached = principals.get(principalId);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        final long stamp = invalidationLog.stamp();
+        // groups and policies must come from the same version when the backend can offer one
+        final Backend source = backend instanceof SnapshotBackend ? ((SnapshotBackend) backend).snapshot() : backend;
+        final Set<String> groups = new HashSet<>(source.getGroupMembershipTransitively(principalId));
+        final Set<String> missingPolicyIds = new HashSet<>();
+        final List<IdentityPolicy> policies = source.fetchIdentityPoliciesTransitivelyForPrincipal(principalId, missingPolicyIds);
+        // a policy assigned before it is created is a dependency as well, creating it changes the compiled state
+        final Set<String> policyIds = new HashSet<>(missingPolicyIds);
+        for (IdentityPolicy policy : policies) {
+            policyIds.add(policy.id());
+        }
+        final CompiledPrincipal compiled = new CompiledPrincipal(groups, policyIds, policyDecisionMaker.compile(policies, missingPolicyIds));
+        publish(principalId, compiled, stamp);
+        return compiled;
+    }
+
+    private synchronized void publish(String principalId, CompiledPrincipal compiled, long stamp) {
+        final List<String> principalIds = new ArrayList<>(compiled.groups.size() + 1);
+        principalIds.add(principalId);
+        principalIds.addAll(compiled.groups);
+        if (invalidationLog.invalidatedSince(stamp, principalIds, compiled.policyIds, Collections.emptySet())) {
+            // something it depends on changed while we were compiling, the result is still good for the caller but
+            // not to keep
+            return;
+        }
+        remove(principalId);
+        // evicts at most the least recently used principal, see removeEldestEntry
+        synchronized (principals) {
+            principals.put(principalId, compiled);
+        }
+        link(groupDependents, compiled.groups, principalId);
+        link(policyDependents, compiled.policyIds, principalId);
+    }
+
+    private void remove(String principalId) {
+        final CompiledPrincipal removed;
+        synchronized (principals) {
+            removed = principals.remove(principalId);
+        }
+        if (removed != null) {
+            unlinkAll(principalId, removed);
+        }
+    }
+
+    // caller must hold this
+    private void unlinkAll(String principalId, CompiledPrincipal compiled) {
+        unlink(groupDependents, compiled.groups, principalId);
+        unlink(policyDependents, compiled.policyIds, principalId);
+    }
+
+    /**
+     * Discard the compiled state of the given principal, and if the principal is a group, of every principal that is
+     * a member of it directly or transitively
+     *
+     * @param principalId a principal or group id whose memberships or policy assignments have changed
+     */
+    synchronized void invalidatePrincipal(String principalId) {
+        invalidationLog.invalidatePrincipal(principalId);
+        remove(principalId);
+        final Set<String> dependents = groupDependents.get(principalId);
+        if (dependents != null) {
+            new ArrayList<>(dependents).forEach(this::remove);
+        }
+    }
+
+    /**
+     * Discard the compiled state of every principal the given policy is effective for, or is assigned to without
+     * existing yet
+     *
+     * @param policyId the policy that has been created, updated or deleted
+     */
+    synchronized void invalidatePolicy(String policyId) {
+        invalidationLog.invalidatePolicy(policyId);
+        final Set<String> dependents = policyDependents.get(policyId);
+        if (dependents != null) {
+            new ArrayList<>(dependents).forEach(this::remove);
+        }
+    }
+
+    void invalidateResource(String resource) {
+        synchronized (resourcePolicies) {
+            invalidationLog.invalidateResource(resource);
+            resourcePolicies.remove(resource);
+        }
+    }
+
+    /**
+     * Discard everything the given principals, policies and resources may have affected, as the individual invalidate
+     * methods would, while taking each lock once
+     */
+    void invalidate(Collection<String> principalIds, Collection<String> policyIds, Collection<String> resources) {
+        synchronized (this) {
+            principalIds.forEach(this::invalidatePrincipal);
+            policyIds.forEach(this::invalidatePolicy);
+        }
+        synchronized (resourcePolicies) {
+            resources.forEach(this::invalidateResource);
+        }
+    }
+
+    private static class CompiledPrincipal {
+        private final Set<String> groups;
+        private final Set<String> policyIds;
+        private final PolicyTrie policies;
+
+        private CompiledPrincipal(Set<String> groups, Set<String> policyIds, PolicyTrie policies) {
+            this.groups = groups;
+            this.policyIds = policyIds;
+            this.policies = policies;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.interfaces.ResourcePolicy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link DecisionSource} supplies {@link SimpleAccessControlImpl} with the state an authorization decision depends on,
+ * either straight from the {@link com.erfangc.sac.core.backend.Backend} or from a precompiled {@link DecisionIndex}
+ */
+interface DecisionSource {
+
+    ResourcePolicy getResourcePolicy(String resource);
+
+    Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources);
+
+    /**
+     * @return the policies of the given resources, of which only the assignments to the given principals are needed,
+     * see {@link com.erfangc.sac.core.backend.ResourcePolicyManager#getResourcePolicies(Collection, Collection)}
+     */
+    Map<String, ResourcePolicy> getResourcePolicies(Collection<String> resources, Collection<String> principals);
+
+    /**
+     * @return the resource policies of the given resource and of its ancestors, closest first
+     */
+    List<ResourcePolicy> getResourcePolicyHierarchy(String resource);
+
+    Collection<String> getGroupMembershipTransitively(String principalId);
+
+    PolicyMatcher getIdentityPolicies(String principalId);
+}
@@ -66,7 +66,7 @@ public class InMemorySimpleAccessControl implements SimpleAccessControl {
 
     @Override
     public List<String> getGroupMembershipTransitively(String principalId) {
-        return null;
+        return delegate.getGroupMembershipTransitively(principalId);
     }
 
     @Override
@@ -104,11 +104,21 @@ public class InMemorySimpleAccessControl implements SimpleAccessControl {
         delegate.unAssignPolicy(policyId, principalId);
     }
 
+    @Override
+    public void applyMutations(List<Mutation> mutations) {
+        delegate.applyMutations(mutations);
+    }
+
     @Override
     public AuthorizationResponse authorize(AuthorizationRequest request) {
         return delegate.authorize(request);
     }
 
+    @Override
+    public List<AuthorizationResponse> authorizeAll(List<AuthorizationRequest> requests) {
+        return delegate.authorizeAll(requests);
+    }
+
     @Override
     public void grantActions(String resource, String principal, Set<String> actions) {
         delegate.grantActions(resource, principal, actions);
@@ -121,6 +131,6 @@ public class InMemorySimpleAccessControl implements SimpleAccessControl {
 
     @Override
     public ResourcePolicy getResourcePolicy(String resource) {
-        return null;
+        return delegate.getResourcePolicy(resource);
     }
 }
@@ -0,0 +1,81 @@
+package com.erfangc.sac.core.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link InvalidationLog} remembers when each principal (or group), policy and resource was last invalidated, so that
+ * state derived from lookups that started earlier can tell whether anything it depends on changed in the meantime.
+ * Unlike a single generation counter, a mutation only holds back the state that depends on what it changed
+ * <p>
+ * Only the most recently invalidated ids are remembered. Forgetting one raises a floor, and state whose lookups started
+ * below it is conservatively treated as stale
+ */
+class InvalidationLog {
+
+    private final int maxRemembered;
+    // id -> stamp of its last invalidation, oldest first, guarded by this
+    private final Map<String, Long> principals = new LinkedHashMap<>();
+    private final Map<String, Long> policies = new LinkedHashMap<>();
+    private final Map<String, Long> resources = new LinkedHashMap<>();
+    private volatile long stamp;
+    private long floor;
+
+    InvalidationLog(int maxRemembered) {
+        this.maxRemembered = maxRemembered;
+    }
+
+    /**
+     * @return the current stamp, to be captured before the lookups whose result may be kept
+     */
+    long stamp() {
+        return stamp;
+    }
+
+    synchronized void invalidatePrincipal(String principalId) {
+        record(principals, principalId);
+    }
+
+    synchronized void invalidatePolicy(String policyId) {
+        record(policies, policyId);
+    }
+
+    synchronized void invalidateResource(String resource) {
+        record(resources, resource);
+    }
+
+    /**
+     * @return whether any of the given principals, policies or resources has been invalidated since the given stamp
+     */
+    synchronized boolean invalidatedSince(long since,
+                                          Collection<String> principalIds,
+                                          Collection<String> policyIds,
+                                          Collection<String> resources) {
+        return floor > since
+                || invalidatedSince(since, this.principals, principalIds)
+                || invalidatedSince(since, this.policies, policyIds)
+                || invalidatedSince(since, this.resources, resources);
+    }
+
+    private static boolean invalidatedSince(long since, Map<String, Long> stamps, Collection<String> ids) {
+        for (String id : ids) {
+            final Long invalidated = stamps.get(id);
+            if (invalidated != null && invalidated > since) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void record(Map<String, Long> stamps, String id) {
+        // re-inserted so that the map stays ordered by stamp
+        stamps.remove(id);
+        stamps.put(id, ++stamp);
+        if (stamps.size() > maxRemembered) {
+            final Map.Entry<String, Long> eldest = stamps.entrySet().iterator().next();
+            floor = Math.max(floor, eldest.getValue());
+            stamps.remove(eldest.getKey());
+        }
+    }
+}
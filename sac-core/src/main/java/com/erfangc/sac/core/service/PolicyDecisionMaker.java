@@ -2,47 +2,129 @@ package com.erfangc.sac.core.service;
 
 import com.erfangc.sac.interfaces.*;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.joining;
+import java.util.Set;
 
 class PolicyDecisionMaker {
 
-    private static String toRegex(String input) {
-        return Stream
-                .of(input.split("/"))
-                .map(token -> {
-                    if (token.equals("*")) {
-                        return ".*";
-                    } else {
-                        return token;
-                    }
-                })
-                .collect(joining("\\/"));
+    private final ResourcePatternCache patternCache;
+
+    PolicyDecisionMaker() {
+        this(new ResourcePatternCache());
+    }
+
+    PolicyDecisionMaker(ResourcePatternCache patternCache) {
+        this.patternCache = patternCache;
+    }
+
+    /**
+     * Drop the compiled pattern for a policy resource that is no longer in use (i.e. the policy has been updated
+     * to point at a different resource or deleted altogether)
+     *
+     * @param resource the policy resource whose compiled pattern should be evicted
+     */
+    void invalidate(String resource) {
+        patternCache.invalidate(resource);
+    }
+
+    /**
+     * Determine whether the {@link ResourcePolicy} attached to the requested resource grants the requested action to
+     * the principal, either directly or through one of the groups it belongs to
+     *
+     * @param request        the request being authorized
+     * @param resourcePolicy the policy attached to the requested resource, may be null
+     * @param gids           the transitive group membership of the requesting principal
+     * @return a permitting {@link AuthorizationResponse}, or null if the resource policy does not permit the request
+     */
+    AuthorizationResponse makeResourcePolicyDecision(AuthorizationRequest request,
+                                                     ResourcePolicy resourcePolicy,
+                                                     Collection<String> gids) {
+        if (permittingAssignment(request, resourcePolicy, gids) == null) {
+            return null;
+        }
+        return resourcePolicyPermit(request);
+    }
+
+    /**
+     * @return the response to a request permitted by an assignment of the resource policy attached to its resource
+     */
+    AuthorizationResponse resourcePolicyPermit(AuthorizationRequest request) {
+        return ImmutableAuthorizationResponse
+                .builder()
+                .requestId(request.id())
+                .status(AuthorizationStatus.Permitted)
+                .remarks("Permitted based on resource based policy")
+                .build();
+    }
+
+    /**
+     * @return the assignment of the resource policy that grants the requested action to the principal or one of its
+     * groups, or null if there is none
+     */
+    ResourcePolicyAssignment permittingAssignment(AuthorizationRequest request,
+                                                  ResourcePolicy resourcePolicy,
+                                                  Collection<String> gids) {
+        if (resourcePolicy == null || !resourcePolicy.assignments().isPresent()) {
+            return null;
+        }
+        for (ResourcePolicyAssignment assignment : resourcePolicy.assignments().get()) {
+            if ((gids.contains(assignment.principal()) || assignment.principal().equals(request.principal()))
+                    && (assignment.actions().contains(request.action()))) {
+                return assignment;
+            }
+        }
+        return null;
     }
 
     AuthorizationResponse makeAccessDecision(AuthorizationRequest request, List<IdentityPolicy> policies) {
+        return makeAccessDecision(request, list(policies));
+    }
+
+    /**
+     * @return a matcher for policies consulted by a single decision, see {@link PolicyList}
+     */
+    PolicyMatcher list(Collection<IdentityPolicy> policies) {
+        return list(policies, Collections.emptySet());
+    }
+
+    /**
+     * @param missingPolicyIds the policies assigned along with the given ones that do not exist
+     */
+    PolicyMatcher list(Collection<IdentityPolicy> policies, Set<String> missingPolicyIds) {
+        return new PolicyList(policies, missingPolicyIds, patternCache);
+    }
+
+    /**
+     * @return a matcher for policies that are kept around for many decisions, see {@link PolicyTrie}
+     */
+    PolicyTrie compile(Collection<IdentityPolicy> policies) {
+        return compile(policies, Collections.emptySet());
+    }
+
+    /**
+     * @param missingPolicyIds the policies assigned along with the given ones that do not exist
+     */
+    PolicyTrie compile(Collection<IdentityPolicy> policies, Set<String> missingPolicyIds) {
+        return PolicyTrie.build(policies, missingPolicyIds, patternCache);
+    }
+
+    AuthorizationResponse makeAccessDecision(AuthorizationRequest request, PolicyMatcher policies) {
+        return decide(request, policies.match(request.resource(), request.action()));
+    }
+
+    /**
+     * @param matched the policies matching the requested resource and action, any deny among which overrides the rest
+     */
+    AuthorizationResponse decide(AuthorizationRequest request, Collection<PolicyTrie.Leaf> matched) {
         boolean hasDeny = false;
         boolean hasPermit = false;
-        for (IdentityPolicy identityPolicy : policies) {
-            if (identityPolicy.resource().isPresent()) {
-                final String resource = identityPolicy.resource().get();
-                final String regex = toRegex(resource);
-                if (request.resource().matches(regex)) {
-                    final Optional<List<String>> maybeActions = identityPolicy.actions();
-                    if (maybeActions.isPresent()) {
-                        final List<String> actions = maybeActions.get();
-                        if (actions.contains(request.action()) || actions.contains("*")) {
-                            if (identityPolicy.effectDeny().orElse(false).equals(true)) {
-                                hasDeny = true;
-                            } else {
-                                hasPermit = true;
-                            }
-                        }
-                    }
-                }
+        for (PolicyTrie.Leaf leaf : matched) {
+            if (leaf.deny()) {
+                hasDeny = true;
+            } else {
+                hasPermit = true;
             }
         }
         AuthorizationStatus status;
@@ -0,0 +1,77 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.interfaces.IdentityPolicy;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * {@link PolicyList} matches a request against each policy in turn through its cached {@link Pattern}. For a single
+ * decision this is cheaper than building a {@link PolicyTrie} only to walk it once, and leaves are only allocated for
+ * the policies that match
+ */
+class PolicyList implements PolicyMatcher {
+
+    private static final String WILDCARD = "*";
+
+    private final Collection<IdentityPolicy> policies;
+    private final Set<String> missingPolicyIds;
+    private final ResourcePatternCache patternCache;
+    private Set<String> policyIds;
+
+    PolicyList(Collection<IdentityPolicy> policies, Set<String> missingPolicyIds, ResourcePatternCache patternCache) {
+        this.policies = policies;
+        this.missingPolicyIds = missingPolicyIds;
+        this.patternCache = patternCache;
+    }
+
+    @Override
+    public int size() {
+        return policies.size();
+    }
+
+    @Override
+    public Set<String> policyIds() {
+        if (policyIds == null) {
+            final Set<String> ids = new HashSet<>();
+            for (IdentityPolicy policy : policies) {
+                ids.add(policy.id());
+            }
+            policyIds = ids;
+        }
+        return policyIds;
+    }
+
+    @Override
+    public Set<String> missingPolicyIds() {
+        return missingPolicyIds;
+    }
+
+    @Override
+    public List<PolicyTrie.Leaf> match(String resource, String action) {
+        List<PolicyTrie.Leaf> ret = Collections.emptyList();
+        for (IdentityPolicy policy : policies) {
+            if (!policy.resource().isPresent() || !policy.actions().isPresent()) {
+                // such a policy can never match a request
+                continue;
+            }
+            final List<String> actions = policy.actions().get();
+            if (!actions.contains(action) && !actions.contains(WILDCARD)) {
+                continue;
+            }
+            final Pattern pattern = patternCache.get(policy.resource().get());
+            if (pattern.matcher(resource).matches()) {
+                if (ret.isEmpty()) {
+                    ret = new ArrayList<>();
+                }
+                ret.add(new PolicyTrie.Leaf(policy, pattern));
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public PolicyTrie compile() {
+        return PolicyTrie.build(policies, missingPolicyIds, patternCache);
+    }
+}
@@ -0,0 +1,41 @@
+package com.erfangc.sac.core.service;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link PolicyMatcher} finds which of a principal's identity policies apply to a request, either by scanning them
+ * ({@link PolicyList}) when they are only consulted once, or through a {@link PolicyTrie} when the cost of building it
+ * is spread over many decisions
+ */
+interface PolicyMatcher {
+
+    /**
+     * @return the number of policies that may be matched
+     */
+    int size();
+
+    /**
+     * @return the ids of every policy this matcher was built from, including those that can never match
+     */
+    Set<String> policyIds();
+
+    /**
+     * @return the ids of the policies assigned to the principal that did not exist when this matcher was built. A
+     * decision made through this matcher depends on them too, since creating one would change it
+     */
+    Set<String> missingPolicyIds();
+
+    /**
+     * Collect every {@link PolicyTrie.Leaf} whose resource matches the requested resource and whose actions cover the
+     * requested action
+     *
+     * @return the matching leaves, in no particular order
+     */
+    List<PolicyTrie.Leaf> match(String resource, String action);
+
+    /**
+     * @return a {@link PolicyTrie} over the same policies, for a matcher about to be consulted many times
+     */
+    PolicyTrie compile();
+}
@@ -0,0 +1,218 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.interfaces.IdentityPolicy;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * {@link PolicyTrie} indexes a set of {@link IdentityPolicy} by the `/` separated segments of their resource, so that
+ * finding every policy applicable to a request costs a single walk of the requested resource instead of one regex
+ * evaluation per policy
+ * <p>
+ * Literal segments are hashed children of a node, while a `*` segment is a wildcard edge. To stay faithful to the
+ * original regex semantics (where `*` became `.*`) a wildcard consumes one or more segments of the requested resource,
+ * and a trailing wildcard also matches the empty segment. Leaves carry the compiled action set and the deny/permit
+ * effect of the policies terminating there
+ * <p>
+ * Policies whose segments contain regex meta characters (i.e. anything the old regex translation would have
+ * interpreted rather than matched literally) cannot be expressed as trie paths; they are kept aside and evaluated
+ * against their compiled pattern to preserve existing behavior
+ */
+class PolicyTrie implements PolicyMatcher {
+
+    private static final String WILDCARD = "*";
+    private static final String REGEX_META_CHARACTERS = "\\.[]{}()*+?^$|";
+
+    private final Node root = new Node(false);
+    private final List<Leaf> patternLeaves = new ArrayList<>();
+    private final Set<String> policyIds = new HashSet<>();
+    private final Set<String> missingPolicyIds;
+    private int size;
+
+    private PolicyTrie(Set<String> missingPolicyIds) {
+        this.missingPolicyIds = missingPolicyIds;
+    }
+
+    static PolicyTrie build(Collection<IdentityPolicy> policies, ResourcePatternCache patternCache) {
+        return build(policies, Collections.emptySet(), patternCache);
+    }
+
+    /**
+     * @param missingPolicyIds the policies assigned along with the given ones that do not exist, see
+     *                         {@link PolicyMatcher#missingPolicyIds()}
+     */
+    static PolicyTrie build(Collection<IdentityPolicy> policies, Set<String> missingPolicyIds, ResourcePatternCache patternCache) {
+        final PolicyTrie trie = new PolicyTrie(missingPolicyIds);
+        for (IdentityPolicy policy : policies) {
+            trie.policyIds.add(policy.id());
+            trie.add(policy, patternCache);
+        }
+        return trie;
+    }
+
+    private static String[] tokenize(String resource) {
+        // mirror String.split semantics used by the regex translation, which drops trailing empty tokens
+        final String[] tokens = resource.split("/");
+        return tokens.length == 0 ? new String[]{""} : tokens;
+    }
+
+    private static boolean isLiteral(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(token.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(IdentityPolicy policy, ResourcePatternCache patternCache) {
+        if (!policy.resource().isPresent() || !policy.actions().isPresent()) {
+            // such a policy can never match a request
+            return;
+        }
+        final String resource = policy.resource().get();
+        final String[] tokens = tokenize(resource);
+        for (String token : tokens) {
+            if (!token.equals(WILDCARD) && !isLiteral(token)) {
+                patternLeaves.add(new Leaf(policy, patternCache.get(resource)));
+                size++;
+                return;
+            }
+        }
+        Node node = root;
+        for (String token : tokens) {
+            if (token.equals(WILDCARD)) {
+                if (node.wildcard == null) {
+                    node.wildcard = new Node(true);
+                }
+                node = node.wildcard;
+            } else {
+                if (node.children == null) {
+                    node.children = new HashMap<>();
+                }
+                node = node.children.computeIfAbsent(token, t -> new Node(false));
+            }
+        }
+        if (node.leaves == null) {
+            node.leaves = new ArrayList<>(1);
+        }
+        node.leaves.add(new Leaf(policy, null));
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<String> policyIds() {
+        return policyIds;
+    }
+
+    @Override
+    public Set<String> missingPolicyIds() {
+        return missingPolicyIds;
+    }
+
+    @Override
+    public PolicyTrie compile() {
+        return this;
+    }
+
+    @Override
+    public List<Leaf> match(String resource, String action) {
+        final String[] segments = resource.split("/", -1);
+        // the set of trie nodes reachable after consuming the segments seen so far
+        List<Node> active = Collections.singletonList(root);
+        for (String segment : segments) {
+            final List<Node> next = new ArrayList<>();
+            for (Node node : active) {
+                if (node.children != null) {
+                    final Node child = node.children.get(segment);
+                    if (child != null) {
+                        addIfAbsent(next, child);
+                    }
+                }
+                if (node.wildcard != null) {
+                    addIfAbsent(next, node.wildcard);
+                }
+                if (node.isWildcard) {
+                    // a wildcard may keep consuming segments
+                    addIfAbsent(next, node);
+                }
+            }
+            if (next.isEmpty() && patternLeaves.isEmpty()) {
+                return Collections.emptyList();
+            }
+            active = next;
+        }
+        final List<Leaf> ret = new ArrayList<>();
+        for (Node node : active) {
+            if (node.leaves != null) {
+                for (Leaf leaf : node.leaves) {
+                    if (leaf.permits(action)) {
+                        ret.add(leaf);
+                    }
+                }
+            }
+        }
+        for (Leaf leaf : patternLeaves) {
+            if (leaf.permits(action) && leaf.pattern.matcher(resource).matches()) {
+                ret.add(leaf);
+            }
+        }
+        return ret;
+    }
+
+    private static void addIfAbsent(List<Node> nodes, Node node) {
+        // active sets are tiny, a linear identity scan is cheaper than hashing
+        for (Node n : nodes) {
+            if (n == node) {
+                return;
+            }
+        }
+        nodes.add(node);
+    }
+
+    private static class Node {
+        private final boolean isWildcard;
+        private Map<String, Node> children;
+        private Node wildcard;
+        private List<Leaf> leaves;
+
+        private Node(boolean isWildcard) {
+            this.isWildcard = isWildcard;
+        }
+    }
+
+    static class Leaf {
+        private final IdentityPolicy policy;
+        private final Set<String> actions;
+        private final boolean allActions;
+        private final boolean deny;
+        private final Pattern pattern;
+
+        Leaf(IdentityPolicy policy, Pattern pattern) {
+            final List<String> actions = policy.actions().orElse(Collections.emptyList());
+            this.policy = policy;
+            this.actions = new HashSet<>(actions);
+            this.allActions = this.actions.contains(WILDCARD);
+            this.deny = policy.effectDeny().orElse(false);
+            this.pattern = pattern;
+        }
+
+        IdentityPolicy policy() {
+            return policy;
+        }
+
+        boolean deny() {
+            return deny;
+        }
+
+        boolean permits(String action) {
+            return allActions || actions.contains(action);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.erfangc.sac.core.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * {@link ResourcePatternCache} holds compiled {@link Pattern} instances keyed by the raw resource string of an
+ * {@link com.erfangc.sac.interfaces.IdentityPolicy}, so that repeated decisions against the same policies do not
+ * re-tokenize and recompile the resource expression on every call
+ * <p>
+ * The cache is bounded and evicts the least recently used pattern once it grows past its capacity
+ */
+class ResourcePatternCache {
+
+    static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final Map<String, Pattern> patterns;
+
+    ResourcePatternCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    ResourcePatternCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.patterns = new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    static String toRegex(String input) {
+        return Stream
+                .of(input.split("/"))
+                .map(token -> {
+                    if (token.equals("*")) {
+                        return ".*";
+                    } else {
+                        return token;
+                    }
+                })
+                .collect(joining("\\/"));
+    }
+
+    Pattern get(String resource) {
+        synchronized (patterns) {
+            final Pattern pattern = patterns.get(resource);
+            if (pattern != null) {
+                return pattern;
+            }
+        }
+        // compile outside of the lock, a racing thread compiling the same resource is harmless
+        final Pattern compiled = Pattern.compile(toRegex(resource));
+        synchronized (patterns) {
+            patterns.put(resource, compiled);
+        }
+        return compiled;
+    }
+
+    void invalidate(String resource) {
+        synchronized (patterns) {
+            patterns.remove(resource);
+        }
+    }
+
+    int size() {
+        synchronized (patterns) {
+            return patterns.size();
+        }
+    }
+}
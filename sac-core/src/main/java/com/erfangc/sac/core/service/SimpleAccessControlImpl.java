@@ -1,19 +1,185 @@
 package com.erfangc.sac.core.service;
 
 import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.core.backend.ResourceHierarchy;
+import com.erfangc.sac.core.backend.SnapshotBackend;
+import com.erfangc.sac.core.metrics.Counter;
+import com.erfangc.sac.core.metrics.Histogram;
+import com.erfangc.sac.core.metrics.Metrics;
 import com.erfangc.sac.interfaces.*;
 
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * {@link SimpleAccessControlImpl} makes authorization decisions out of the state held by a {@link Backend}
+ * <p>
+ * Given {@link SimpleAccessControlOptions#metrics()}, it reports:
+ * <ul>
+ * <li>sac.authorize.nanos, the latency of each {@link #authorize(AuthorizationRequest)} (cache hits included), and
+ * sac.authorizeAll.nanos, of each batch</li>
+ * <li>sac.authorize.permitted and sac.authorize.denied, the outcome of every decision</li>
+ * <li>sac.resourcePolicy.shortCircuit, the decisions settled by a resource policy without looking at identity
+ * policies</li>
+ * <li>sac.groups.fetch.nanos and sac.identityPolicies.fetch.nanos, the time spent resolving the transitive groups and
+ * the (compiled) identity policies of a principal</li>
+ * <li>sac.identityPolicies.evaluated, the number of identity policies each decision that got that far weighed</li>
+ * </ul>
+ * <p>
+ * Requests that ask for a trace, and the share of all requests given by
+ * {@link SimpleAccessControlOptions#traceSampleRate()}, get a {@link DecisionTrace} along with their response
+ */
 public class SimpleAccessControlImpl implements SimpleAccessControl {
 
     private Backend backend;
     private PolicyDecisionMaker policyDecisionMaker;
+    private DecisionSource decisionSource;
+    private DecisionIndex decisionIndex;
+    private DecisionCache decisionCache;
+    private final boolean hierarchicalResourcePolicies;
+    private final double traceSampleRate;
+    private final boolean instrumented;
+    private final Histogram authorizeNanos;
+    private final Histogram authorizeAllNanos;
+    private final Counter permitted;
+    private final Counter denied;
+    private final Counter resourcePolicyShortCircuit;
+    private final Histogram groupsFetchNanos;
+    private final Histogram identityPoliciesFetchNanos;
+    private final Histogram identityPoliciesEvaluated;
 
     public SimpleAccessControlImpl(Backend backend) {
+        this(backend, ImmutableSimpleAccessControlOptions.builder().build());
+    }
+
+    public SimpleAccessControlImpl(Backend backend, SimpleAccessControlOptions options) {
         this.backend = backend;
         policyDecisionMaker = new PolicyDecisionMaker();
+        if (options.decisionIndexEnabled()) {
+            decisionIndex = new DecisionIndex(
+                    backend,
+                    policyDecisionMaker,
+                    options.decisionIndexMaxPrincipals(),
+                    options.decisionIndexMaxResources()
+            );
+            decisionSource = decisionIndex;
+        } else {
+            decisionSource = new BackendDecisionSource(backend, policyDecisionMaker);
+        }
+        if (options.decisionCacheEnabled()) {
+            decisionCache = new DecisionCache(
+                    options.decisionCacheMaxWeight(),
+                    options.decisionCacheTtlMillis(),
+                    options.hierarchicalResourcePolicies()
+            );
+        }
+        hierarchicalResourcePolicies = options.hierarchicalResourcePolicies();
+        traceSampleRate = options.traceSampleRate();
+        final Metrics metrics = options.metrics();
+        // skip even reading the clock when nobody listens
+        instrumented = metrics != Metrics.noop();
+        authorizeNanos = metrics.histogram("sac.authorize.nanos");
+        authorizeAllNanos = metrics.histogram("sac.authorizeAll.nanos");
+        permitted = metrics.counter("sac.authorize.permitted");
+        denied = metrics.counter("sac.authorize.denied");
+        resourcePolicyShortCircuit = metrics.counter("sac.resourcePolicy.shortCircuit");
+        groupsFetchNanos = metrics.histogram("sac.groups.fetch.nanos");
+        identityPoliciesFetchNanos = metrics.histogram("sac.identityPolicies.fetch.nanos");
+        identityPoliciesEvaluated = metrics.histogram("sac.identityPolicies.evaluated");
+    }
+
+    private long now() {
+        return instrumented ? System.nanoTime() : 0;
+    }
+
+    private AuthorizationResponse count(AuthorizationResponse response) {
+        if (instrumented) {
+            (response.status() == AuthorizationStatus.Permitted ? permitted : denied).increment();
+        }
+        return response;
+    }
+
+    /**
+     * @return the counters of the decision cache, if enabled through {@link SimpleAccessControlOptions#decisionCacheEnabled()}
+     */
+    public Optional<DecisionCacheStats> decisionCacheStats() {
+        return decisionCache == null ? Optional.empty() : Optional.of(decisionCache.stats());
+    }
+
+    /**
+     * @return where the lookups behind a single decision (or batch of decisions) should be made. For a
+     * {@link SnapshotBackend} this pins one version, so that a decision never mixes state from before and after a write
+     */
+    private DecisionSource decisionSource() {
+        if (decisionIndex == null && backend instanceof SnapshotBackend) {
+            return new BackendDecisionSource(((SnapshotBackend) backend).snapshot(), policyDecisionMaker);
+        }
+        return decisionSource;
+    }
+
+    /**
+     * @return the resource policy in effect for the given resource, inherited from its ancestors as well if resource
+     * policies are hierarchical
+     */
+    private ResourcePolicy resourcePolicy(DecisionSource source, String resource) {
+        if (!hierarchicalResourcePolicies) {
+            return source.getResourcePolicy(resource);
+        }
+        return ResourceHierarchy.inherit(resource, source.getResourcePolicyHierarchy(resource));
+    }
+
+    /**
+     * @param principals the principals and groups the decisions are made for, only their assignments are read
+     * @return the resource policies in effect for each of the given resources, fetching every key (ancestors included)
+     * at once
+     */
+    private Map<String, ResourcePolicy> resourcePolicies(DecisionSource source, Set<String> resources, Collection<String> principals) {
+        if (!hierarchicalResourcePolicies) {
+            return source.getResourcePolicies(resources, principals);
+        }
+        final Map<String, List<String>> ancestries = new HashMap<>();
+        final Set<String> keys = new HashSet<>();
+        for (String resource : resources) {
+            final List<String> ancestry = ResourceHierarchy.ancestry(resource);
+            ancestries.put(resource, ancestry);
+            keys.addAll(ancestry);
+        }
+        final Map<String, ResourcePolicy> found = source.getResourcePolicies(keys, principals);
+        final Map<String, ResourcePolicy> ret = new HashMap<>();
+        ancestries.forEach((resource, ancestry) -> {
+            final ResourcePolicy resourcePolicy = ResourceHierarchy.inherit(resource, ResourceHierarchy.ordered(ancestry, found));
+            if (resourcePolicy != null) {
+                ret.put(resource, resourcePolicy);
+            }
+        });
+        return ret;
+    }
+
+    private void invalidatePrincipal(String principalId) {
+        if (decisionIndex != null) {
+            decisionIndex.invalidatePrincipal(principalId);
+        }
+        if (decisionCache != null) {
+            decisionCache.invalidatePrincipal(principalId);
+        }
+    }
+
+    private void invalidatePolicy(String policyId) {
+        if (decisionIndex != null) {
+            decisionIndex.invalidatePolicy(policyId);
+        }
+        if (decisionCache != null) {
+            decisionCache.invalidatePolicy(policyId);
+        }
+    }
+
+    private void invalidateResource(String resource) {
+        if (decisionIndex != null) {
+            decisionIndex.invalidateResource(resource);
+        }
+        if (decisionCache != null) {
+            decisionCache.invalidateResource(resource);
+        }
     }
 
     @Override
@@ -34,21 +200,25 @@ public class SimpleAccessControlImpl implements SimpleAccessControl {
     @Override
     public void deleteGroup(String groupId) {
         backend.deleteGroup(groupId);
+        invalidatePrincipal(groupId);
     }
 
     @Override
     public void assignPrincipalToGroup(String groupId, String principalId) {
         backend.assignPrincipalToGroup(groupId, principalId);
+        invalidatePrincipal(principalId);
     }
 
     @Override
     public void assignPrincipalToGroup(String groupId, String principalId, boolean principalIsGroup) {
         backend.assignPrincipalToGroup(groupId, principalId, principalIsGroup);
+        invalidatePrincipal(principalId);
     }
 
     @Override
     public void unassignPrincipalFromGroup(String groupId, String principalId) {
         backend.unassignPrincipalFromGroup(groupId, principalId);
+        invalidatePrincipal(principalId);
     }
 
     @Override
@@ -74,6 +244,8 @@ public class SimpleAccessControlImpl implements SimpleAccessControl {
     @Override
     public void createPolicy(IdentityPolicy identityPolicy) {
         backend.createPolicy(identityPolicy);
+        // decisions depend on the policies assigned before being created, as well as on one created over an existing id
+        invalidatePolicy(identityPolicy.id());
     }
 
     @Override
@@ -83,70 +255,353 @@ public class SimpleAccessControlImpl implements SimpleAccessControl {
 
     @Override
     public void updatePolicy(IdentityPolicy identityPolicy) {
+        final IdentityPolicy existing = backend.getPolicy(identityPolicy.id());
         backend.updatePolicy(identityPolicy);
+        invalidatePolicy(identityPolicy.id());
+        // evict the compiled pattern if the policy no longer points at the same resource
+        if (existing != null && existing.resource().isPresent() && !existing.resource().equals(identityPolicy.resource())) {
+            policyDecisionMaker.invalidate(existing.resource().get());
+        }
     }
 
     @Override
     public void deletePolicy(String policyId) {
+        final IdentityPolicy existing = backend.getPolicy(policyId);
         backend.deletePolicy(policyId);
+        invalidatePolicy(policyId);
+        if (existing != null) {
+            existing.resource().ifPresent(policyDecisionMaker::invalidate);
+        }
     }
 
     @Override
     public void assignPolicy(String policyId, String principalId) {
         backend.assignPolicy(policyId, principalId);
+        invalidatePrincipal(principalId);
     }
 
     @Override
     public void unAssignPolicy(String policyId, String principalId) {
         backend.unAssignPolicy(policyId, principalId);
+        invalidatePrincipal(principalId);
+    }
+
+    @Override
+    public void applyMutations(List<Mutation> mutations) {
+        final Set<String> principalIds = new HashSet<>();
+        final Set<String> policyIds = new HashSet<>();
+        final Set<String> resources = new HashSet<>();
+        // policies the batch updates or deletes, whose compiled patterns may have to be evicted
+        final Set<String> replacedPolicyIds = new HashSet<>();
+        // the resource each policy the batch writes points at once it has been applied
+        final Map<String, Optional<String>> resourcesAfter = new HashMap<>();
+        for (Mutation mutation : mutations) {
+            switch (mutation.type()) {
+                case DeleteGroup:
+                    principalIds.add(mutation.groupId().get());
+                    break;
+                case AssignPrincipalToGroup:
+                case UnassignPrincipalFromGroup:
+                case AssignPolicy:
+                case UnAssignPolicy:
+                    principalIds.add(mutation.principalId().get());
+                    break;
+                case CreatePolicy:
+                    policyIds.add(mutation.policy().get().id());
+                    resourcesAfter.put(mutation.policy().get().id(), mutation.policy().get().resource());
+                    break;
+                case UpdatePolicy:
+                    policyIds.add(mutation.policy().get().id());
+                    replacedPolicyIds.add(mutation.policy().get().id());
+                    resourcesAfter.put(mutation.policy().get().id(), mutation.policy().get().resource());
+                    break;
+                case DeletePolicy:
+                    policyIds.add(mutation.policyId().get());
+                    replacedPolicyIds.add(mutation.policyId().get());
+                    resourcesAfter.put(mutation.policyId().get(), Optional.empty());
+                    break;
+                case GrantActions:
+                case RevokeActions:
+                    resources.add(mutation.resource().get());
+                    break;
+                default:
+                    break;
+            }
+        }
+        // the policies being replaced are read at once, what replaces them is known from the batch itself
+        final Map<String, IdentityPolicy> replaced = replacedPolicyIds.isEmpty()
+                ? Collections.emptyMap()
+                : backend.getPolicies(replacedPolicyIds);
+        backend.applyMutations(mutations);
+        if (decisionIndex != null) {
+            decisionIndex.invalidate(principalIds, policyIds, resources);
+        }
+        if (decisionCache != null) {
+            decisionCache.invalidate(principalIds, policyIds, resources);
+        }
+        replaced.forEach((policyId, existing) -> {
+            if (existing.resource().isPresent() && !existing.resource().equals(resourcesAfter.get(policyId))) {
+                policyDecisionMaker.invalidate(existing.resource().get());
+            }
+        });
     }
 
     @Override
     public AuthorizationResponse authorize(AuthorizationRequest request) {
-        final String principal = request.principal();
+        final long start = now();
+        final AuthorizationResponse response = count(decide(request));
+        if (instrumented) {
+            authorizeNanos.record(System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    private boolean traced(AuthorizationRequest request) {
+        return request.trace() || (traceSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < traceSampleRate);
+    }
+
+    private AuthorizationResponse decide(AuthorizationRequest request) {
+        if (traced(request)) {
+            return trace(request);
+        }
+        if (decisionCache != null) {
+            final AuthorizationResponse cached = decisionCache.get(request);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final long stamp = decisionCache == null ? 0 : decisionCache.stamp();
+        final DecisionSource source = decisionSource();
+        final PrincipalContext context = new PrincipalContext(request.principal(), source);
+        final ResourcePolicy resourcePolicy = resourcePolicies(source, Collections.singleton(request.resource()), context.principals())
+                .get(request.resource());
+        final AuthorizationResponse response = authorize(request, resourcePolicy, context);
+        cache(request, response, context, stamp);
+        return response;
+    }
 
-        final ResourcePolicy resourcePolicy = backend.getResourcePolicy(request.resource());
+    @Override
+    public List<AuthorizationResponse> authorizeAll(List<AuthorizationRequest> requests) {
+        final long start = now();
+        final AuthorizationResponse[] responses = new AuthorizationResponse[requests.size()];
+        final List<Integer> misses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            final AuthorizationRequest request = requests.get(i);
+            if (traced(request)) {
+                responses[i] = trace(request);
+                continue;
+            }
+            if (decisionCache != null) {
+                responses[i] = decisionCache.get(request);
+            }
+            if (responses[i] == null) {
+                misses.add(i);
+            }
+        }
+        if (!misses.isEmpty()) {
+            final long stamp = decisionCache == null ? 0 : decisionCache.stamp();
+            final DecisionSource source = decisionSource();
+            // groups and identity policies are resolved at most once per principal
+            final Map<String, PrincipalContext> contexts = new HashMap<>();
+            final Set<String> resources = new HashSet<>();
+            final Set<String> principals = new HashSet<>();
+            for (int i : misses) {
+                final AuthorizationRequest request = requests.get(i);
+                resources.add(request.resource());
+                if (!contexts.containsKey(request.principal())) {
+                    final PrincipalContext context = new PrincipalContext(request.principal(), source, true);
+                    contexts.put(request.principal(), context);
+                    // resource policies are only read for the principals of the batch and their groups
+                    principals.addAll(context.principals());
+                }
+            }
+            final Map<String, ResourcePolicy> resourcePolicies = resourcePolicies(source, resources, principals);
+            for (int i : misses) {
+                final AuthorizationRequest request = requests.get(i);
+                final PrincipalContext context = contexts.get(request.principal());
+                responses[i] = authorize(request, resourcePolicies.get(request.resource()), context);
+                cache(request, responses[i], context, stamp);
+            }
+        }
+        if (instrumented) {
+            for (AuthorizationResponse response : responses) {
+                count(response);
+            }
+            authorizeAllNanos.record(System.nanoTime() - start);
+        }
+        return Arrays.asList(responses);
+    }
+
+    private void cache(AuthorizationRequest request,
+                       AuthorizationResponse response,
+                       PrincipalContext context,
+                       long stamp) {
+        if (decisionCache == null) {
+            return;
+        }
+        // every decision depends on the groups of the principal, be it through resource or identity policies, while
+        // identity policies (assigned ones that do not exist included) only matter if the decision got that far
+        final Set<String> policyIds = new HashSet<>();
+        if (context.policies != null) {
+            policyIds.addAll(context.policies.policyIds());
+            policyIds.addAll(context.policies.missingPolicyIds());
+        }
+        decisionCache.put(request, response, context.groups(), policyIds, stamp);
+    }
+
+    private AuthorizationResponse authorize(AuthorizationRequest request,
+                                            ResourcePolicy resourcePolicy,
+                                            PrincipalContext context) {
         // short circuit the process if permission is already granted through the resource policy
         // attached to the given resource
         if (resourcePolicy != null) {
-            final List<String> gids = backend.getGroupMembershipTransitively(request.principal());
-            final Boolean resourcePolicyPermitted = resourcePolicy.assignments().map(assignments -> {
-                boolean permitted = false;
-                for (ResourcePolicyAssignment assignment : assignments) {
-                    if ((gids.contains(assignment.principal()) || assignment.principal().equals(principal))
-                            && (assignment.actions().contains(request.action()))) {
-                        permitted = true;
-                    }
+            final AuthorizationResponse response = policyDecisionMaker.makeResourcePolicyDecision(request, resourcePolicy, context.groups());
+            if (response != null) {
+                if (instrumented) {
+                    resourcePolicyShortCircuit.increment();
                 }
-                return permitted;
-            }).orElse(false);
-            if (resourcePolicyPermitted) {
-                return ImmutableAuthorizationResponse
-                        .builder()
-                        .requestId(request.id())
-                        .status(AuthorizationStatus.Permitted)
-                        .remarks("Permitted based on resource based policy")
-                        .build();
+                return response;
             }
         }
 
         // otherwise proceed as normal
-        final List<IdentityPolicy> policies = backend.fetchIdentityPoliciesTransitivelyForPrincipal(principal);
+        final PolicyMatcher policies = context.policies();
+        if (instrumented) {
+            identityPoliciesEvaluated.record(policies.size());
+        }
         return policyDecisionMaker.makeAccessDecision(request, policies);
     }
 
+    /**
+     * Make a decision the way {@link #authorize(AuthorizationRequest)} does, minus the decision cache, while recording
+     * what it was based on and how long each phase took
+     */
+    private AuthorizationResponse trace(AuthorizationRequest request) {
+        final long start = System.nanoTime();
+        final ImmutableDecisionTrace.Builder trace = ImmutableDecisionTrace.builder();
+        final DecisionSource source = decisionSource();
+        final ResourcePolicy resourcePolicy = resourcePolicy(source, request.resource());
+        long mark = System.nanoTime();
+        long evaluationNanos = 0;
+        trace.resourcePolicyFound(resourcePolicy != null).resourcePolicyNanos(mark - start);
+
+        final PrincipalContext context = new PrincipalContext(request.principal(), source);
+        AuthorizationResponse response = null;
+        if (resourcePolicy != null) {
+            final Collection<String> groups = context.groups();
+            long now = System.nanoTime();
+            trace.groups(groups).groupsNanos(now - mark);
+            mark = now;
+            final ResourcePolicyAssignment assignment = policyDecisionMaker.permittingAssignment(request, resourcePolicy, groups);
+            if (assignment != null) {
+                trace.resourcePolicyPrincipal(assignment.principal());
+                response = policyDecisionMaker.resourcePolicyPermit(request);
+                if (instrumented) {
+                    resourcePolicyShortCircuit.increment();
+                }
+            }
+            now = System.nanoTime();
+            evaluationNanos += now - mark;
+            mark = now;
+        }
+        if (response == null) {
+            final PolicyMatcher policies = context.policies();
+            long now = System.nanoTime();
+            trace.identityPoliciesNanos(now - mark);
+            mark = now;
+            final List<PolicyTrie.Leaf> matched = policies.match(request.resource(), request.action());
+            response = policyDecisionMaker.decide(request, matched);
+            evaluationNanos += System.nanoTime() - mark;
+            if (instrumented) {
+                identityPoliciesEvaluated.record(policies.size());
+            }
+            trace.policiesConsidered(new TreeSet<>(policies.policyIds()));
+            for (PolicyTrie.Leaf leaf : matched) {
+                if (leaf.deny()) {
+                    trace.addDenyOverrides(leaf.policy().id());
+                } else {
+                    trace.addPoliciesMatched(leaf.policy().id());
+                }
+            }
+        }
+        return ImmutableAuthorizationResponse
+                .copyOf(response)
+                .withTrace(trace.evaluationNanos(evaluationNanos).totalNanos(System.nanoTime() - start).build());
+    }
+
     @Override
     public void grantActions(String resource, String principal, Set<String> actions) {
         backend.grantActions(resource, principal, actions);
+        invalidateResource(resource);
     }
 
     @Override
     public void revokeActions(String resource, String principal, Set<String> actions) {
         backend.revokeActions(resource, principal, actions);
+        invalidateResource(resource);
     }
 
     @Override
     public ResourcePolicy getResourcePolicy(String resource) {
         return backend.getResourcePolicy(resource);
     }
+
+    /**
+     * Lazily resolved decision state for a single principal, shared across the requests of a batch
+     */
+    private class PrincipalContext {
+        private final String principal;
+        private final DecisionSource source;
+        private final boolean shared;
+        private Collection<String> groups;
+        private PolicyMatcher policies;
+
+        private PrincipalContext(String principal, DecisionSource source) {
+            this(principal, source, false);
+        }
+
+        /**
+         * @param shared whether the context serves several requests, in which case identity policies are compiled
+         *               into a {@link PolicyTrie} once rather than scanned for each request
+         */
+        private PrincipalContext(String principal, DecisionSource source, boolean shared) {
+            this.principal = principal;
+            this.source = source;
+            this.shared = shared;
+        }
+
+        private Collection<String> groups() {
+            if (groups == null) {
+                final long start = now();
+                // checked against every assignment of a resource policy
+                final Collection<String> gids = source.getGroupMembershipTransitively(principal);
+                groups = gids instanceof Set ? gids : new HashSet<>(gids);
+                if (instrumented) {
+                    groupsFetchNanos.record(System.nanoTime() - start);
+                }
+            }
+            return groups;
+        }
+
+        /**
+         * @return the principal along with its transitive groups, the only principals whose assignments of a resource
+         * policy a decision on its behalf can use
+         */
+        private Collection<String> principals() {
+            final Set<String> ret = new HashSet<>(groups());
+            ret.add(principal);
+            return ret;
+        }
+
+        private PolicyMatcher policies() {
+            if (policies == null) {
+                final long start = now();
+                policies = shared ? source.getIdentityPolicies(principal).compile() : source.getIdentityPolicies(principal);
+                if (instrumented) {
+                    identityPoliciesFetchNanos.record(System.nanoTime() - start);
+                }
+            }
+            return policies;
+        }
+    }
 }
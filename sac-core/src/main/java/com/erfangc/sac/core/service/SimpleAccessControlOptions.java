@@ -0,0 +1,97 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.core.metrics.Metrics;
+import org.immutables.value.Value;
+
+/**
+ * Tuning knobs for {@link SimpleAccessControlImpl}. The defaults reproduce the plain behavior of consulting the
+ * {@link com.erfangc.sac.core.backend.Backend} on every decision
+ */
+@Value.Immutable
+public interface SimpleAccessControlOptions {
+
+    /**
+     * When enabled, each principal's effective groups and identity policies are materialized into a compiled in-memory
+     * structure and kept up to date from the mutation methods of {@link SimpleAccessControlImpl}. Note that mutations
+     * applied to the {@link com.erfangc.sac.core.backend.Backend} by other means (i.e. another process sharing the same
+     * Redis) are not observed
+     */
+    @Value.Default
+    default boolean decisionIndexEnabled() {
+        return false;
+    }
+
+    /**
+     * The maximum number of principals the decision index keeps compiled at any given time
+     */
+    @Value.Default
+    default int decisionIndexMaxPrincipals() {
+        return 100_000;
+    }
+
+    /**
+     * The maximum number of resource policies (including the absence of one) the decision index remembers
+     */
+    @Value.Default
+    default int decisionIndexMaxResources() {
+        return 100_000;
+    }
+
+    /**
+     * When enabled, resources are treated as '/' separated paths and a resource policy applies to every resource below
+     * its own, so that a single grant on {@code /org/inventory} covers {@code /org/inventory/widgets/widget1}. Each
+     * decision then looks up the policies of the resource and of its ancestors, see
+     * {@link com.erfangc.sac.core.backend.ResourceHierarchy}
+     */
+    @Value.Default
+    default boolean hierarchicalResourcePolicies() {
+        return false;
+    }
+
+    /**
+     * When enabled, decisions are cached by (principal, resource, action). A cached decision is dropped as soon as a
+     * mutation made through {@link SimpleAccessControlImpl} touches the principal, one of its groups, one of its identity
+     * policies or the resource policy of the resource. As with the decision index, mutations applied to the
+     * {@link com.erfangc.sac.core.backend.Backend} by other means are only observed once the entry expires
+     */
+    @Value.Default
+    default boolean decisionCacheEnabled() {
+        return false;
+    }
+
+    /**
+     * The approximate heap footprint, in bytes, above which the least recently used decisions are evicted
+     */
+    @Value.Default
+    default long decisionCacheMaxWeight() {
+        return 32L * 1024 * 1024;
+    }
+
+    /**
+     * How long a cached decision may be served for, in milliseconds
+     */
+    @Value.Default
+    default long decisionCacheTtlMillis() {
+        return 60_000L;
+    }
+
+    /**
+     * Where decision latencies, phase timings and outcomes are reported, see {@link SimpleAccessControlImpl} for the
+     * instruments. To also time each call made to the {@link com.erfangc.sac.core.backend.Backend}, wrap it in a
+     * {@link com.erfangc.sac.core.metrics.InstrumentedBackend}
+     */
+    @Value.Default
+    default Metrics metrics() {
+        return Metrics.noop();
+    }
+
+    /**
+     * The share of decisions, between 0 and 1, that come back with a {@link com.erfangc.sac.interfaces.DecisionTrace}
+     * as if the request had asked for one. Sampled decisions bypass the decision cache and cost a few more clock reads
+     * and allocations, the others are unaffected
+     */
+    @Value.Default
+    default double traceSampleRate() {
+        return 0;
+    }
+}
@@ -0,0 +1,60 @@
+package com.erfangc.sac.core.backend;
+
+import com.erfangc.sac.interfaces.ImmutableResourcePolicy;
+import com.erfangc.sac.interfaces.ImmutableResourcePolicyAssignment;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class ResourceHierarchyTest {
+
+    private static ResourcePolicy policy(String resource, String principal) {
+        return ImmutableResourcePolicy
+                .builder()
+                .resource(resource)
+                .assignments(singletonList(ImmutableResourcePolicyAssignment.builder().principal(principal).actions(singleton("read")).build()))
+                .build();
+    }
+
+    @Test
+    public void ancestryIsClosestFirst() {
+        assertEquals(
+                Arrays.asList("/org/inventory/widgets/widget1", "/org/inventory/widgets", "/org/inventory", "/org"),
+                ResourceHierarchy.ancestry("/org/inventory/widgets/widget1")
+        );
+        assertEquals(Arrays.asList("org/inventory", "org"), ResourceHierarchy.ancestry("org/inventory"));
+        assertEquals(singletonList("document 1"), ResourceHierarchy.ancestry("document 1"));
+    }
+
+    @Test
+    public void ancestryIsBounded() {
+        final StringBuilder resource = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            resource.append("/").append(i);
+        }
+        final List<String> ancestry = ResourceHierarchy.ancestry(resource.toString());
+        // the resource itself and the ancestors within the first segments, short of the empty prefix
+        assertEquals(ResourceHierarchy.MAX_DEPTH, ancestry.size());
+        assertEquals(resource.toString(), ancestry.get(0));
+        assertEquals("/0", ancestry.get(ancestry.size() - 1));
+    }
+
+    @Test
+    public void inheritedPolicyHoldsEveryAssignment() {
+        assertNull(ResourceHierarchy.inherit("/org/inventory", Collections.emptyList()));
+        final ResourcePolicy own = policy("/org/inventory", "jane");
+        assertSame(own, ResourceHierarchy.inherit("/org/inventory", singletonList(own)));
+
+        final ResourcePolicy inherited = ResourceHierarchy.inherit("/org/inventory", Arrays.asList(own, policy("/org", "john")));
+        assertEquals("/org/inventory", inherited.resource());
+        assertEquals(2, inherited.assignments().get().size());
+        assertEquals("jane", inherited.assignments().get().get(0).principal());
+    }
+}
@@ -0,0 +1,85 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import com.erfangc.sac.interfaces.ImmutableIdentityPolicy;
+import com.erfangc.sac.interfaces.ResourcePolicyAssignment;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class CompactInMemoryBackendTest {
+
+    private final CompactInMemoryBackend backend = new CompactInMemoryBackend();
+
+    @Test
+    public void deepHierarchyIsTraversed() {
+        // more principals than the initial capacity of every array
+        for (int i = 1; i < 5_000; i++) {
+            backend.assignPrincipalToGroup("group " + (i - 1), "group " + i, true);
+        }
+        backend.assignPrincipalToGroup("group 4999", "jane");
+        assertEquals(5_000, backend.getGroupMembershipTransitively("jane").size());
+
+        backend.unassignPrincipalFromGroup("group 2499", "group 2500");
+        assertEquals(2_500, backend.getGroupMembershipTransitively("jane").size());
+    }
+
+    @Test
+    public void closuresFollowGroupsMovedAndDeleted() {
+        backend.assignPrincipalToGroup("engineering", "platform", true);
+        backend.assignPrincipalToGroup("platform", "storage", true);
+        backend.assignPrincipalToGroup("storage", "jane");
+        // storage becomes a group before the groups it is moved under exist
+        backend.assignPrincipalToGroup("research", "labs", true);
+        backend.unassignPrincipalFromGroup("engineering", "platform");
+        backend.assignPrincipalToGroup("labs", "platform", true);
+
+        assertEquals(
+                new HashSet<>(Arrays.asList("storage", "platform", "labs", "research")),
+                new HashSet<>(backend.getGroupMembershipTransitively("jane"))
+        );
+        assertEquals(
+                new HashSet<>(Arrays.asList("platform", "labs", "research")),
+                new HashSet<>(backend.getGroupMembershipTransitively("storage"))
+        );
+
+        backend.deleteGroup("labs");
+        assertEquals(
+                new HashSet<>(Arrays.asList("storage", "platform")),
+                new HashSet<>(backend.getGroupMembershipTransitively("jane"))
+        );
+    }
+
+    @Test
+    public void policiesAreResolvedLive() {
+        backend.assignPrincipalToGroup("hr", "jane");
+        backend.createPolicy(ImmutableIdentityPolicy.builder().id("manage pay").resource("/pay/*").actions(singletonList("increase")).build());
+        backend.assignPolicy("manage pay", "hr");
+        backend.updatePolicy(ImmutableIdentityPolicy.builder().id("manage pay").resource("/pay/*").actions(singletonList("decrease")).build());
+
+        assertEquals(
+                singletonList("decrease"),
+                backend.fetchIdentityPoliciesTransitivelyForPrincipal("jane").get(0).actions().get()
+        );
+        backend.deletePolicy("manage pay");
+        assertTrue(backend.fetchIdentityPoliciesTransitivelyForPrincipal("jane").isEmpty());
+    }
+
+    @Test
+    public void grantsAndRevocationsMergeActions() {
+        backend.grantActions("/documents/1", "jane", new HashSet<>(Arrays.asList("read", "write")));
+        backend.grantActions("/documents/1", "jane", singleton("share"));
+        backend.grantActions("/documents/1", "john", singleton("read"));
+        backend.revokeActions("/documents/1", "jane", singleton("write"));
+
+        final ResourcePolicyAssignment jane = backend.getResourcePolicy("/documents/1").assignments().get().get(0);
+        assertEquals("jane", jane.principal());
+        assertEquals(new HashSet<>(Arrays.asList("read", "share")), new HashSet<>(jane.actions()));
+        assertEquals(2, backend.getResourcePolicies(Arrays.asList("/documents/1", "/documents/2")).get("/documents/1").assignments().get().size());
+        assertNull(backend.getResourcePolicy("/documents/2"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.interfaces.ImmutableGroup;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class CopyOnWriteInMemoryBackendTest {
+
+    private CopyOnWriteInMemoryBackend backend;
+
+    @Before
+    public void setUp() {
+        backend = new CopyOnWriteInMemoryBackend();
+        backend.createGroup(ImmutableGroup.builder().id("hr").name("Human Resources").build());
+        backend.createGroup(ImmutableGroup.builder().id("all employees").name("All Employees").build());
+    }
+
+    @Test
+    public void batchPublishesOnce() {
+        final Backend before = backend.snapshot();
+        backend.batch(b -> {
+            for (int i = 0; i < 100; i++) {
+                b.assignPrincipalToGroup("hr", "user " + i);
+            }
+            b.assignPrincipalToGroup("all employees", "hr", true);
+            // the batch reads its own writes
+            assertEquals(2, b.getGroupMembershipTransitively("user 0").size());
+            // while readers still see the previous version
+            assertTrue(backend.getGroupMembershipTransitively("user 0").isEmpty());
+        });
+        assertNotSame(before, backend.snapshot());
+        assertEquals(100, backend.getAllPrincipalsForGroup("hr").size());
+        assertEquals(2, backend.getGroupMembershipTransitively("user 99").size());
+    }
+
+    @Test
+    public void failedBatchPublishesNothing() {
+        final Backend before = backend.snapshot();
+        try {
+            backend.batch(b -> {
+                b.assignPrincipalToGroup("hr", "jsmith");
+                throw new IllegalArgumentException("abort");
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertSame(before, backend.snapshot());
+        assertTrue(backend.getGroupMembership("jsmith").isEmpty());
+    }
+
+    @Test
+    public void pinnedSnapshotIsUnaffectedByLaterWrites() {
+        backend.grantActions("/books/book1", "jsmith", singleton("read"));
+        final Backend pinned = backend.snapshot();
+        backend.assignPrincipalToGroup("hr", "jsmith");
+        backend.revokeActions("/books/book1", "jsmith", singleton("read"));
+
+        assertTrue(pinned.getGroupMembership("jsmith").isEmpty());
+        assertEquals(
+                singletonList("read"),
+                pinned.getResourcePolicy("/books/book1").assignments().get().get(0).actions()
+        );
+        assertEquals(singletonList("hr"), backend.getGroupMembership("jsmith"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void snapshotRejectsWrites() {
+        backend.snapshot().assignPrincipalToGroup("hr", "jsmith");
+    }
+}
@@ -0,0 +1,109 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import com.erfangc.sac.interfaces.ImmutableGroup;
+import com.erfangc.sac.interfaces.ImmutableIdentityPolicy;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class InMemoryBackendConcurrencyTest {
+
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int ITERATIONS = 2_000;
+
+    @Test
+    public void concurrentWritesAndReads() throws Exception {
+        final InMemoryBackend backend = new InMemoryBackend();
+        // a small shared hierarchy: team i belongs to department i % 2, which both belong to the company
+        backend.createGroup(ImmutableGroup.builder().id("company").name("Company").build());
+        for (int i = 0; i < 2; i++) {
+            backend.createGroup(ImmutableGroup.builder().id("department " + i).name("Department " + i).build());
+        }
+        for (int i = 0; i < WRITERS; i++) {
+            backend.createGroup(ImmutableGroup.builder().id("team " + i).name("Team " + i).build());
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS + 1);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    final String user = "user " + writer + "-" + (i % 50);
+                    final String policy = "policy " + writer + "-" + (i % 10);
+                    backend.createPolicy(
+                            ImmutableIdentityPolicy.builder().id(policy).resource("/r/" + writer + "/*").actions(singletonList("read")).build()
+                    );
+                    backend.assignPolicy(policy, "team " + writer);
+                    backend.assignPrincipalToGroup("team " + writer, user);
+                    backend.grantActions("/shared", user, singleton("read"));
+                    if (i % 3 == 0) {
+                        backend.unassignPrincipalFromGroup("team " + writer, user);
+                        backend.revokeActions("/shared", user, singleton("read"));
+                    }
+                    if (i % 7 == 0) {
+                        backend.deletePolicy(policy);
+                    }
+                }
+                return null;
+            }));
+        }
+        // one writer keeps moving teams between departments and the company while the others work
+        futures.add(executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < ITERATIONS; i++) {
+                final String team = "team " + (i % WRITERS);
+                final String department = "department " + (i % 2);
+                backend.assignPrincipalToGroup(department, team, true);
+                backend.assignPrincipalToGroup("company", department, true);
+                if (i % 2 == 0) {
+                    backend.unassignPrincipalFromGroup(department, team);
+                }
+            }
+            return null;
+        }));
+        for (int r = 0; r < READERS; r++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    final String user = "user " + (i % WRITERS) + "-" + (i % 50);
+                    backend.getGroupMembershipTransitively(user);
+                    assertNotNull(backend.fetchIdentityPoliciesTransitivelyForPrincipal(user));
+                    backend.getResourcePolicy("/shared");
+                    backend.getGroup("team " + (i % WRITERS));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // once quiescent, every user's materialized membership matches a fresh traversal of the group edges
+        for (int w = 0; w < WRITERS; w++) {
+            for (int u = 0; u < 50; u++) {
+                final String user = "user " + w + "-" + u;
+                final Set<String> expected = new HashSet<>();
+                final Deque<String> queue = new ArrayDeque<>(backend.getGroupMembership(user));
+                while (!queue.isEmpty()) {
+                    final String gid = queue.poll();
+                    if (expected.add(gid)) {
+                        queue.addAll(backend.getGroupMembership(gid));
+                    }
+                }
+                assertEquals(user, expected, new HashSet<>(backend.getGroupMembershipTransitively(user)));
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class IntSetTest {
+
+    @Test
+    public void agreesWithHashSet() {
+        final Random random = new Random(42);
+        final IntSet set = new IntSet();
+        final Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            // a narrow range makes removals hit often and probe sequences collide
+            final int value = random.nextInt(512);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (int value = 0; value < 512; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+        final int[] values = set.toArray();
+        Arrays.sort(values);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), values);
+    }
+}
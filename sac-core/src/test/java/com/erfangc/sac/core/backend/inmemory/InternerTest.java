@@ -0,0 +1,21 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class InternerTest {
+
+    @Test
+    public void internerHandsOutDenseIds() {
+        final Interner interner = new Interner();
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, interner.intern("principal " + i));
+        }
+        assertEquals(1234, interner.intern("principal 1234"));
+        assertEquals(1234, interner.find("principal 1234"));
+        assertEquals(-1, interner.find("nobody"));
+        assertEquals("principal 9999", interner.name(9999));
+        assertEquals(10_000, interner.size());
+    }
+}
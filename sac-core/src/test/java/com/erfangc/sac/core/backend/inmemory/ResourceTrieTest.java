@@ -0,0 +1,43 @@
+package com.erfangc.sac.core.backend.inmemory;
+
+import com.erfangc.sac.interfaces.ImmutableResourcePolicy;
+import com.erfangc.sac.interfaces.ResourcePolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceTrieTest {
+
+    private final ResourceTrie trie = new ResourceTrie();
+
+    private void put(String resource) {
+        trie.put(resource, ImmutableResourcePolicy.builder().resource(resource).build());
+    }
+
+    private List<String> ancestors(String resource) {
+        final List<ResourcePolicy> ret = new ArrayList<>();
+        trie.collectAncestors(resource, ret);
+        return ret.stream().map(ResourcePolicy::resource).collect(Collectors.toList());
+    }
+
+    @Test
+    public void ancestorsAreCollectedClosestFirst() {
+        put("/org");
+        put("/org/inventory");
+        put("/org/inventory/widgets/widget1");
+        put("/org/payroll");
+
+        assertEquals(Arrays.asList("/org/inventory", "/org"), ancestors("/org/inventory/widgets/widget1"));
+        assertEquals(Arrays.asList("/org/inventory", "/org"), ancestors("/org/inventory/gadgets/gadget1"));
+        // the resource itself is not its own ancestor
+        assertEquals(Arrays.asList("/org"), ancestors("/org/inventory"));
+        assertTrue(ancestors("/org").isEmpty());
+        assertTrue(ancestors("/elsewhere/org/inventory").isEmpty());
+    }
+}
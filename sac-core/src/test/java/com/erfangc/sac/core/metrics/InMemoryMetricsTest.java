@@ -0,0 +1,46 @@
+package com.erfangc.sac.core.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InMemoryMetricsTest {
+
+    @Test
+    public void instrumentsAreSharedByName() throws InterruptedException {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Counter counter = metrics.counter("events");
+            final Histogram histogram = metrics.histogram("latency.nanos");
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.increment();
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, metrics.count("events"));
+        assertEquals(Long.valueOf(40_000), metrics.counters().get("events"));
+        assertEquals(40_000, metrics.histogramOf("latency.nanos").count());
+        assertEquals(9_999, metrics.histogramOf("latency.nanos").max());
+        assertEquals(0, metrics.count("unknown"));
+        assertNull(metrics.histogramOf("unknown"));
+    }
+
+    @Test
+    public void noop() {
+        final Metrics metrics = Metrics.noop();
+        metrics.counter("events").increment();
+        metrics.histogram("latency.nanos").record(1);
+        assertSame(metrics, Metrics.noop());
+    }
+}
@@ -0,0 +1,51 @@
+package com.erfangc.sac.core.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogLinearHistogramTest {
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue(expected + " ~ " + actual, Math.abs(expected - actual) <= expected * 0.04);
+    }
+
+    @Test
+    public void percentiles() {
+        final LogLinearHistogram histogram = new LogLinearHistogram();
+        for (long i = 1; i <= 1_000_000; i++) {
+            histogram.record(i * 100);
+        }
+        assertEquals(1_000_000, histogram.count());
+        assertEquals(100_000_000, histogram.max());
+        assertClose(50_000_000, histogram.percentile(0.5));
+        assertClose(99_000_000, histogram.percentile(0.99));
+        assertClose(99_900_000, histogram.percentile(0.999));
+        assertEquals(100_000_000, histogram.percentile(1));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        final LogLinearHistogram histogram = new LogLinearHistogram();
+        for (long i = 0; i < 32; i++) {
+            histogram.record(i);
+        }
+        assertEquals(15, histogram.percentile(0.5));
+        assertEquals(31, histogram.percentile(1));
+    }
+
+    @Test
+    public void add() {
+        final LogLinearHistogram low = new LogLinearHistogram();
+        final LogLinearHistogram high = new LogLinearHistogram();
+        for (int i = 0; i < 1000; i++) {
+            low.record(1_000);
+            high.record(Long.MAX_VALUE / 2);
+        }
+        low.add(high);
+        assertEquals(2000, low.count());
+        assertClose(1_000, low.percentile(0.5));
+        assertClose(Long.MAX_VALUE / 2, low.percentile(0.9));
+    }
+}
@@ -0,0 +1,22 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.AsyncTestBase;
+import com.erfangc.sac.core.backend.AsyncBackendAdapter;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import org.junit.Before;
+
+public class AsyncHierarchicalSimpleAccessControlImplTest extends AsyncTestBase {
+
+    @Before
+    public void setUp() {
+        final InMemoryBackend backend = new InMemoryBackend();
+        final SimpleAccessControlOptions options = ImmutableSimpleAccessControlOptions
+                .builder()
+                .hierarchicalResourcePolicies(true)
+                .build();
+        sac = new SimpleAccessControlImpl(backend, options);
+        asyncSac = new AsyncSimpleAccessControlImpl(new AsyncBackendAdapter(backend, Runnable::run), options);
+        initializePolicyBackendStates();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.AsyncTestBase;
+import com.erfangc.sac.core.backend.AsyncBackendAdapter;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import org.junit.Before;
+
+public class AsyncSimpleAccessControlImplTest extends AsyncTestBase {
+
+    @Before
+    public void setUp() {
+        final InMemoryBackend backend = new InMemoryBackend();
+        sac = new SimpleAccessControlImpl(backend);
+        asyncSac = new AsyncSimpleAccessControlImpl(new AsyncBackendAdapter(backend, Runnable::run));
+        initializePolicyBackendStates();
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import com.erfangc.sac.interfaces.AuthorizationResponse;
+import com.erfangc.sac.interfaces.AuthorizationStatus;
+import com.erfangc.sac.interfaces.ImmutableAuthorizationRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+
+public class CachedSimpleAccessControlImplTest extends BackendTestBase {
+
+    private SimpleAccessControlImpl impl;
+
+    @Before
+    public void setUp() {
+        impl = new SimpleAccessControlImpl(
+                new InMemoryBackend(),
+                ImmutableSimpleAccessControlOptions.builder().decisionCacheEnabled(true).build()
+        );
+        sac = impl;
+        initializePolicyBackendStates();
+    }
+
+    @Test
+    public void repeatedDecisionsAreServedFromTheCache() {
+        sac.assignPrincipalToGroup("network admins", "john");
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("1")
+                .action("login")
+                .resource("/org/servers/server1")
+                .principal("john")
+                .build();
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+        final AuthorizationResponse cached = sac.authorize(request.withId("2"));
+        assertEquals(AuthorizationStatus.Permitted, cached.status());
+        assertEquals("2", cached.requestId());
+
+        final DecisionCacheStats stats = impl.decisionCacheStats().get();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.size());
+    }
+
+    @Test
+    public void mutationsInvalidateOnlyDependentDecisions() {
+        sac.assignPrincipalToGroup("network admins", "john");
+        sac.assignPrincipalToGroup("hr", "jane");
+        final ImmutableAuthorizationRequest login = ImmutableAuthorizationRequest
+                .builder()
+                .id("1")
+                .action("login")
+                .resource("/org/servers/server1")
+                .principal("john")
+                .build();
+        final ImmutableAuthorizationRequest pay = login.withPrincipal("jane").withAction("increase").withResource("/org/employees/john/pay");
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(login).status());
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(pay).status());
+
+        // deleting the server login policy only affects john
+        sac.deletePolicy("server login");
+        assertEquals(1, impl.decisionCacheStats().get().invalidations());
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(login).status());
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(pay).status());
+
+        // a change to a group higher up reaches jane through her transitive membership
+        final ImmutableAuthorizationRequest read = pay.withAction("read").withResource("/org/employees/john");
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(read).status());
+        sac.unAssignPolicy("employee read only", "all employees");
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(read).status());
+
+        // granting on the resource is picked up as well
+        sac.grantActions("/org/servers/server1", "john", singleton("login"));
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(login).status());
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.GroupClosureTestBase;
+import com.erfangc.sac.core.backend.inmemory.CompactInMemoryBackend;
+import org.junit.Before;
+
+public class CompactGroupClosureTest extends GroupClosureTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(new CompactInMemoryBackend());
+    }
+
+}
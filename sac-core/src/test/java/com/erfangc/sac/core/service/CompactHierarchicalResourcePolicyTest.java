@@ -0,0 +1,20 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.HierarchicalResourcePolicyTestBase;
+import com.erfangc.sac.core.backend.inmemory.CompactInMemoryBackend;
+import org.junit.Before;
+
+public class CompactHierarchicalResourcePolicyTest extends HierarchicalResourcePolicyTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(
+                new CompactInMemoryBackend(),
+                ImmutableSimpleAccessControlOptions
+                        .builder()
+                        .hierarchicalResourcePolicies(true)
+                        .build()
+        );
+    }
+
+}
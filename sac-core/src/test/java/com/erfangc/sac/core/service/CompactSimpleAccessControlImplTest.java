@@ -0,0 +1,15 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.core.backend.inmemory.CompactInMemoryBackend;
+import org.junit.Before;
+
+public class CompactSimpleAccessControlImplTest extends BackendTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(new CompactInMemoryBackend());
+        initializePolicyBackendStates();
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.HierarchicalResourcePolicyTestBase;
+import com.erfangc.sac.core.backend.inmemory.CopyOnWriteInMemoryBackend;
+import org.junit.Before;
+
+public class CopyOnWriteHierarchicalResourcePolicyTest extends HierarchicalResourcePolicyTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(
+                new CopyOnWriteInMemoryBackend(),
+                ImmutableSimpleAccessControlOptions
+                        .builder()
+                        .hierarchicalResourcePolicies(true)
+                        .decisionIndexEnabled(true)
+                        .build()
+        );
+    }
+
+}
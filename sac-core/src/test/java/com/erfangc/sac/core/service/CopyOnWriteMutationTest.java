@@ -0,0 +1,17 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.MutationTestBase;
+import com.erfangc.sac.core.backend.inmemory.CopyOnWriteInMemoryBackend;
+import org.junit.Before;
+
+public class CopyOnWriteMutationTest extends MutationTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(
+                new CopyOnWriteInMemoryBackend(),
+                ImmutableSimpleAccessControlOptions.builder().decisionIndexEnabled(true).build()
+        );
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.core.backend.inmemory.CopyOnWriteInMemoryBackend;
+import org.junit.Before;
+
+public class CopyOnWriteSimpleAccessControlImplTest extends BackendTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(new CopyOnWriteInMemoryBackend());
+        initializePolicyBackendStates();
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.interfaces.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class DecisionCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private DecisionCache cache;
+
+    private static AuthorizationRequest request(String principal, String resource) {
+        return ImmutableAuthorizationRequest
+                .builder()
+                .id("request")
+                .principal(principal)
+                .resource(resource)
+                .action("read")
+                .build();
+    }
+
+    private static AuthorizationResponse permitted() {
+        return ImmutableAuthorizationResponse.builder().requestId("request").status(AuthorizationStatus.Permitted).build();
+    }
+
+    @Before
+    public void setUp() {
+        cache = new DecisionCache(10_000, 1_000, now::get);
+    }
+
+    @Test
+    public void expiresAfterTtl() {
+        final AuthorizationRequest request = request("john", "/books/book1");
+        cache.put(request, permitted(), emptyList(), emptyList(), cache.stamp());
+        now.addAndGet(999_000_000L);
+        assertNotNull(cache.get(request));
+        now.addAndGet(2_000_000L);
+        assertNull(cache.get(request));
+        assertEquals(1, cache.stats().evictions());
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondMaxWeight() {
+        // each entry weighs a few hundred bytes, so 10_000 bytes hold a few dozen of them
+        for (int i = 0; i < 100; i++) {
+            cache.put(request("john", "/books/book" + i), permitted(), emptyList(), emptyList(), cache.stamp());
+            // keep the first entry hot
+            assertNotNull(cache.get(request("john", "/books/book0")));
+        }
+        final DecisionCacheStats stats = cache.stats();
+        assertTrue(stats.weight() <= 10_000);
+        assertTrue(stats.evictions() > 0);
+        assertEquals(100 - stats.evictions(), stats.size());
+        assertNotNull(cache.get(request("john", "/books/book0")));
+        assertNull(cache.get(request("john", "/books/book1")));
+    }
+
+    @Test
+    public void invalidatesByDependency() {
+        final AuthorizationRequest john = request("john", "/books/book1");
+        final AuthorizationRequest jane = request("jane", "/books/book2");
+        final AuthorizationRequest jack = request("jack", "/books/book3");
+        cache.put(john, permitted(), asList("hr", "all employees"), emptyList(), cache.stamp());
+        cache.put(jane, permitted(), singletonList("network admins"), singletonList("server login"), cache.stamp());
+        cache.put(jack, permitted(), emptyList(), emptyList(), cache.stamp());
+
+        cache.invalidatePrincipal("all employees");
+        assertNull(cache.get(john));
+        assertNotNull(cache.get(jane));
+
+        cache.invalidatePolicy("server login");
+        assertNull(cache.get(jane));
+        assertNotNull(cache.get(jack));
+
+        cache.invalidateResource("/books/book3");
+        assertNull(cache.get(jack));
+        assertEquals(3, cache.stats().invalidations());
+        assertEquals(0, cache.stats().weight());
+    }
+
+    @Test
+    public void decisionsRacingWithMutationsAreNotCached() {
+        final AuthorizationRequest request = request("john", "/books/book1");
+        final long stamp = cache.stamp();
+        cache.invalidatePrincipal("hr");
+        cache.put(request, permitted(), singletonList("hr"), emptyList(), stamp);
+        assertNull(cache.get(request));
+    }
+
+    @Test
+    public void decisionsRacingWithUnrelatedMutationsAreCached() {
+        final AuthorizationRequest request = request("john", "/books/book1");
+        final long stamp = cache.stamp();
+        cache.invalidatePrincipal("someone else");
+        cache.invalidatePolicy("server login");
+        cache.invalidateResource("/books/book2");
+        cache.put(request, permitted(), singletonList("hr"), singletonList("read books"), stamp);
+        assertNotNull(cache.get(request));
+    }
+}
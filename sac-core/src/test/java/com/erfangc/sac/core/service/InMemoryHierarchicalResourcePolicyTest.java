@@ -0,0 +1,21 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.HierarchicalResourcePolicyTestBase;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import org.junit.Before;
+
+public class InMemoryHierarchicalResourcePolicyTest extends HierarchicalResourcePolicyTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(
+                new InMemoryBackend(),
+                ImmutableSimpleAccessControlOptions
+                        .builder()
+                        .hierarchicalResourcePolicies(true)
+                        .decisionCacheEnabled(true)
+                        .build()
+        );
+    }
+
+}
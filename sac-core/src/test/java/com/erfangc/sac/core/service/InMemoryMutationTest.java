@@ -0,0 +1,17 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.MutationTestBase;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import org.junit.Before;
+
+public class InMemoryMutationTest extends MutationTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(
+                new InMemoryBackend(),
+                ImmutableSimpleAccessControlOptions.builder().decisionCacheEnabled(true).build()
+        );
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.StatefulTestBase;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import org.junit.Before;
+
+public class IndexedSimpleAccessControlImplStatefulTest extends StatefulTestBase {
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(
+                new InMemoryBackend(),
+                ImmutableSimpleAccessControlOptions.builder().decisionIndexEnabled(true).build()
+        );
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.core.backend.Backend;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import com.erfangc.sac.interfaces.AuthorizationStatus;
+import com.erfangc.sac.interfaces.ImmutableAuthorizationRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class IndexedSimpleAccessControlImplTest extends BackendTestBase {
+
+    private final AtomicInteger backendCalls = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(
+                countingBackend(),
+                ImmutableSimpleAccessControlOptions.builder().decisionIndexEnabled(true).build()
+        );
+        initializePolicyBackendStates();
+    }
+
+    private Backend countingBackend() {
+        final InMemoryBackend target = new InMemoryBackend();
+        return (Backend) Proxy.newProxyInstance(
+                Backend.class.getClassLoader(),
+                new Class[]{Backend.class},
+                (proxy, method, args) -> {
+                    backendCalls.incrementAndGet();
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+        );
+    }
+
+    @Test
+    public void steadyStateMakesNoBackendCalls() {
+        sac.assignPrincipalToGroup("network admins", "john");
+        sac.grantActions("/books/book1", "john", singleton("read"));
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("abc")
+                .action("login")
+                .resource("/org/servers/server1")
+                .principal("john")
+                .build();
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request.withResource("/books/book1").withAction("read")).status());
+
+        final int calls = backendCalls.get();
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request).status());
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(request.withResource("/books/book1").withAction("read")).status());
+        assertEquals(calls, backendCalls.get());
+
+        // a mutation touching john's group is picked up by the next decision
+        sac.unassignPrincipalFromGroup("network admins", "john");
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(request).status());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPrincipal() {
+        sac = new SimpleAccessControlImpl(
+                countingBackend(),
+                ImmutableSimpleAccessControlOptions
+                        .builder()
+                        .decisionIndexEnabled(true)
+                        .decisionIndexMaxPrincipals(2)
+                        .build()
+        );
+        initializePolicyBackendStates();
+        final ImmutableAuthorizationRequest request = ImmutableAuthorizationRequest
+                .builder()
+                .id("abc")
+                .action("login")
+                .resource("/org/servers/server1")
+                .principal("john")
+                .build();
+        sac.authorize(request);
+        sac.authorize(request.withPrincipal("jane"));
+        // touching john makes jane the least recently used principal
+        sac.authorize(request);
+        sac.authorize(request.withPrincipal("bob"));
+
+        final int calls = backendCalls.get();
+        sac.authorize(request);
+        assertEquals(calls, backendCalls.get());
+
+        sac.authorize(request.withPrincipal("jane"));
+        assertNotEquals(calls, backendCalls.get());
+    }
+
+}
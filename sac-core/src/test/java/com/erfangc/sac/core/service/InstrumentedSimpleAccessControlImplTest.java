@@ -0,0 +1,71 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import com.erfangc.sac.core.metrics.InMemoryMetrics;
+import com.erfangc.sac.core.metrics.InstrumentedBackend;
+import com.erfangc.sac.interfaces.AuthorizationStatus;
+import com.erfangc.sac.interfaces.ImmutableAuthorizationRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InstrumentedSimpleAccessControlImplTest extends BackendTestBase {
+
+    private InMemoryMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new InMemoryMetrics();
+        sac = new SimpleAccessControlImpl(
+                new InstrumentedBackend(new InMemoryBackend(), metrics),
+                ImmutableSimpleAccessControlOptions.builder().metrics(metrics).build()
+        );
+        initializePolicyBackendStates();
+    }
+
+    @Test
+    public void decisionsAreMeasured() {
+        sac.assignPrincipalToGroup("hr", "jane");
+        sac.grantActions("/org/reports/q1", "jane", singleton("read"));
+        final ImmutableAuthorizationRequest pay = ImmutableAuthorizationRequest
+                .builder()
+                .id("1")
+                .action("increase")
+                .resource("/org/employees/john/pay")
+                .principal("jane")
+                .build();
+        final ImmutableAuthorizationRequest report = pay.withAction("read").withResource("/org/reports/q1");
+        final ImmutableAuthorizationRequest login = pay.withAction("login").withResource("/org/servers/server1");
+
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(pay).status());
+        assertEquals(AuthorizationStatus.Permitted, sac.authorize(report).status());
+        assertEquals(AuthorizationStatus.Denied, sac.authorize(login).status());
+        sac.authorizeAll(Arrays.asList(pay, report, login));
+
+        assertEquals(3, metrics.histogramOf("sac.authorize.nanos").count());
+        assertEquals(1, metrics.histogramOf("sac.authorizeAll.nanos").count());
+        assertEquals(4, metrics.count("sac.authorize.permitted"));
+        assertEquals(2, metrics.count("sac.authorize.denied"));
+        // the report is granted through its resource policy, the identity policies of jane are never needed for it
+        assertEquals(2, metrics.count("sac.resourcePolicy.shortCircuit"));
+        assertEquals(4, metrics.histogramOf("sac.identityPolicies.evaluated").count());
+        // jane holds the manage pay policy through hr and the employee read only one through all employees
+        assertEquals(2, metrics.histogramOf("sac.identityPolicies.evaluated").max());
+        // groups select the fields read from a resource policy, identity policies are only needed unless one permits,
+        // and a batch looks each up at most once per principal
+        assertEquals(4, metrics.histogramOf("sac.groups.fetch.nanos").count());
+        assertEquals(3, metrics.histogramOf("sac.identityPolicies.fetch.nanos").count());
+        assertTrue(metrics.histogramOf("sac.authorize.nanos").percentile(0.99) > 0);
+
+        assertEquals(1, metrics.histogramOf("sac.backend.grantActions.nanos").count());
+        assertEquals(4, metrics.histogramOf("sac.backend.getGroupMembershipTransitively.nanos").count());
+        assertEquals(0, metrics.histogramOf("sac.backend.getResourcePolicy.nanos").count());
+        assertEquals(4, metrics.histogramOf("sac.backend.getResourcePolicies.nanos").count());
+    }
+}
@@ -0,0 +1,37 @@
+package com.erfangc.sac.core.service;
+
+import org.junit.Test;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InvalidationLogTest {
+
+    @Test
+    public void onlyDependenciesInvalidatedSinceCount() {
+        final InvalidationLog log = new InvalidationLog(10);
+        log.invalidatePolicy("before");
+        final long stamp = log.stamp();
+        log.invalidatePrincipal("jane");
+        assertTrue(log.invalidatedSince(stamp, singletonList("jane"), emptyList(), emptyList()));
+        assertFalse(log.invalidatedSince(stamp, singletonList("john"), singletonList("before"), emptyList()));
+        // principals, policies and resources do not share ids
+        assertFalse(log.invalidatedSince(stamp, emptyList(), singletonList("jane"), singletonList("jane")));
+    }
+
+    @Test
+    public void forgottenInvalidationsCountForEverything() {
+        final InvalidationLog log = new InvalidationLog(2);
+        final long stamp = log.stamp();
+        log.invalidateResource("/books/book1");
+        log.invalidateResource("/books/book2");
+        assertFalse(log.invalidatedSince(stamp, emptyList(), emptyList(), singletonList("/books/book3")));
+        log.invalidateResource("/books/book3");
+        log.invalidateResource("/books/book4");
+        // /books/book1 is no longer remembered, so nothing read before it was invalidated can be trusted
+        assertTrue(log.invalidatedSince(stamp, singletonList("john"), emptyList(), emptyList()));
+        assertFalse(log.invalidatedSince(log.stamp(), singletonList("john"), emptyList(), emptyList()));
+    }
+}
@@ -0,0 +1,99 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.interfaces.IdentityPolicy;
+import com.erfangc.sac.interfaces.ImmutableIdentityPolicy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+
+public class PolicyTrieTest {
+
+    private static IdentityPolicy policy(String id, String resource, String... actions) {
+        return ImmutableIdentityPolicy
+                .builder()
+                .id(id)
+                .resource(resource)
+                .actions(asList(actions))
+                .build();
+    }
+
+    private static Set<String> matchedIds(PolicyTrie trie, String resource, String action) {
+        return trie.match(resource, action).stream().map(leaf -> leaf.policy().id()).collect(toSet());
+    }
+
+    @Test
+    public void match() {
+        final PolicyTrie trie = PolicyTrie.build(
+                asList(
+                        policy("p1", "/hr/salaries/john", "increase"),
+                        policy("p2", "/hr/*/john", "*"),
+                        policy("p3", "/hr/birthdays", "read")
+                ),
+                new ResourcePatternCache()
+        );
+        assertEquals(3, trie.size());
+        assertEquals(new HashSet<>(asList("p1", "p2")), matchedIds(trie, "/hr/salaries/john", "increase"));
+        assertEquals(singleton("p2"), matchedIds(trie, "/hr/salaries/john", "decrease"));
+        assertTrue(matchedIds(trie, "/hr/birthdays", "write").isEmpty());
+    }
+
+    @Test
+    public void wildcardSpansMultipleSegments() {
+        final PolicyTrie trie = PolicyTrie.build(
+                asList(policy("p1", "/org/employees/*", "read"), policy("p2", "*", "login")),
+                new ResourcePatternCache()
+        );
+        assertFalse(matchedIds(trie, "/org/employees/jsmith/pay", "read").isEmpty());
+        assertFalse(matchedIds(trie, "/org/employees/", "read").isEmpty());
+        assertTrue(matchedIds(trie, "/org/employees", "read").isEmpty());
+        assertFalse(matchedIds(trie, "", "login").isEmpty());
+    }
+
+    @Test
+    public void regexMetaCharactersFallBackToPattern() {
+        final PolicyTrie trie = PolicyTrie.build(
+                singletonList(policy("p1", "/documents/my-document.txt", "read")),
+                new ResourcePatternCache()
+        );
+        assertFalse(matchedIds(trie, "/documents/my-document.txt", "read").isEmpty());
+        assertTrue(matchedIds(trie, "/documents/other.txt", "read").isEmpty());
+    }
+
+    @Test
+    public void agreesWithRegexTranslation() {
+        final Random random = new Random(42);
+        final String[] segments = {"", "a", "b", "c", "*"};
+        final ResourcePatternCache patternCache = new ResourcePatternCache();
+        for (int run = 0; run < 2000; run++) {
+            final String resource = randomPath(random, segments);
+            final String requested = randomPath(random, new String[]{"", "a", "b", "c"});
+            final List<IdentityPolicy> policies = new ArrayList<>();
+            policies.add(policy("p", resource, "read"));
+            final PolicyTrie trie = PolicyTrie.build(policies, patternCache);
+            final boolean expected = requested.matches(ResourcePatternCache.toRegex(resource));
+            assertEquals(resource + " vs " + requested, expected, !trie.match(requested, "read").isEmpty());
+        }
+    }
+
+    private static String randomPath(Random random, String[] segments) {
+        final int length = random.nextInt(5);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0 || random.nextBoolean()) {
+                sb.append('/');
+            }
+            sb.append(segments[random.nextInt(segments.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.erfangc.sac.core.service;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class ResourcePatternCacheTest {
+
+    @Test
+    public void get() {
+        final ResourcePatternCache cache = new ResourcePatternCache();
+        final Pattern pattern = cache.get("/hr/*/john");
+        assertTrue(pattern.matcher("/hr/salaries/john").matches());
+        assertFalse(pattern.matcher("/hr/salaries/jack").matches());
+        assertSame(pattern, cache.get("/hr/*/john"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final ResourcePatternCache cache = new ResourcePatternCache(2);
+        final Pattern first = cache.get("/a/*");
+        cache.get("/b/*");
+        // touch the first pattern so the second becomes the eldest entry
+        cache.get("/a/*");
+        cache.get("/c/*");
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get("/a/*"));
+    }
+
+    @Test
+    public void invalidate() {
+        final ResourcePatternCache cache = new ResourcePatternCache();
+        final Pattern pattern = cache.get("/a/*");
+        cache.invalidate("/a/*");
+        assertEquals(0, cache.size());
+        assertNotSame(pattern, cache.get("/a/*"));
+    }
+}
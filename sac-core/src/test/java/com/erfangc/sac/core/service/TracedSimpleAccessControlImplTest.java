@@ -0,0 +1,97 @@
+package com.erfangc.sac.core.service;
+
+import com.erfangc.sac.backend.tests.BackendTestBase;
+import com.erfangc.sac.core.backend.inmemory.InMemoryBackend;
+import com.erfangc.sac.interfaces.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class TracedSimpleAccessControlImplTest extends BackendTestBase {
+
+    private final ImmutableAuthorizationRequest pay = ImmutableAuthorizationRequest
+            .builder()
+            .id("1")
+            .action("increase")
+            .resource("/org/employees/john/pay")
+            .principal("jane")
+            .trace(true)
+            .build();
+
+    @Before
+    public void setUp() {
+        sac = new SimpleAccessControlImpl(new InMemoryBackend(), ImmutableSimpleAccessControlOptions.builder().build());
+        initializePolicyBackendStates();
+        sac.assignPrincipalToGroup("hr", "jane");
+    }
+
+    @Test
+    public void resourcePolicyDecisionIsTraced() {
+        sac.grantActions("/org/reports/q1", "hr", singleton("read"));
+        final AuthorizationResponse response = sac.authorize(pay.withAction("read").withResource("/org/reports/q1"));
+
+        assertEquals(AuthorizationStatus.Permitted, response.status());
+        final DecisionTrace trace = response.trace().orElseThrow(AssertionError::new);
+        assertTrue(trace.resourcePolicyFound());
+        assertEquals("hr", trace.resourcePolicyPrincipal().orElse(null));
+        assertTrue(trace.groups().containsAll(Arrays.asList("hr", "all employees")));
+        // identity policies are never looked at once the resource policy permits
+        assertEquals(emptyList(), trace.policiesConsidered());
+        assertTrue(trace.totalNanos() >= trace.resourcePolicyNanos() + trace.groupsNanos());
+    }
+
+    @Test
+    public void identityPolicyDecisionIsTraced() {
+        sac.createPolicy(
+                ImmutableIdentityPolicy
+                        .builder()
+                        .id("no raise for john")
+                        .effectDeny(true)
+                        .actions(singletonList("increase"))
+                        .resource("/org/employees/john/pay")
+                        .build()
+        );
+        sac.assignPolicy("no raise for john", "jane");
+
+        final AuthorizationResponse response = sac.authorize(pay);
+
+        assertEquals(AuthorizationStatus.Denied, response.status());
+        final DecisionTrace trace = response.trace().orElseThrow(AssertionError::new);
+        assertFalse(trace.resourcePolicyFound());
+        assertEquals(
+                Arrays.asList("employee read only", "manage pay", "no raise for john"),
+                trace.policiesConsidered()
+        );
+        assertEquals(singletonList("manage pay"), trace.policiesMatched());
+        assertEquals(singletonList("no raise for john"), trace.denyOverrides());
+    }
+
+    @Test
+    public void untracedRequestsCarryNoTrace() {
+        assertFalse(sac.authorize(pay.withTrace(false)).trace().isPresent());
+    }
+
+    @Test
+    public void sampledRequestsAreTraced() {
+        sac = new SimpleAccessControlImpl(
+                new InMemoryBackend(),
+                ImmutableSimpleAccessControlOptions.builder().traceSampleRate(1).decisionCacheEnabled(true).build()
+        );
+        initializePolicyBackendStates();
+        sac.assignPrincipalToGroup("hr", "jane");
+
+        final List<AuthorizationResponse> responses = sac.authorizeAll(Arrays.asList(pay.withTrace(false), pay.withTrace(false)));
+
+        for (AuthorizationResponse response : responses) {
+            assertEquals(AuthorizationStatus.Permitted, response.status());
+            assertEquals(singletonList("manage pay"), response.trace().orElseThrow(AssertionError::new).policiesMatched());
+        }
+    }
+}
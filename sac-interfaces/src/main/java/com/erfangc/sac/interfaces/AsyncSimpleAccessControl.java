@@ -0,0 +1,29 @@
+package com.erfangc.sac.interfaces;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The non-blocking counterpart of {@link SimpleAccessControl} for making authorization decisions. Implementations must not block
+ * the calling thread while waiting on their storage, which allows a small pool of threads to keep many decisions in flight
+ * <p>
+ * Administrative operations (managing groups, policies and grants) remain on {@link SimpleAccessControl}
+ */
+public interface AsyncSimpleAccessControl {
+
+    /**
+     * Asynchronously handle an authorization task by accepting a {@link AuthorizationRequest} and producing a {@link AuthorizationResponse}
+     *
+     * @param request the {@link AuthorizationRequest} object
+     * @return a future completed with the {@link AuthorizationResponse}
+     */
+    CompletableFuture<AuthorizationResponse> authorize(AuthorizationRequest request);
+
+    /**
+     * Asynchronously authorize a batch of {@link AuthorizationRequest}s, see {@link SimpleAccessControl#authorizeAll(List)}
+     *
+     * @param requests the {@link AuthorizationRequest} objects
+     * @return a future completed with one {@link AuthorizationResponse} per request, in the same order as the requests
+     */
+    CompletableFuture<List<AuthorizationResponse>> authorizeAll(List<AuthorizationRequest> requests);
+}
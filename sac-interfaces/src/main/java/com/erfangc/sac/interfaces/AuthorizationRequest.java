@@ -15,4 +15,13 @@ public interface AuthorizationRequest {
     String resource();
 
     String action();
+
+    /**
+     * When set, the response carries a {@link DecisionTrace} explaining how the decision was made. Tracing bypasses
+     * any decision cache, so that the explanation reflects the current state
+     */
+    @Value.Default
+    default boolean trace() {
+        return false;
+    }
 }
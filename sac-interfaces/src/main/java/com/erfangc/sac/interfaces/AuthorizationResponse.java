@@ -18,4 +18,9 @@ public interface AuthorizationResponse {
     Optional<String> remarks();
 
     List<Attribute> attributes();
+
+    /**
+     * Present if the request asked for a trace, or was sampled for one
+     */
+    Optional<DecisionTrace> trace();
 }
@@ -0,0 +1,68 @@
+package com.erfangc.sac.interfaces;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link DecisionTrace} explains how an authorization decision was reached and where its time went. Phases that were
+ * not needed (i.e. identity policies once a resource policy permitted the request) are left empty and take no time
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableDecisionTrace.class)
+@JsonDeserialize(builder = ImmutableDecisionTrace.Builder.class)
+public interface DecisionTrace {
+
+    /**
+     * Whether a resource policy is attached to the requested resource
+     */
+    boolean resourcePolicyFound();
+
+    /**
+     * The principal or group whose assignment on the resource policy permitted the request, which short circuits the
+     * evaluation of identity policies
+     */
+    Optional<String> resourcePolicyPrincipal();
+
+    /**
+     * The groups the principal transitively belongs to, checked against the assignments of the resource policy. Only
+     * filled when a resource policy is found: otherwise the groups are resolved by the backend along with the identity
+     * policies, and only show through {@link #policiesConsidered()}
+     */
+    List<String> groups();
+
+    /**
+     * Every identity policy of the principal, directly or through its groups, that was weighed
+     */
+    List<String> policiesConsidered();
+
+    /**
+     * The identity policies that permit the requested action on the requested resource
+     */
+    List<String> policiesMatched();
+
+    /**
+     * The identity policies that deny the requested action on the requested resource, any of which overrides every
+     * policy that permits it
+     */
+    List<String> denyOverrides();
+
+    long resourcePolicyNanos();
+
+    @Value.Default
+    default long groupsNanos() {
+        return 0;
+    }
+
+    @Value.Default
+    default long identityPoliciesNanos() {
+        return 0;
+    }
+
+    long evaluationNanos();
+
+    long totalNanos();
+}
@@ -0,0 +1,167 @@
+package com.erfangc.sac.interfaces;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A single write, equivalent to calling the {@link SimpleAccessControl} method of the same name, to be applied along
+ * with others through {@link SimpleAccessControl#applyMutations(java.util.List)}. Use the static factories, which set
+ * exactly the attributes the given {@link MutationType} requires
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableMutation.class)
+@JsonDeserialize(builder = ImmutableMutation.Builder.class)
+public interface Mutation {
+
+    MutationType type();
+
+    /**
+     * The group to create or update
+     */
+    Optional<Group> group();
+
+    /**
+     * The group to delete, or to assign a principal to or unassign it from
+     */
+    Optional<String> groupId();
+
+    /**
+     * The principal (or group) to assign, unassign, assign a policy to or grant actions to
+     */
+    Optional<String> principalId();
+
+    @Value.Default
+    default boolean principalIsGroup() {
+        return false;
+    }
+
+    /**
+     * The policy to create or update
+     */
+    Optional<IdentityPolicy> policy();
+
+    /**
+     * The policy to delete, assign or unassign
+     */
+    Optional<String> policyId();
+
+    /**
+     * The resource to grant actions on or revoke them from
+     */
+    Optional<String> resource();
+
+    Set<String> actions();
+
+    @Value.Check
+    default void check() {
+        final String missing;
+        switch (type()) {
+            case CreateGroup:
+            case UpdateGroup:
+                missing = group().isPresent() ? null : "group";
+                break;
+            case DeleteGroup:
+                missing = groupId().isPresent() ? null : "groupId";
+                break;
+            case AssignPrincipalToGroup:
+            case UnassignPrincipalFromGroup:
+                missing = !groupId().isPresent() ? "groupId" : !principalId().isPresent() ? "principalId" : null;
+                break;
+            case CreatePolicy:
+            case UpdatePolicy:
+                missing = policy().isPresent() ? null : "policy";
+                break;
+            case DeletePolicy:
+                missing = policyId().isPresent() ? null : "policyId";
+                break;
+            case AssignPolicy:
+            case UnAssignPolicy:
+                missing = !policyId().isPresent() ? "policyId" : !principalId().isPresent() ? "principalId" : null;
+                break;
+            default:
+                missing = !resource().isPresent() ? "resource" : !principalId().isPresent() ? "principalId" : null;
+        }
+        if (missing != null) {
+            throw new IllegalStateException(type() + " requires " + missing);
+        }
+    }
+
+    static Mutation createGroup(Group group) {
+        return ImmutableMutation.builder().type(MutationType.CreateGroup).group(group).build();
+    }
+
+    static Mutation updateGroup(Group group) {
+        return ImmutableMutation.builder().type(MutationType.UpdateGroup).group(group).build();
+    }
+
+    static Mutation deleteGroup(String groupId) {
+        return ImmutableMutation.builder().type(MutationType.DeleteGroup).groupId(groupId).build();
+    }
+
+    static Mutation assignPrincipalToGroup(String groupId, String principalId) {
+        return assignPrincipalToGroup(groupId, principalId, false);
+    }
+
+    static Mutation assignPrincipalToGroup(String groupId, String principalId, boolean principalIsGroup) {
+        return ImmutableMutation
+                .builder()
+                .type(MutationType.AssignPrincipalToGroup)
+                .groupId(groupId)
+                .principalId(principalId)
+                .principalIsGroup(principalIsGroup)
+                .build();
+    }
+
+    static Mutation unassignPrincipalFromGroup(String groupId, String principalId) {
+        return ImmutableMutation
+                .builder()
+                .type(MutationType.UnassignPrincipalFromGroup)
+                .groupId(groupId)
+                .principalId(principalId)
+                .build();
+    }
+
+    static Mutation createPolicy(IdentityPolicy identityPolicy) {
+        return ImmutableMutation.builder().type(MutationType.CreatePolicy).policy(identityPolicy).build();
+    }
+
+    static Mutation updatePolicy(IdentityPolicy identityPolicy) {
+        return ImmutableMutation.builder().type(MutationType.UpdatePolicy).policy(identityPolicy).build();
+    }
+
+    static Mutation deletePolicy(String policyId) {
+        return ImmutableMutation.builder().type(MutationType.DeletePolicy).policyId(policyId).build();
+    }
+
+    static Mutation assignPolicy(String policyId, String principalId) {
+        return ImmutableMutation.builder().type(MutationType.AssignPolicy).policyId(policyId).principalId(principalId).build();
+    }
+
+    static Mutation unAssignPolicy(String policyId, String principalId) {
+        return ImmutableMutation.builder().type(MutationType.UnAssignPolicy).policyId(policyId).principalId(principalId).build();
+    }
+
+    static Mutation grantActions(String resource, String principal, Set<String> actions) {
+        return ImmutableMutation
+                .builder()
+                .type(MutationType.GrantActions)
+                .resource(resource)
+                .principalId(principal)
+                .actions(actions)
+                .build();
+    }
+
+    static Mutation revokeActions(String resource, String principal, Set<String> actions) {
+        return ImmutableMutation
+                .builder()
+                .type(MutationType.RevokeActions)
+                .resource(resource)
+                .principalId(principal)
+                .actions(actions)
+                .build();
+    }
+}
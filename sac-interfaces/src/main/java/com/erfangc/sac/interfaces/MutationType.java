@@ -0,0 +1,20 @@
+package com.erfangc.sac.interfaces;
+
+/**
+ * The write operations of {@link SimpleAccessControl} that can be batched through
+ * {@link SimpleAccessControl#applyMutations(java.util.List)}, see {@link Mutation} for the attributes each one requires
+ */
+public enum MutationType {
+    CreateGroup,
+    UpdateGroup,
+    DeleteGroup,
+    AssignPrincipalToGroup,
+    UnassignPrincipalFromGroup,
+    CreatePolicy,
+    UpdatePolicy,
+    DeletePolicy,
+    AssignPolicy,
+    UnAssignPolicy,
+    GrantActions,
+    RevokeActions
+}
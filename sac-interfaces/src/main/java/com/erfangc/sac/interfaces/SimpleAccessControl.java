@@ -130,6 +130,15 @@ public interface SimpleAccessControl {
 
     void unAssignPolicy(String policyId, String principalId);
 
+    /**
+     * Apply the given writes, in order, as a single unit. This is considerably cheaper than calling the equivalent methods
+     * one at a time when onboarding or reorganizing many principals at once: the backend applies the whole batch under one
+     * lock, snapshot or transaction, and cached decisions are invalidated once for the batch
+     *
+     * @param mutations the {@link Mutation}s to apply
+     */
+    void applyMutations(List<Mutation> mutations);
+
     /**
      * The primary method that handles authorization tasks by accepting a {@link AuthorizationRequest} and producing a {@link AuthorizationResponse}
      *
@@ -138,6 +147,16 @@ public interface SimpleAccessControl {
      */
     AuthorizationResponse authorize(AuthorizationRequest request);
 
+    /**
+     * Authorize a batch of {@link AuthorizationRequest}s at once. Group membership and identity policies are resolved only once per distinct
+     * principal in the batch and resource policies for all requested resources are fetched together, which makes this considerably cheaper than
+     * calling {@link #authorize(AuthorizationRequest)} repeatedly when checking many (resource, action) pairs for the same principal
+     *
+     * @param requests the {@link AuthorizationRequest} objects
+     * @return one {@link AuthorizationResponse} per request, in the same order as the requests
+     */
+    List<AuthorizationResponse> authorizeAll(List<AuthorizationRequest> requests);
+
     /**
      * Grants the specified principal the set of specified actions against the given resource
      *